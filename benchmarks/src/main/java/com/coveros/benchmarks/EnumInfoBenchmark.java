@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.benchmarks;
+
+import com.coveros.EnumInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures formatting enumeration source into javascript arrays, for simple
+ * enumerations, and for ones whose constants take nested constructor arguments
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumInfoBenchmark {
+
+    @Param({"10", "100"})
+    private int constants;
+
+    private EnumInfo enumInfo = new EnumInfo(null);
+    private String simple;
+    private String complex;
+
+    @Setup(Level.Trial)
+    public void createEnumerations() {
+        StringBuilder simpleEnum = new StringBuilder("public enum Simple {");
+        StringBuilder complexEnum = new StringBuilder("public enum Complex {");
+        for (int i = 0; i < constants; i++) {
+            String separator = i + 1 < constants ? "," : ";";
+            simpleEnum.append("VALUE_").append(i).append(separator);
+            complexEnum.append("VALUE_").append(i).append("(\"value (").append(i).append(")\", of(of(").append(i)
+                    .append("), Arrays.asList(\"a\", \"b\")), x -> x.call(").append(i).append("))").append(separator);
+        }
+        simple = simpleEnum.append("}").toString();
+        complex = complexEnum.append("Complex(String name, Object value, Function<X, Y> call) {}}").toString();
+    }
+
+    @Benchmark
+    public String formatSimpleEnumValues() {
+        return enumInfo.formatEnumValues(simple);
+    }
+
+    @Benchmark
+    public String formatComplexEnumValues() {
+        return enumInfo.formatEnumValues(complex);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.benchmarks;
+
+import com.coveros.CorpusGenerator;
+import com.coveros.GenerateStepDefs;
+import com.coveros.GlueCode;
+import com.coveros.GlueCodeReader;
+import com.coveros.JavaFileScanner;
+import com.coveros.RunStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures a whole run of the generator, from scanning the glue code folders
+ * through to writing out the steps file, over a generated glue code corpus
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerateStepDefsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int steps;
+
+    @Param({"1", "4"})
+    private int threads;
+
+    @Param({"false", "true"})
+    private boolean mapped;
+
+    private Path corpus;
+    private File baseDirectory;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void createCorpus() throws IOException {
+        corpus = Files.createTempDirectory("corpus");
+        baseDirectory = corpus.resolve("src/main/java").toFile();
+        new CorpusGenerator(0).setClasses(steps / 10).setStepsPerClass(10).setEnumerations(30)
+                .setSupportClasses(steps / 10).generate(baseDirectory);
+        output = corpus.resolve("steps.js").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws IOException {
+        try (Stream<Path> paths = Files.walk(corpus)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public File generate() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(baseDirectory.getPath() + File.separator);
+        GenerateStepDefs.parseFiles(new JavaFileScanner(Collections.singletonList(baseDirectory)), glueCode, null,
+                new GlueCodeReader().setMapped(mapped), threads, new RunStats());
+        GenerateStepDefs.writeSteps(glueCode, output);
+        return output;
+    }
+}
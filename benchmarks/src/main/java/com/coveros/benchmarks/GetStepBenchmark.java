@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.benchmarks;
+
+import com.coveros.GlueCode;
+import com.coveros.exception.MalformedGlueCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares rendering step annotations with the single pass renderer in
+ * GlueCode.getStep against the chained regular expression replacements it
+ * replaced. Run with '-prof gc' to compare the allocation rates as well
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetStepBenchmark {
+
+    /**
+     * A mix of annotations, as they appear in typical glue code
+     */
+    static final String[] ANNOTATIONS = {
+            "@Given(\"^I have a new registered user$\")",
+            "@Given(\"^(?:I'm logged|I log) in as an admin user$\")",
+            "@When(\"^I (.*)login$\")",
+            "@Then(\"^I see the login error message \\\"([^\\\"]*)\\\"$\")",
+            "@Given(\"^I have (\\\\d+) users$\")",
+            "@Given(\"^I have [(\\\\d+)]? users$\")",
+            "@When(\"^I click through the form using \\\"([^\\\"]*)\\\"$\")",
+            "@Then(\"^I see the \\\"([^\\\"]*)\\\" of type \\\"([^\\\"]*)\\\"$\")",
+            "@When(\"^I navigate to the next page$\")",
+            "@Then(\"^the continue button is (enabled|disabled)$\")",
+            "@When(\"^I enter \\\"([^\\\"]*)\\\" into the (first|last|middle) name field[ again]?$\")",
+            "@Then(\"^I (?:should|must) see (\\\\d+) results? on (?:the )?page (\\\\d+)$\")",
+            "@Given(\"^the user has ((\\\\d+) or more) orders placed before (\\\\d{4}-\\\\d{2}-\\\\d{2})$\")",
+            "@When(\"^I upload the file \\\"([^\\\"]*)\\\"[ as (?:an? )?(admin|guest)]?$\")",
+            "@Then(\"^I can replay the video$\")",
+            "@Given(\"^I select prefer not to answer$\")",
+    };
+
+    private GlueCode glueCode = new GlueCode();
+
+    /**
+     * The implementation of GlueCode.getStep before the single pass renderer
+     */
+    static String legacyGetStep(String glueCode) throws MalformedGlueCode {
+        int start = glueCode.indexOf('^');
+        int end = glueCode.lastIndexOf('$');
+        if (start < 0 || end < 0 || start > end) {
+            throw new MalformedGlueCode(glueCode);
+        }
+        String regex = glueCode.substring(start + 1, end);
+        regex = regex.replaceAll("\\(\\?:.*?\\)", "<span class='any'>...</span>");
+        regex = regex.replaceAll("\\(.*?\\)", "XXXX");
+        regex = regex.replaceAll("\\[(.*?)\\]\\?", "<span class='opt'>$1</span>");
+        return regex;
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) throws MalformedGlueCode {
+        for (String annotation : ANNOTATIONS) {
+            blackhole.consume(legacyGetStep(annotation));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) throws MalformedGlueCode {
+        for (String annotation : ANNOTATIONS) {
+            blackhole.consume(glueCode.getStep(annotation));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.benchmarks;
+
+import com.coveros.GlueCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hot paths of parsing glue code, line by line. Each operation
+ * covers a small, but typical, glue code class
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlueCodeBenchmark {
+
+    static final String[] LINES = {
+            "package com.coveros.steps;",
+            "",
+            "import com.coveros.steps.data.Browser;",
+            "import com.coveros.steps.data.UserType;",
+            "import cucumber.api.Transform;",
+            "import cucumber.api.java.en.Given;",
+            "import cucumber.api.java.en.Then;",
+            "import cucumber.api.java.en.When;",
+            "import java.util.List;",
+            "",
+            "public class LoginSteps {",
+            "",
+            "    private final Driver driver = new Driver();",
+            "",
+            "    @Given(\"^I have a new registered (admin|guest) user$\")",
+            "    public void registeredUser(UserType type) throws Throwable {",
+            "        driver.register(type);",
+            "    }",
+            "",
+            "    @When(\"^I log in using \\\"([^\\\"]*)\\\" and \\\"([^\\\"]*)\\\" on (\\\\d+) browsers?$\")",
+            "    public void logIn(String username, String password, int count) {",
+            "        driver.login(username, password);",
+            "    }",
+            "",
+            "    @When(\"^I open the site in (.*)[ on (?:mobile|tablet)]?$\")",
+            "    public void open(@Delimiter(\", \") List<Browser> browsers) {",
+            "        driver.open(browsers);",
+            "    }",
+            "",
+            "    @Then(\"^I see the login error message \\\"([^\\\"]*)\\\" on (\\\\d{4}-\\\\d{2}-\\\\d{2})$\")",
+            "    public void loginError(String message, @Transform(DateConverter.class) Date date) {",
+            "        driver.assertError(message, date);",
+            "    }",
+            "}",
+    };
+
+    static final List<String> PARAMETERS = Arrays.asList("UserType type", " String username", " int count",
+            " @Delimiter(\", \") List<Browser> browsers", " @Transform(DateConverter.class) Date date",
+            " final Map<String, Integer> totals", " String... names");
+
+    static final String METHOD = "    public void loginError(String message, @Transform(DateConverter.class) Date date, " +
+            "@Delimiter(\", \") List<Browser> browsers, Map<String, Integer> totals) throws Throwable {";
+
+    @Benchmark
+    public List<String> processLine() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        for (String line : LINES) {
+            glueCode.processLine(line);
+        }
+        return glueCode.getGlueCodeSteps();
+    }
+
+    @Benchmark
+    public void getStep(Blackhole blackhole) throws IOException {
+        GlueCode glueCode = new GlueCode();
+        for (String annotation : GetStepBenchmark.ANNOTATIONS) {
+            blackhole.consume(glueCode.getStep(annotation));
+        }
+    }
+
+    @Benchmark
+    public String getStepVariables() {
+        return new GlueCode().getStepVariables(PARAMETERS);
+    }
+
+    @Benchmark
+    public String getMethodVariables() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        return glueCode.getStepVariables(glueCode.getMethodVariables(METHOD));
+    }
+}
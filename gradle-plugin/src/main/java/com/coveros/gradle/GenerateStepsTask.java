@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.gradle;
+
+import com.coveros.StepGenerator;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Generates the steps file. Every file the steps file is built from, and
+ * every setting which changes its contents, is declared as an input, by its
+ * path relative to its root, so Gradle can tell the task is up to date, and
+ * can restore the steps file from the build cache, even for a checkout in a
+ * different folder, without parsing any glue code
+ */
+@CacheableTask
+public abstract class GenerateStepsTask extends DefaultTask {
+
+    private static final String JAVA = "**/*.java";
+
+    /**
+     * @return the folders of glue code to look for steps in, or when reading
+     * compiled classes, the folders of classes, jars, or class files
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getRoots();
+
+    /**
+     * @return the roots of the source trees the enumerations used by the
+     * steps are defined within
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getSourceRoots();
+
+    @Input
+    public abstract ListProperty<String> getKeywords();
+
+    @Input
+    public abstract SetProperty<String> getExcludes();
+
+    @Input
+    public abstract Property<Boolean> getClasses();
+
+    // these only change how the glue code is read, never what's written
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    @Internal
+    public abstract Property<Boolean> getMapped();
+
+    @Internal
+    public abstract Property<Boolean> getStreaming();
+
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutput();
+
+    /**
+     * @return where previously parsed results are kept between runs, so only
+     * glue code files which changed are re-parsed when the task does run
+     */
+    @LocalState
+    public abstract RegularFileProperty getCache();
+
+    /**
+     * @return the glue code files within the roots, skipping excluded folders
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    @IgnoreEmptyDirectories
+    public FileTree getGlueCode() {
+        return getRoots().getAsFileTree().matching(filter -> {
+            if (!getClasses().get()) {
+                filter.include(JAVA);
+            }
+            for (String exclude : getExcludes().get()) {
+                filter.exclude("**/" + exclude + "/**");
+            }
+        });
+    }
+
+    /**
+     * @return the source files within the source roots, which enumerations
+     * are read from, including those within excluded folders, as the
+     * enumerations are
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    @IgnoreEmptyDirectories
+    public FileTree getEnumerationSources() {
+        return getSourceRoots().getAsFileTree().matching(filter -> filter.include(JAVA));
+    }
+
+    @TaskAction
+    public void generate() {
+        File output = getOutput().get().getAsFile();
+        StepGenerator generator = new StepGenerator().setKeywords(getKeywords().get())
+                .setExcludes(new HashSet<>(getExcludes().get())).setThreads(getThreads().get())
+                .setMapped(getMapped().get()).setClasses(getClasses().get()).setStreaming(getStreaming().get())
+                .setClasspath(new ArrayList<>(getClasspath().getFiles())).setOutput(output);
+        if (getCache().isPresent()) {
+            generator.setCache(getCache().get().getAsFile(), false);
+        }
+        for (File root : getRoots().getFiles()) {
+            generator.addRoot(root);
+        }
+        List<File> sourceRoots = new ArrayList<>(getSourceRoots().getFiles());
+        for (File sourceRoot : sourceRoots) {
+            generator.addSourceRoot(sourceRoot);
+        }
+        try {
+            Files.createDirectories(output.getAbsoluteFile().getParentFile().toPath());
+            StepGenerator.Result result = generator.generate();
+            getLogger().info("Generated '{}' with {} steps and {} enumerations", output,
+                    result.getSteps().size(), result.getEnumerations().size());
+        } catch (IOException e) {
+            throw new GradleException("Unable to generate the steps file: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.gradle;
+
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
+
+/**
+ * The gherkinBuilder block of a build script, configuring the generateSteps
+ * task. Each setting matches a command line option
+ */
+public abstract class GherkinBuilderExtension {
+
+    /**
+     * @return the folders of glue code to look for steps in, or when reading
+     * compiled classes, the folders of classes, jars, or class files
+     */
+    public abstract ConfigurableFileCollection getRoots();
+
+    /**
+     * @return the roots of the source trees the enumerations used by the
+     * steps are defined within
+     */
+    public abstract ConfigurableFileCollection getSourceRoots();
+
+    /**
+     * @return the step keywords to look for, without the '@'
+     */
+    public abstract ListProperty<String> getKeywords();
+
+    /**
+     * @return the names of folders which are never descended into
+     */
+    public abstract SetProperty<String> getExcludes();
+
+    /**
+     * @return the number of threads to parse the glue code with
+     */
+    public abstract Property<Integer> getThreads();
+
+    /**
+     * @return whether to memory map each glue code file
+     */
+    public abstract Property<Boolean> getMapped();
+
+    /**
+     * @return whether the roots are compiled classes and jars, rather than source
+     */
+    public abstract Property<Boolean> getClasses();
+
+    /**
+     * @return whether to write the steps out as they're parsed
+     */
+    public abstract Property<Boolean> getStreaming();
+
+    /**
+     * @return the folders and jars of compiled classes to load enumerations from
+     */
+    public abstract ConfigurableFileCollection getClasspath();
+
+    /**
+     * @return the steps file to write
+     */
+    public abstract RegularFileProperty getOutput();
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.gradle;
+
+import com.coveros.GlueCode;
+import com.coveros.JavaFileScanner;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Adds the generateSteps task, configured by the gherkinBuilder block. When
+ * the java plugin is applied, steps are looked for in the test sources, and
+ * enumerations in the main and test sources, by default
+ */
+public class GherkinBuilderPlugin implements Plugin<Project> {
+
+    public static final String EXTENSION = "gherkinBuilder";
+    public static final String TASK = "generateSteps";
+    private static final String GROUP = "build";
+
+    @Override
+    public void apply(Project project) {
+        GherkinBuilderExtension extension = project.getExtensions().create(EXTENSION, GherkinBuilderExtension.class);
+        extension.getKeywords().convention(GlueCode.DEFAULT_KEYWORDS);
+        extension.getExcludes().convention(JavaFileScanner.DEFAULT_EXCLUDES);
+        extension.getThreads().convention(Runtime.getRuntime().availableProcessors());
+        extension.getMapped().convention(false);
+        extension.getClasses().convention(false);
+        extension.getStreaming().convention(false);
+        extension.getOutput().convention(project.getLayout().getBuildDirectory().file("gherkin-builder/steps.js"));
+
+        project.getTasks().register(TASK, GenerateStepsTask.class, task -> {
+            task.setGroup(GROUP);
+            task.setDescription("Generates the steps file from the glue code");
+            task.getRoots().from(extension.getRoots());
+            task.getSourceRoots().from(extension.getSourceRoots());
+            task.getKeywords().set(extension.getKeywords());
+            task.getExcludes().set(extension.getExcludes());
+            task.getThreads().set(extension.getThreads());
+            task.getMapped().set(extension.getMapped());
+            task.getClasses().set(extension.getClasses());
+            task.getStreaming().set(extension.getStreaming());
+            task.getClasspath().from(extension.getClasspath());
+            task.getOutput().set(extension.getOutput());
+            task.getCache().set(project.getLayout().getBuildDirectory().file("gherkin-builder/steps.cache"));
+        });
+
+        project.getPlugins().withType(JavaPlugin.class, java -> {
+            SourceSetContainer sourceSets = project.getExtensions().getByType(SourceSetContainer.class);
+            SourceSet main = sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+            SourceSet test = sourceSets.getByName(SourceSet.TEST_SOURCE_SET_NAME);
+            project.getTasks().named(TASK, GenerateStepsTask.class, task -> {
+                // only fall back to the source sets when nothing was configured
+                task.getRoots().setFrom(project.provider(() -> extension.getRoots().isEmpty() ?
+                        test.getJava().getSrcDirs() : extension.getRoots().getFiles()));
+                task.getSourceRoots().setFrom(project.provider(() -> extension.getSourceRoots().isEmpty() ?
+                        union(main.getJava().getSrcDirs(), test.getJava().getSrcDirs()) :
+                        extension.getSourceRoots().getFiles()));
+            });
+        });
+    }
+
+    private static Set<File> union(Set<File> first, Set<File> second) {
+        Set<File> all = new LinkedHashSet<>(first);
+        all.addAll(second);
+        return all;
+    }
+}
@@ -0,0 +1,138 @@
+package unit;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class GherkinBuilderPluginTest {
+
+    private static final String TASK = ":generateSteps";
+
+    private Path project;
+    private Path cache;
+
+    @BeforeMethod
+    public void createProject() throws IOException {
+        project = Files.createTempDirectory("project");
+        cache = Files.createTempDirectory("cache");
+        Files.write(project.resolve("settings.gradle"), Arrays.asList(
+                "rootProject.name = 'glue'",
+                "buildCache { local { directory = file('" + cache.toString().replace('\\', '/') + "') } }"));
+        Files.write(project.resolve("build.gradle"), Arrays.asList(
+                "plugins {",
+                "    id 'java'",
+                "    id 'com.coveros.gherkin-builder'",
+                "}"));
+        Path model = project.resolve("src/main/java/model");
+        Files.createDirectories(model);
+        Files.write(model.resolve("Color.java"), Arrays.asList("package model;", "public enum Color {",
+                "    RED, BLUE", "}"));
+        Path steps = project.resolve("src/test/java/steps");
+        Files.createDirectories(steps);
+        Files.write(steps.resolve("Steps.java"), Arrays.asList("package steps;", "import model.Color;",
+                "public class Steps {",
+                "    @Given(\"^I pick (\\\\w+)$\")",
+                "    public void pick(Color color) {",
+                "    }",
+                "}"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteProject() throws IOException {
+        for (Path dir : Arrays.asList(project, cache)) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private BuildResult run(String... arguments) {
+        String[] all = Arrays.copyOf(arguments, arguments.length + 1);
+        all[arguments.length] = "generateSteps";
+        return GradleRunner.create().withProjectDir(project.toFile()).withPluginClasspath().withArguments(all)
+                .build();
+    }
+
+    private Path getOutput() {
+        return project.resolve("build/gherkin-builder/steps.js");
+    }
+
+    @Test
+    public void generateTest() throws IOException {
+        Assert.assertEquals(run().task(TASK).getOutcome(), TaskOutcome.SUCCESS);
+        Assert.assertEquals(Files.readAllLines(getOutput()), Arrays.asList("//our enumerations",
+                "var Color = new Array(\"RED\",\"BLUE\");", "", "//our steps",
+                "testSteps.push( new step( \"I pick XXXX\", new keypair( \"color\", Color ) ) );"));
+    }
+
+    @Test
+    public void upToDateTest() throws IOException {
+        run();
+        Assert.assertEquals(run().task(TASK).getOutcome(), TaskOutcome.UP_TO_DATE);
+        Files.write(project.resolve("src/main/java/model/Color.java"), Arrays.asList("package model;",
+                "public enum Color {", "    RED, GREEN, BLUE", "}"));
+        Assert.assertEquals(run().task(TASK).getOutcome(), TaskOutcome.SUCCESS);
+        Assert.assertTrue(Files.readAllLines(getOutput()).contains("var Color = new Array(\"RED\",\"GREEN\",\"BLUE\");"));
+    }
+
+    @Test
+    public void upToDateExcludedEnumerationTest() throws IOException {
+        Path enumeration = project.resolve("src/main/java/model/target/Shade.java");
+        Files.createDirectories(enumeration.getParent());
+        Files.write(enumeration, Arrays.asList("package model.target;", "public enum Shade {", "    DARK", "}"));
+        Files.write(project.resolve("src/test/java/steps/Steps.java"), Arrays.asList("package steps;",
+                "import model.target.Shade;",
+                "public class Steps {",
+                "    @When(\"^I shade (\\\\w+)$\")",
+                "    public void shade(Shade shade) {",
+                "    }",
+                "}"));
+        run();
+        Files.write(enumeration, Arrays.asList("package model.target;", "public enum Shade {", "    DARK, LIGHT", "}"));
+        Assert.assertEquals(run().task(TASK).getOutcome(), TaskOutcome.SUCCESS);
+        Assert.assertTrue(Files.readAllLines(getOutput()).contains("var Shade = new Array(\"DARK\",\"LIGHT\");"));
+    }
+
+    @Test
+    public void buildCacheTest() throws IOException {
+        Assert.assertEquals(run("--build-cache").task(TASK).getOutcome(), TaskOutcome.SUCCESS);
+        byte[] generated = Files.readAllBytes(getOutput());
+        Files.delete(getOutput());
+        Assert.assertEquals(run("--build-cache").task(TASK).getOutcome(), TaskOutcome.FROM_CACHE);
+        Assert.assertEquals(Files.readAllBytes(getOutput()), generated);
+    }
+
+    @Test
+    public void configuredTest() throws IOException {
+        Files.write(project.resolve("build.gradle"), Arrays.asList(
+                "plugins {",
+                "    id 'java'",
+                "    id 'com.coveros.gherkin-builder'",
+                "}",
+                "gherkinBuilder {",
+                "    keywords = ['Pick']",
+                "    output = file('public/js/steps.js')",
+                "}"));
+        Files.write(project.resolve("src/test/java/steps/Steps.java"), Arrays.asList("package steps;",
+                "public class Steps {",
+                "    @Pick(\"^I pick a color$\")",
+                "    public void pick() {",
+                "    }",
+                "}"));
+        Assert.assertEquals(run().task(TASK).getOutcome(), TaskOutcome.SUCCESS);
+        Assert.assertEquals(Files.readAllLines(project.resolve("public/js/steps.js")).get(3),
+                "testSteps.push( new step( \"I pick a color\" ) );");
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.maven;
+
+import com.coveros.GlueCode;
+import com.coveros.JavaFileScanner;
+import com.coveros.StepGenerator;
+import com.coveros.exception.MalformedClass;
+import com.coveros.exception.MalformedGlueCode;
+import com.coveros.exception.MalformedMethod;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates the steps file as part of the build. Before generating, the
+ * configuration and every input file are fingerprinted, and if nothing has
+ * changed since the steps file was last generated, generation is skipped
+ * entirely. When something has changed, only the glue code files which
+ * changed are re-parsed, see ParseCache
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class GenerateStepsMojo extends AbstractMojo {
+
+    /**
+     * The folders of glue code to look for steps in, or when reading
+     * compiled classes, the folders of classes, jars, or class files
+     */
+    @Parameter(defaultValue = "${project.build.testSourceDirectory}")
+    private List<File> roots;
+
+    /**
+     * The roots of the source trees the enumerations used by the steps are
+     * defined within, by default the project's main and test source roots
+     */
+    @Parameter
+    private List<File> sourceRoots;
+
+    @Parameter(defaultValue = "${project.compileSourceRoots}", readonly = true)
+    private List<String> compileSourceRoots;
+
+    @Parameter(defaultValue = "${project.testCompileSourceRoots}", readonly = true)
+    private List<String> testCompileSourceRoots;
+
+    /**
+     * The step keywords to look for, by default Given, When, Then, And and But
+     */
+    @Parameter
+    private List<String> keywords;
+
+    /**
+     * The names of folders which are never descended into
+     */
+    @Parameter
+    private Set<String> excludes;
+
+    /**
+     * The number of threads to parse the glue code with, by default one per
+     * processor
+     */
+    @Parameter(property = "gherkin.threads")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether to memory map each glue code file, rather than reading it line
+     * by line
+     */
+    @Parameter(property = "gherkin.mmap", defaultValue = "false")
+    private boolean mapped;
+
+    /**
+     * Whether the roots are compiled classes and jars, rather than source
+     */
+    @Parameter(property = "gherkin.classes", defaultValue = "false")
+    private boolean classes;
+
+    /**
+     * Whether to write the steps out as they're parsed, rather than holding
+     * them all in memory until the end. The cache holds every step in memory,
+     * so isn't used when streaming
+     */
+    @Parameter(property = "gherkin.stream", defaultValue = "false")
+    private boolean streaming;
+
+    /**
+     * The folders and jars of compiled classes to load enumerations from
+     */
+    @Parameter
+    private List<File> classpath;
+
+    /**
+     * Where previously parsed results are kept, so only glue code files which
+     * changed are re-parsed
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gherkin-builder/steps.cache")
+    private File cache;
+
+    /**
+     * Whether to compare contents, rather than just modification times, when
+     * re-using previously parsed results
+     */
+    @Parameter(property = "gherkin.cacheHash", defaultValue = "false")
+    private boolean cacheHash;
+
+    /**
+     * The steps file to write
+     */
+    @Parameter(property = "gherkin.output", defaultValue = "${project.build.directory}/gherkin-builder/steps.js")
+    private File output;
+
+    /**
+     * Where the fingerprint of the last generation's inputs is kept
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gherkin-builder/steps.fingerprint")
+    private File fingerprint;
+
+    /**
+     * Whether to generate the steps file even if nothing has changed
+     */
+    @Parameter(property = "gherkin.force", defaultValue = "false")
+    private boolean force;
+
+    /**
+     * Whether to skip generating the steps file
+     */
+    @Parameter(property = "gherkin.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping generation of the steps file");
+            return;
+        }
+        try {
+            InputFingerprint inputs = getFingerprint();
+            String current = inputs.getHash();
+            if (!force && isUpToDate(current)) {
+                getLog().info("Steps file '" + output + "' is up to date, " + inputs.getFiles() +
+                        " input files unchanged, skipping generation");
+                return;
+            }
+            Files.createDirectories(output.getAbsoluteFile().getParentFile().toPath());
+            long start = System.nanoTime();
+            StepGenerator.Result result = getGenerator().generate();
+            getLog().info("Generated '" + output + "' with " + result.getSteps().size() + " steps and " +
+                    result.getEnumerations().size() + " enumerations in " +
+                    (System.nanoTime() - start) / 1000000 + " ms");
+            writeFingerprint(current);
+        } catch (MalformedGlueCode | MalformedMethod | MalformedClass e) {
+            throw new MojoFailureException("Unable to generate the steps file: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to generate the steps file", e);
+        }
+    }
+
+    private StepGenerator getGenerator() {
+        StepGenerator generator = new StepGenerator().setKeywords(getKeywords()).setExcludes(getExcludes())
+                .setThreads(threads).setMapped(mapped).setClasses(classes).setStreaming(streaming)
+                .setCache(streaming ? null : cache, cacheHash).setOutput(output);
+        for (File root : roots) {
+            generator.addRoot(root);
+        }
+        for (File sourceRoot : getSourceRoots()) {
+            generator.addSourceRoot(sourceRoot);
+        }
+        if (classpath != null) {
+            generator.setClasspath(classpath);
+        }
+        return generator;
+    }
+
+    /**
+     * Fingerprints everything the steps file depends on: the configuration
+     * which affects its contents, the glue code, the sources enumerations
+     * are read from, and the compiled classpath
+     */
+    private InputFingerprint getFingerprint() throws IOException {
+        InputFingerprint inputs = new InputFingerprint().addValue("version", pluginVersion)
+                .addValue("keywords", getKeywords()).addValue("excludes", new TreeSet<>(getExcludes()))
+                .addValue("mapped", mapped).addValue("classes", classes).addValue("streaming", streaming)
+                .addValue("cacheHash", cacheHash).addValue("output", output.getAbsolutePath());
+        inputs.addFiles("roots", roots, getExcludes());
+        if (!classes) {
+            // enumerations are read from anywhere within the source roots, excluded folders included
+            inputs.addFiles("sourceRoots", getSourceRoots(), Collections.emptySet());
+        }
+        inputs.addFiles("classpath", classpath == null ? Collections.emptyList() : classpath, getExcludes());
+        return inputs;
+    }
+
+    /**
+     * The steps file is up to date if it was last generated from the same
+     * inputs, and hasn't been changed or removed since
+     */
+    private boolean isUpToDate(String current) throws IOException {
+        if (!fingerprint.exists() || !output.exists()) {
+            return false;
+        }
+        List<String> previous = Files.readAllLines(fingerprint.toPath(), StandardCharsets.UTF_8);
+        return previous.equals(Arrays.asList(current, getOutputStamp()));
+    }
+
+    private void writeFingerprint(String current) throws IOException {
+        Files.createDirectories(fingerprint.getAbsoluteFile().getParentFile().toPath());
+        Files.write(fingerprint.toPath(), Arrays.asList(current, getOutputStamp()), StandardCharsets.UTF_8);
+    }
+
+    private String getOutputStamp() {
+        return output.length() + " " + output.lastModified();
+    }
+
+    private List<String> getKeywords() {
+        return keywords == null || keywords.isEmpty() ? GlueCode.DEFAULT_KEYWORDS : keywords;
+    }
+
+    private Set<String> getExcludes() {
+        return excludes == null ? JavaFileScanner.DEFAULT_EXCLUDES : new HashSet<>(excludes);
+    }
+
+    private List<File> getSourceRoots() {
+        if (sourceRoots != null && !sourceRoots.isEmpty()) {
+            return sourceRoots;
+        }
+        List<File> projectRoots = new ArrayList<>();
+        for (List<String> compileRoots : Arrays.asList(compileSourceRoots, testCompileSourceRoots)) {
+            if (compileRoots != null) {
+                for (String compileRoot : compileRoots) {
+                    projectRoots.add(new File(compileRoot));
+                }
+            }
+        }
+        return projectRoots;
+    }
+}
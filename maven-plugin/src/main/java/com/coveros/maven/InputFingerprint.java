@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros.maven;
+
+import com.coveros.Outputs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hash of everything a run of the generator depends on: its configuration,
+ * and the path, size and modification time of every file within its inputs.
+ * Only file attributes are read, never their contents, so fingerprinting
+ * even a large glue code base takes a fraction of the time parsing it would.
+ * If two fingerprints match, the generator would produce the same output
+ */
+public class InputFingerprint {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    private MessageDigest digest;
+    private long files = 0;
+
+    public InputFingerprint() throws IOException {
+        digest = Outputs.sha256();
+    }
+
+    /**
+     * Adds a configuration value to the fingerprint
+     *
+     * @param name  - the name of the value
+     * @param value - the value, which is added by its string form
+     * @return InputFingerprint - this fingerprint
+     */
+    public InputFingerprint addValue(String name, Object value) {
+        update(name);
+        update(String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Adds every file within the provided locations to the fingerprint.
+     * Folders are walked in name order, skipping any folders with an excluded
+     * name, and locations which don't exist are added as missing, so that
+     * their later creation changes the fingerprint
+     *
+     * @param name      - the name of the inputs
+     * @param locations - the folders and files to add
+     * @param excludes  - the names of folders not to descend into
+     * @return InputFingerprint - this fingerprint
+     * @throws IOException
+     */
+    public InputFingerprint addFiles(String name, Collection<File> locations, Set<String> excludes)
+            throws IOException {
+        update(name);
+        for (File location : locations) {
+            Path root = location.toPath().toAbsolutePath();
+            update(root.toString());
+            if (!Files.exists(root)) {
+                update("missing");
+                continue;
+            }
+            List<Path> found = new ArrayList<>();
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                            if (!dir.equals(root) && excludes.contains(String.valueOf(dir.getFileName()))) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile()) {
+                                found.add(file);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            // skipped just as the generator skips them
+                            if (e instanceof FileSystemLoopException) {
+                                log.log(Level.WARNING, "Skipping symbolic link loop at " + file);
+                            } else {
+                                log.log(Level.WARNING, "Unable to read " + file, e);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+            // the order files are visited in isn't defined, so sort them to keep the fingerprint stable
+            Collections.sort(found);
+            for (Path file : found) {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                update(root.relativize(file).toString());
+                update(Long.toString(attrs.size()));
+                update(Long.toString(attrs.lastModifiedTime().toMillis()));
+                files++;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of files added to the fingerprint
+     *
+     * @return long - the number of files
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * Completes the fingerprint. Nothing more can be added once it is
+     *
+     * @return String - the fingerprint, as hex
+     */
+    public String getHash() {
+        return Outputs.toHex(digest.digest());
+    }
+
+    private void update(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // prefix each value with its length, so values can't run into each other
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,114 @@
+package unit;
+
+import com.coveros.JavaFileScanner;
+import com.coveros.maven.InputFingerprint;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class InputFingerprintTest {
+
+    private Path dir;
+    private Path steps;
+
+    @BeforeMethod
+    public void createInputs() throws IOException {
+        dir = Files.createTempDirectory("fingerprint");
+        steps = dir.resolve("steps").resolve("Steps.java");
+        Files.createDirectories(steps.getParent());
+        Files.write(steps, Arrays.asList("@Given(\"^I have a user$\")", "public void haveUser()"));
+        Files.createDirectories(dir.resolve("target"));
+        Files.write(dir.resolve("target").resolve("Built.java"), Collections.singletonList("class Built {}"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteInputs() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private String fingerprint(List<File> locations, String keywords) throws IOException {
+        return new InputFingerprint().addValue("keywords", keywords)
+                .addFiles("roots", locations, JavaFileScanner.DEFAULT_EXCLUDES).getHash();
+    }
+
+    private String fingerprint() throws IOException {
+        return fingerprint(Collections.singletonList(dir.toFile()), "Given");
+    }
+
+    @Test
+    public void unchangedTest() throws IOException {
+        Assert.assertEquals(fingerprint(), fingerprint());
+    }
+
+    @Test
+    public void getFilesTest() throws IOException {
+        InputFingerprint fingerprint = new InputFingerprint()
+                .addFiles("roots", Collections.singletonList(dir.toFile()), JavaFileScanner.DEFAULT_EXCLUDES);
+        Assert.assertEquals(fingerprint.getFiles(), 1);
+    }
+
+    @Test
+    public void contentsChangedTest() throws IOException {
+        String before = fingerprint();
+        FileTime modified = Files.getLastModifiedTime(steps);
+        Files.write(steps, Arrays.asList("@Given(\"^I have two users$\")", "public void haveUsers()"));
+        Files.setLastModifiedTime(steps, modified);
+        Assert.assertNotEquals(fingerprint(), before);
+    }
+
+    @Test
+    public void touchedTest() throws IOException {
+        String before = fingerprint();
+        Files.setLastModifiedTime(steps, FileTime.fromMillis(Files.getLastModifiedTime(steps).toMillis() + 1000));
+        Assert.assertNotEquals(fingerprint(), before);
+    }
+
+    @Test
+    public void addedTest() throws IOException {
+        String before = fingerprint();
+        Files.write(dir.resolve("steps").resolve("More.java"), Collections.singletonList("class More {}"));
+        Assert.assertNotEquals(fingerprint(), before);
+    }
+
+    @Test
+    public void excludedTest() throws IOException {
+        String before = fingerprint();
+        Files.write(dir.resolve("target").resolve("Built.java"), Collections.singletonList("class Rebuilt {}"));
+        Assert.assertEquals(fingerprint(), before);
+    }
+
+    @Test
+    public void symbolicLinkLoopTest() throws IOException {
+        Files.createSymbolicLink(steps.getParent().resolve("loop"), steps.getParent());
+        Assert.assertEquals(fingerprint(), fingerprint());
+    }
+
+    @Test
+    public void configurationChangedTest() throws IOException {
+        Assert.assertNotEquals(fingerprint(Collections.singletonList(dir.toFile()), "Given,Step"), fingerprint());
+    }
+
+    @Test
+    public void missingTest() throws IOException {
+        List<File> missing = Arrays.asList(dir.toFile(), dir.resolve("missing").toFile());
+        String before = fingerprint(missing, "Given");
+        Assert.assertEquals(fingerprint(missing, "Given"), before);
+        Assert.assertNotEquals(before, fingerprint());
+        Files.createDirectories(dir.resolve("missing"));
+        Assert.assertNotEquals(fingerprint(missing, "Given"), before);
+    }
+}
@@ -0,0 +1,631 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import com.coveros.exception.MalformedClass;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A lightweight reader of compiled java classes. Only what's needed to pick
+ * out glue code is read: the class name, enumeration constants, and each
+ * method's parameter types, parameter names and annotations. Everything else
+ * in the class file is skipped over, and constant pool strings are only
+ * decoded when they're actually needed
+ */
+public class ClassFile {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_ENUM = 0x4000;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private static final String SIGNATURE = "Signature";
+    private static final String CODE = "Code";
+    private static final String LOCAL_VARIABLES = "LocalVariableTable";
+    private static final String METHOD_PARAMETERS = "MethodParameters";
+    private static final String VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+    private static final String INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+    private static final String VALUE = "value";
+
+    private ByteBuffer buffer;
+    private int[] offsets;
+    private String[] strings;
+    private String name;
+    private int access;
+    private List<String> enumConstants = new ArrayList<>();
+    private List<Method> methods = new ArrayList<>();
+
+    /**
+     * Reads a compiled class
+     *
+     * @param bytes - the contents of the class file
+     * @throws IOException
+     */
+    public ClassFile(byte[] bytes) throws IOException {
+        buffer = ByteBuffer.wrap(bytes);
+        try {
+            parse();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new MalformedClass("The class file is truncated or corrupt: " + e);
+        }
+    }
+
+    /**
+     * Reads a compiled class from the provided stream, which is left open
+     *
+     * @param in - the contents of the class file
+     * @return ClassFile - the class read
+     * @throws IOException
+     */
+    public static ClassFile read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            bytes.write(chunk, 0, read);
+        }
+        return new ClassFile(bytes.toByteArray());
+    }
+
+    /**
+     * Returns the name of the class, as it would be written in java source,
+     * so nested classes are separated from their enclosing class by a '.'
+     *
+     * @return String - the fully qualified name of the class
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the size of the class file
+     *
+     * @return int - the number of bytes in the class file
+     */
+    public int getLength() {
+        return buffer.capacity();
+    }
+
+    public boolean isEnum() {
+        return (access & ACC_ENUM) != 0;
+    }
+
+    /**
+     * Returns the constants of an enumeration, in the order they're declared
+     *
+     * @return List - the constant names, empty if this isn't an enumeration
+     */
+    public List<String> getEnumConstants() {
+        return enumConstants;
+    }
+
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    /**
+     * A method of a compiled class
+     */
+    public static class Method {
+        private String name;
+        private List<String> parameterTypes = new ArrayList<>();
+        private List<String> parameterNames = new ArrayList<>();
+        private Set<String> referencedClasses = new LinkedHashSet<>();
+        private List<Annotation> annotations = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the types of the method's parameters, as they would be
+         * written in java source, including any generics, with each class
+         * fully qualified
+         *
+         * @return List - the parameter types
+         */
+        public List<String> getParameterTypes() {
+            return parameterTypes;
+        }
+
+        /**
+         * Returns the names of the method's parameters. Names are only
+         * available if the class was compiled with debugging information, or
+         * with -parameters, otherwise they're named arg0, arg1, and so on
+         *
+         * @return List - the parameter names
+         */
+        public List<String> getParameterNames() {
+            return parameterNames;
+        }
+
+        /**
+         * Returns every class referenced by the method's parameter types,
+         * including those within generics
+         *
+         * @return Set - the fully qualified names of the classes
+         */
+        public Set<String> getReferencedClasses() {
+            return referencedClasses;
+        }
+
+        public List<Annotation> getAnnotations() {
+            return annotations;
+        }
+    }
+
+    /**
+     * An annotation on a method. Annotations nested within it, such as those
+     * held by a repeatable annotation's container, are kept alongside it
+     */
+    public static class Annotation {
+        private String type;
+        private String value;
+        private List<Annotation> nested = new ArrayList<>();
+
+        /**
+         * Returns the type of the annotation, as it would be written in java source
+         *
+         * @return String - the fully qualified name of the annotation
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the annotation's value element, if it's a string
+         *
+         * @return String - the value, or null if there isn't a string value
+         */
+        public String getValue() {
+            return value;
+        }
+
+        public List<Annotation> getNested() {
+            return nested;
+        }
+    }
+
+    private void parse() throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new MalformedClass("The file is not a java class file");
+        }
+        // the minor and major versions
+        skip(4);
+        readConstantPool();
+        access = u2();
+        name = toSourceName(getClassName(u2()));
+        // the super class
+        skip(2);
+        skip(2 * u2());
+        int fields = u2();
+        for (int i = 0; i < fields; i++) {
+            int fieldAccess = u2();
+            int fieldName = u2();
+            // the descriptor
+            skip(2);
+            if ((fieldAccess & ACC_ENUM) != 0) {
+                enumConstants.add(getString(fieldName));
+            }
+            skipAttributes();
+        }
+        int count = u2();
+        for (int i = 0; i < count; i++) {
+            methods.add(readMethod());
+        }
+    }
+
+    private void readConstantPool() throws MalformedClass {
+        int count = u2();
+        offsets = new int[count];
+        strings = new String[count];
+        for (int i = 1; i < count; i++) {
+            int tag = buffer.get();
+            offsets[i] = buffer.position();
+            switch (tag) {
+                case UTF8:
+                    skip(u2());
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    skip(2);
+                    break;
+                case METHOD_HANDLE:
+                    skip(3);
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    skip(4);
+                    break;
+                case LONG:
+                case DOUBLE:
+                    // these take up two entries in the pool
+                    skip(8);
+                    i++;
+                    break;
+                default:
+                    throw new MalformedClass("Unknown constant pool entry " + tag + " at index " + i);
+            }
+        }
+    }
+
+    private Method readMethod() {
+        Method method = new Method();
+        int methodAccess = u2();
+        method.name = getString(u2());
+        String descriptor = getString(u2());
+        String signature = null;
+        Map<Integer, String> localNames = new HashMap<>();
+        List<String> parameterNames = new ArrayList<>();
+        int attributes = u2();
+        for (int i = 0; i < attributes; i++) {
+            String attribute = getString(u2());
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            if (SIGNATURE.equals(attribute)) {
+                signature = getString(u2());
+            } else if (VISIBLE_ANNOTATIONS.equals(attribute) || INVISIBLE_ANNOTATIONS.equals(attribute)) {
+                int count = u2();
+                for (int j = 0; j < count; j++) {
+                    method.annotations.add(readAnnotation());
+                }
+            } else if (METHOD_PARAMETERS.equals(attribute)) {
+                int count = buffer.get() & 0xFF;
+                for (int j = 0; j < count; j++) {
+                    int parameterName = u2();
+                    skip(2);
+                    parameterNames.add(parameterName == 0 ? null : getString(parameterName));
+                }
+            } else if (CODE.equals(attribute)) {
+                readLocalNames(localNames);
+            }
+            buffer.position(end);
+        }
+
+        List<String> descriptorTypes = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        int slot = (methodAccess & ACC_STATIC) != 0 ? 0 : 1;
+        int[] position = {1};
+        while (descriptor.charAt(position[0]) != ')') {
+            char type = descriptor.charAt(position[0]);
+            slots.add(slot);
+            slot += type == 'J' || type == 'D' ? 2 : 1;
+            descriptorTypes.add(readType(descriptor, position, method.referencedClasses));
+        }
+        method.parameterTypes = descriptorTypes;
+        // the generic signature is preferred, as long as it lines up with the descriptor
+        if (signature != null) {
+            Set<String> referenced = new LinkedHashSet<>();
+            List<String> signatureTypes = readParameterTypes(signature, referenced);
+            if (signatureTypes.size() == descriptorTypes.size()) {
+                method.parameterTypes = signatureTypes;
+                method.referencedClasses = referenced;
+            }
+        }
+        for (int i = 0; i < descriptorTypes.size(); i++) {
+            String parameterName = i < parameterNames.size() ? parameterNames.get(i) : null;
+            if (parameterName == null) {
+                parameterName = localNames.get(slots.get(i));
+            }
+            method.parameterNames.add(parameterName == null ? "arg" + i : parameterName);
+        }
+        return method;
+    }
+
+    /**
+     * Picks the names of the variables which are in scope from the start of
+     * the method, which are its parameters, out of a code attribute's local
+     * variable table, keyed by the slot they're held in
+     */
+    private void readLocalNames(Map<Integer, String> localNames) {
+        // the max stack and max locals
+        skip(4);
+        skip(buffer.getInt());
+        // each exception handler
+        skip(8 * u2());
+        int attributes = u2();
+        for (int i = 0; i < attributes; i++) {
+            String attribute = getString(u2());
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            if (LOCAL_VARIABLES.equals(attribute)) {
+                int count = u2();
+                for (int j = 0; j < count; j++) {
+                    int start = u2();
+                    skip(2);
+                    int localName = u2();
+                    skip(2);
+                    int index = u2();
+                    if (start == 0) {
+                        localNames.putIfAbsent(index, getString(localName));
+                    }
+                }
+            }
+            buffer.position(end);
+        }
+    }
+
+    private Annotation readAnnotation() {
+        Annotation annotation = new Annotation();
+        String type = getString(u2());
+        annotation.type = toSourceName(type.substring(1, type.length() - 1));
+        int pairs = u2();
+        for (int i = 0; i < pairs; i++) {
+            String element = getString(u2());
+            readElementValue(annotation, VALUE.equals(element));
+        }
+        return annotation;
+    }
+
+    private void readElementValue(Annotation annotation, boolean isValue) {
+        char tag = (char) buffer.get();
+        switch (tag) {
+            case 's':
+                int index = u2();
+                if (isValue) {
+                    annotation.value = getString(index);
+                }
+                break;
+            case 'e':
+                skip(4);
+                break;
+            case '@':
+                annotation.nested.add(readAnnotation());
+                break;
+            case '[':
+                int count = u2();
+                for (int i = 0; i < count; i++) {
+                    readElementValue(annotation, false);
+                }
+                break;
+            default:
+                // every other constant, and class literals
+                skip(2);
+        }
+    }
+
+    private void skipAttributes() {
+        int attributes = u2();
+        for (int i = 0; i < attributes; i++) {
+            skip(2);
+            skip(buffer.getInt());
+        }
+    }
+
+    private int u2() {
+        return buffer.getShort() & 0xFFFF;
+    }
+
+    private void skip(int count) {
+        buffer.position(buffer.position() + count);
+    }
+
+    private String getClassName(int index) {
+        return getString(buffer.getShort(offsets[index]) & 0xFFFF);
+    }
+
+    /**
+     * Decodes a string from the constant pool, the first time it's needed.
+     * Strings are stored in a modified UTF-8, where each char of the string
+     * is encoded separately, and nulls take up two bytes
+     */
+    private String getString(int index) {
+        String string = strings[index];
+        if (string != null) {
+            return string;
+        }
+        int offset = offsets[index];
+        int end = offset + 2 + (buffer.getShort(offset) & 0xFFFF);
+        StringBuilder decoded = new StringBuilder(end - offset - 2);
+        int i = offset + 2;
+        while (i < end) {
+            int b = buffer.get(i) & 0xFF;
+            if (b < 0x80) {
+                decoded.append((char) b);
+                i++;
+            } else if (b < 0xE0) {
+                decoded.append((char) (((b & 0x1F) << 6) | (buffer.get(i + 1) & 0x3F)));
+                i += 2;
+            } else {
+                decoded.append((char) (((b & 0x0F) << 12) | ((buffer.get(i + 1) & 0x3F) << 6) |
+                        (buffer.get(i + 2) & 0x3F)));
+                i += 3;
+            }
+        }
+        string = decoded.toString();
+        strings[index] = string;
+        return string;
+    }
+
+    /**
+     * Converts the parameters of a method's generic signature into java source
+     */
+    private static List<String> readParameterTypes(String signature, Set<String> referenced) {
+        int[] position = {0};
+        // skip over any type parameters of the method itself
+        int depth = 0;
+        while (signature.charAt(position[0]) != '(' || depth > 0) {
+            char c = signature.charAt(position[0]++);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            }
+        }
+        position[0]++;
+        List<String> types = new ArrayList<>();
+        while (signature.charAt(position[0]) != ')') {
+            types.add(readType(signature, position, referenced));
+        }
+        return types;
+    }
+
+    /**
+     * Converts a single type, from either a descriptor or a generic signature,
+     * into java source, recording any classes it references
+     *
+     * @param signature  - the descriptor or signature
+     * @param position   - the index the type starts at, which is moved past the type
+     * @param referenced - where to record the classes referenced
+     * @return String - the type, as it would be written in java source
+     */
+    private static String readType(String signature, int[] position, Set<String> referenced) {
+        StringBuilder type = new StringBuilder();
+        appendType(signature, position, referenced, type);
+        return type.toString();
+    }
+
+    private static void appendType(String signature, int[] position, Set<String> referenced, StringBuilder out) {
+        char c = signature.charAt(position[0]++);
+        switch (c) {
+            case 'B':
+                out.append("byte");
+                break;
+            case 'C':
+                out.append("char");
+                break;
+            case 'D':
+                out.append("double");
+                break;
+            case 'F':
+                out.append("float");
+                break;
+            case 'I':
+                out.append("int");
+                break;
+            case 'J':
+                out.append("long");
+                break;
+            case 'S':
+                out.append("short");
+                break;
+            case 'Z':
+                out.append("boolean");
+                break;
+            case 'V':
+                out.append("void");
+                break;
+            case '[':
+                appendType(signature, position, referenced, out);
+                out.append("[]");
+                break;
+            case 'T':
+                int end = signature.indexOf(';', position[0]);
+                out.append(signature, position[0], end);
+                position[0] = end + 1;
+                break;
+            case 'L':
+                appendClassType(signature, position, referenced, out);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown type '" + c + "' in " + signature);
+        }
+    }
+
+    private static void appendClassType(String signature, int[] position, Set<String> referenced, StringBuilder out) {
+        int start = out.length();
+        while (true) {
+            char c = signature.charAt(position[0]++);
+            if (c == ';') {
+                break;
+            } else if (c == '<') {
+                referenced.add(out.substring(start));
+                out.append('<');
+                boolean first = true;
+                while (signature.charAt(position[0]) != '>') {
+                    if (!first) {
+                        out.append(", ");
+                    }
+                    first = false;
+                    appendTypeArgument(signature, position, referenced, out);
+                }
+                position[0]++;
+                out.append('>');
+            } else if (c == '/' || c == '$' || c == '.') {
+                out.append('.');
+            } else {
+                out.append(c);
+            }
+        }
+        if (out.indexOf("<", start) < 0) {
+            referenced.add(out.substring(start));
+        }
+    }
+
+    private static void appendTypeArgument(String signature, int[] position, Set<String> referenced,
+                                           StringBuilder out) {
+        char c = signature.charAt(position[0]);
+        if (c == '*') {
+            out.append('?');
+            position[0]++;
+            return;
+        }
+        if (c == '+') {
+            out.append("? extends ");
+            position[0]++;
+        } else if (c == '-') {
+            out.append("? super ");
+            position[0]++;
+        }
+        appendType(signature, position, referenced, out);
+    }
+
+    private static String toSourceName(String internalName) {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Looks up the constants of enumerations by loading them from a compiled
+ * classpath, which is exact for any shape of enumeration, however its source
+ * is laid out. The classpath is loaded in isolation, with nothing but the
+ * JDK's own classes, including modules such as java.sql, as its parent, so
+ * neither the classes being loaded nor their dependencies clash with ours.
+ * Each class is only loaded once, and its constants (or the fact it isn't
+ * an enumeration) are remembered
+ */
+public class ClasspathEnumerations implements Closeable {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+    private static final List<String> NOT_FOUND = Collections.emptyList();
+
+    private URLClassLoader loader;
+    private Map<String, List<String>> constants = new ConcurrentHashMap<>();
+
+    /**
+     * Builds a lookup over the provided folders of classes and jars
+     *
+     * @param classpath - the folders of compiled classes, and jars, to load enumerations from
+     * @throws MalformedURLException
+     */
+    public ClasspathEnumerations(List<File> classpath) throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        for (File location : classpath) {
+            urls.add(location.toURI().toURL());
+        }
+        loader = new URLClassLoader(urls.toArray(new URL[0]), getPlatformLoader());
+    }
+
+    /**
+     * Finds the loader of the JDK's own classes. On java 8 that's the
+     * bootstrap loader, which is given as null, but from java 9 onwards the
+     * bootstrap loader only sees the core modules, and the rest, such as
+     * java.sql, are only seen through the platform loader
+     */
+    private static ClassLoader getPlatformLoader() {
+        try {
+            return (ClassLoader) ClassLoader.class.getMethod("getPlatformClassLoader").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.log(Level.WARNING, "Unable to find the platform class loader", e);
+            return null;
+        }
+    }
+
+    /**
+     * Splits up a classpath, in the platform's usual form
+     *
+     * @param classpath - the folders and jars, separated by the platform's path separator
+     * @return List - each of the folders and jars
+     */
+    public static List<File> split(String classpath) {
+        List<File> locations = new ArrayList<>();
+        for (String location : classpath.split(File.pathSeparator)) {
+            if (!location.trim().isEmpty()) {
+                locations.add(new File(location.trim()));
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Retrieves the constants of an enumeration, loading it if it hasn't
+     * been already. Nested classes may be separated from their enclosing class
+     * by either a '.', as they are in source, or a '$'
+     *
+     * @param name - the fully qualified name of the enumeration
+     * @return List - the constant names, in the order they're declared, or null if there is no such enumeration
+     */
+    public List<String> getConstants(String name) {
+        List<String> found = constants.computeIfAbsent(name, this::load);
+        return found == NOT_FOUND ? null : found;
+    }
+
+    private List<String> load(String name) {
+        String binaryName = name;
+        while (true) {
+            try {
+                Class<?> type = Class.forName(binaryName, false, loader);
+                if (!type.isEnum()) {
+                    return NOT_FOUND;
+                }
+                List<String> names = new ArrayList<>();
+                for (Object constant : type.getEnumConstants()) {
+                    names.add(((Enum<?>) constant).name());
+                }
+                return names;
+            } catch (ClassNotFoundException e) {
+                // perhaps a nested class, named as it is in source
+                int nested = binaryName.lastIndexOf('.');
+                if (nested < 0) {
+                    return NOT_FOUND;
+                }
+                binaryName = binaryName.substring(0, nested) + '$' + binaryName.substring(nested + 1);
+            } catch (LinkageError | RuntimeException e) {
+                // missing dependencies, or static initialisers which fail
+                log.log(Level.WARNING, "Unable to load enumeration '" + name + "' from the classpath", e);
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        loader.close();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads glue code from compiled classes, in folders or jars, rather than from
+ * source. Step annotations and parameter types are read directly from each
+ * class file, so no source needs to be parsed, and enumerations are built
+ * from their compiled constants. Each step is handed to the glue code parser
+ * as the annotation and method declaration it was compiled from, so steps
+ * are formatted exactly as they would be from source
+ */
+public class CompiledGlueReader {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+    private static final String CLASS = ".class";
+    private static final String JAR = ".jar";
+    private static final String META_INF = "META-INF/";
+
+    private KeywordMatcher keywords;
+    private Set<String> annotations;
+    private RunStats.Phase phase = new RunStats().getPhase(RunStats.PARSE);
+
+    /**
+     * Builds a reader recognising the default step keywords
+     */
+    public CompiledGlueReader() {
+        this(GlueCode.DEFAULT_KEYWORDS);
+    }
+
+    /**
+     * Builds a reader recognising annotations named after the provided step
+     * keywords, in any package
+     *
+     * @param keywords - the step keywords, without the '@'
+     */
+    public CompiledGlueReader(Collection<String> keywords) {
+        this.keywords = new KeywordMatcher(keywords);
+        this.annotations = new HashSet<>(this.keywords.getKeywords());
+    }
+
+    /**
+     * Records the time taken reading the classes, along with the classes and
+     * bytes read, into the provided measurements
+     *
+     * @param stats - the measurements of the run
+     */
+    public void setStats(RunStats stats) {
+        phase = stats.getPhase(RunStats.PARSE);
+    }
+
+    /**
+     * Reads every class within the provided locations, which may be folders
+     * of classes, jars, or single class files, merging the steps found into
+     * the provided glue code. Classes within a folder are read in name order
+     *
+     * @param locations - the folders, jars and class files to read
+     * @param glueCode  - the glue code to merge the steps and enumerations into
+     * @throws IOException
+     */
+    public void read(List<File> locations, GlueCode glueCode) throws IOException {
+        long start = System.nanoTime();
+        long allocated = RunStats.getAllocatedBytes();
+        try {
+            for (File location : locations) {
+                if (location.isDirectory()) {
+                    readFolder(location.toPath(), glueCode);
+                } else if (location.getName().endsWith(JAR)) {
+                    readJar(location, glueCode);
+                } else if (location.getName().endsWith(CLASS)) {
+                    readClass(location.toPath(), glueCode);
+                } else {
+                    log.log(Level.WARNING, "Skipping location which is not a folder, jar or class: " + location);
+                }
+            }
+        } finally {
+            phase.addNanos(System.nanoTime() - start);
+            phase.addAllocated(RunStats.getAllocatedBytes() - allocated);
+        }
+    }
+
+    private void readFolder(Path folder, GlueCode glueCode) throws IOException {
+        List<Path> classes;
+        try (Stream<Path> paths = Files.walk(folder)) {
+            classes = paths.filter(path -> path.toString().endsWith(CLASS) && Files.isRegularFile(path)).sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : classes) {
+            readClass(file, glueCode);
+        }
+    }
+
+    private void readClass(Path file, GlueCode glueCode) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            readClass(in, glueCode);
+        }
+    }
+
+    private void readJar(File jar, GlueCode glueCode) throws IOException {
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                // versioned classes, and module descriptors, aren't glue code
+                if (entry.isDirectory() || !entry.getName().endsWith(CLASS) || entry.getName().startsWith(META_INF) ||
+                        entry.getName().endsWith("module-info.class")) {
+                    continue;
+                }
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    readClass(in, glueCode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a single compiled class, merging any steps it defines into the
+     * provided glue code. If the class is an enumeration, its constants are
+     * recorded, in case a step refers to it
+     *
+     * @param in       - the contents of the class file
+     * @param glueCode - the glue code to merge the steps and enumerations into
+     * @throws IOException
+     */
+    public void readClass(InputStream in, GlueCode glueCode) throws IOException {
+        ClassFile classFile = ClassFile.read(in);
+        phase.addFiles(1);
+        phase.addBytes(classFile.getLength());
+        if (classFile.isEnum()) {
+            glueCode.getEnumInfo().addCompiledEnumeration(classFile.getName(), classFile.getEnumConstants());
+        }
+        GlueCode parsed = new GlueCode(keywords);
+        for (ClassFile.Method method : classFile.getMethods()) {
+            List<ClassFile.Annotation> steps = new ArrayList<>();
+            for (ClassFile.Annotation annotation : method.getAnnotations()) {
+                addSteps(annotation, steps);
+            }
+            if (steps.isEmpty()) {
+                continue;
+            }
+            for (String referenced : method.getReferencedClasses()) {
+                parsed.getEnumInfo().addClassInclude(referenced);
+            }
+            List<String> parameters = new ArrayList<>();
+            for (int i = 0; i < method.getParameterTypes().size(); i++) {
+                parameters.add(method.getParameterTypes().get(i) + " " + method.getParameterNames().get(i));
+            }
+            for (ClassFile.Annotation step : steps) {
+                String type = step.getType();
+                parsed.processStep(type.substring(type.lastIndexOf('.') + 1), step.getValue(), parameters);
+            }
+        }
+        glueCode.addGlueCode(parsed);
+    }
+
+    /**
+     * Picks out the step annotations, including any held within a repeatable
+     * annotation's container
+     */
+    private void addSteps(ClassFile.Annotation annotation, List<ClassFile.Annotation> steps) {
+        String type = annotation.getType();
+        if (annotation.getValue() != null && annotations.contains(type.substring(type.lastIndexOf('.') + 1))) {
+            steps.add(annotation);
+        }
+        for (ClassFile.Annotation nested : annotation.getNested()) {
+            addSteps(nested, steps);
+        }
+    }
+}
@@ -26,18 +26,44 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class EnumInfo {
 
     private Logger log = Logger.getLogger("GherkinBuilder");
+    private static final String JAVA = ".java";
+    private static final String[] MODIFIERS = {"public", "protected", "private", "static", "strictfp"};
+    private static final String ENUM = "enum";
+    private static final String NEW_LINE = "\n";
 
     private List<String> includes;
     private List<String> enumerations;
+    private Set<String> knownIncludes = new HashSet<>();
+    private Set<String> knownEnumerations = new HashSet<>();
+    private Map<String, List<String>> includesByName = new HashMap<>();
+    private Map<String, File> sourceIndex;
+    private Map<File, Map<String, String>> builtEnumerations = new HashMap<>();
+    private Map<File, Long> builtModified = new HashMap<>();
+    private boolean indexReused = false;
+    private Map<String, String> compiledEnumerations = new HashMap<>();
+    private ClasspathEnumerations classpath;
     private List<String> baseDirectories = new ArrayList<>();
+    private long filesRead = 0;
+    private long linesRead = 0;
+    private long bytesRead = 0;
 
 
     public EnumInfo(List<String> baseDirectories) {
@@ -57,7 +83,7 @@ public class EnumInfo {
     }
 
     public void addGlueCodeEnumeration(String enumeration) {
-        if (!enumerations.contains(enumeration)) {
+        if (knownEnumerations.add(enumeration)) {
             enumerations.add(enumeration);
         }
     }
@@ -73,62 +99,327 @@ public class EnumInfo {
     }
 
     public void addClassInclude(String include) {
-        if (!includes.contains(include)) {
+        if (knownIncludes.add(include)) {
             includes.add(include);
+            String name = include.substring(include.lastIndexOf('.') + 1);
+            includesByName.computeIfAbsent(name, k -> new ArrayList<>()).add(include);
         }
     }
 
+    /**
+     * Provides the constants of an enumeration read from a compiled class, so
+     * that it's built from those, rather than from its source
+     *
+     * @param name      - the fully qualified name of the enumeration
+     * @param constants - the constant names, in the order they're declared
+     */
+    public void addCompiledEnumeration(String name, List<String> constants) {
+        String enumName = name.substring(name.lastIndexOf('.') + 1);
+        compiledEnumerations.put(name, toArray(enumName, String.join("\",\"", constants)));
+    }
+
+    /**
+     * Loads enumerations from the provided compiled classpath, rather than
+     * reading them from their source. Any enumerations which can't be loaded
+     * are still read from their source
+     *
+     * @param classpath - the compiled classes to load enumerations from
+     */
+    public void setClasspath(ClasspathEnumerations classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Finds the enumeration amongst those read from compiled classes, or
+     * loaded from the classpath, based on the includes identified while parsing
+     *
+     * @param enumeration - the simple name of the enumeration
+     * @return String - the formatted enumeration, or null if it wasn't compiled
+     */
+    private String getCompiledEnum(String enumeration) {
+        if (compiledEnumerations.isEmpty() && classpath == null) {
+            return null;
+        }
+        List<String> includes = includesByName.getOrDefault(enumeration, Collections.emptyList());
+        for (String include : includes) {
+            String compiled = compiledEnumerations.get(include);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        if (classpath != null) {
+            for (String include : includes) {
+                List<String> constants = classpath.getConstants(include);
+                if (constants != null) {
+                    addCompiledEnumeration(include, constants);
+                    return compiledEnumerations.get(include);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexes every java file within the base directories by the fully
+     * qualified name of the class it defines, so that enumerations can be
+     * located without checking the file system for each possible location.
+     * This is done automatically the first time an enumeration file is needed,
+     * but can be called again to pick up any newly added files
+     *
+     * @throws IOException
+     */
+    public void indexSources() throws IOException {
+        Map<String, File> index = new HashMap<>();
+        if (baseDirectories != null) {
+            for (String baseDirectory : new LinkedHashSet<>(baseDirectories)) {
+                Path base = Paths.get(baseDirectory);
+                // nothing is excluded, as packages can share their names with build output folders
+                JavaFileScanner scanner = new JavaFileScanner(Collections.singletonList(base.toFile()),
+                        Collections.emptySet());
+                for (Path file : scanner.scan()) {
+                    String name = base.relativize(file).toString();
+                    name = name.substring(0, name.length() - JAVA.length()).replace(File.separatorChar, '.');
+                    // the first base directory containing the class wins, as it did when checking each directory
+                    index.putIfAbsent(name, file.toFile());
+                }
+            }
+        }
+        sourceIndex = index;
+    }
+
     public String buildEnum(BufferedReader br, String enumeration) throws IOException {
+        return buildEnums(br, Collections.singleton(enumeration)).get(enumeration);
+    }
+
+    /**
+     * Reads through the provided source once, building each of the requested
+     * enumerations it defines. Reading stops as soon as all of them are found
+     *
+     * @param br           - the source of the file defining the enumerations
+     * @param enumerations - the simple names of the enumerations to build
+     * @return Map - the formatted enumerations, keyed by their name. Any
+     * enumerations which weren't found are not included
+     * @throws IOException
+     */
+    public Map<String, String> buildEnums(BufferedReader br, Collection<String> enumerations) throws IOException {
+        Map<String, String> built = new HashMap<>();
         String line;
-        StringBuilder value = new StringBuilder();
-        Boolean start = false;
-        Boolean end = false;
-        while ((line = br.readLine()) != null) {
-            String ln = line.trim();
-            if (start) {
-                value.append(ln);
+        String enumeration = null;
+        ConstantScanner scanner = null;
+        while (built.size() < enumerations.size() && (line = br.readLine()) != null) {
+            linesRead++;
+            if (enumeration == null) {
+                String declared = getDeclaredEnum(line.trim());
+                if (declared == null || built.containsKey(declared) || !enumerations.contains(declared)) {
+                    continue;
+                }
+                enumeration = declared;
+                scanner = new ConstantScanner(false);
+            }
+            scanner.scan(line, 0, line.length());
+            scanner.scan(NEW_LINE, 0, NEW_LINE.length());
+            if (scanner.done) {
+                built.put(enumeration, scanner.toArray(enumeration));
+                enumeration = null;
             }
-            if (ln.startsWith("public enum " + enumeration) || ln.startsWith("enum " + enumeration)) {
-                start = true;
-                value.append(ln);
+        }
+        return built;
+    }
+
+    /**
+     * Determines the name of the enumeration declared on the provided line, if any
+     *
+     * @param line - a trimmed line of java source
+     * @return String - the name of the enumeration declared, or null if the line doesn't declare one
+     */
+    private static String getDeclaredEnum(String line) {
+        int start = 0;
+        // skip any modifiers, as nested enumerations can be private, protected or static
+        boolean declared = false;
+        while (!declared) {
+            int end = start;
+            while (end < line.length() && Character.isJavaIdentifierPart(line.charAt(end))) {
+                end++;
             }
-            if (start && (ln.endsWith(";") || ln.endsWith("}"))) {
-                end = true;
+            if (end == line.length() || !Character.isWhitespace(line.charAt(end))) {
+                return null;
             }
-            if (end) {
-                return formatEnumValues(value.toString());
+            declared = isWord(line, start, end, ENUM);
+            if (!declared && !isModifier(line, start, end)) {
+                return null;
+            }
+            start = end;
+            while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+                start++;
             }
         }
-        return null;
+        int end = start;
+        while (end < line.length() && Character.isJavaIdentifierPart(line.charAt(end))) {
+            end++;
+        }
+        return end > start ? line.substring(start, end) : null;
+    }
+
+    private static boolean isModifier(String line, int start, int end) {
+        for (String modifier : MODIFIERS) {
+            if (isWord(line, start, end, modifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWord(String line, int start, int end, String word) {
+        return end - start == word.length() && line.startsWith(word, start);
     }
 
+    /**
+     * Builds each of the enumerations identified while parsing. Enumerations
+     * are grouped by the file defining them, so each file is only read once,
+     * and enumerations are only ever built once, no matter how many times they
+     * are requested. Enumerations read from compiled classes aren't read
+     * from their source at all
+     *
+     * @return List - the formatted enumerations, in the order they were identified
+     * @throws IOException
+     */
     public List<String> getStepEnumerations() throws IOException {
-        List<String> enums = new ArrayList<>();
+        Map<String, File> enumFiles = new HashMap<>();
+        Map<File, List<String>> toBuild = new LinkedHashMap<>();
         for (String enumeration : enumerations) {
-            try (BufferedReader br = new BufferedReader(new FileReader(getEnumFile(enumeration)));) {
-                enums.add(buildEnum(br, enumeration));
+            if (getCompiledEnum(enumeration) != null) {
+                continue;
+            }
+            File enumFile = getEnumFile(enumeration);
+            enumFiles.put(enumeration, enumFile);
+            if (!builtEnumerations.getOrDefault(enumFile, Collections.emptyMap()).containsKey(enumeration)) {
+                toBuild.computeIfAbsent(enumFile, k -> new ArrayList<>()).add(enumeration);
+            }
+        }
+        for (Map.Entry<File, List<String>> enumFile : toBuild.entrySet()) {
+            filesRead++;
+            bytesRead += enumFile.getKey().length();
+            builtModified.put(enumFile.getKey(), enumFile.getKey().lastModified());
+            try (BufferedReader br = new BufferedReader(new FileReader(enumFile.getKey()));) {
+                Map<String, String> built = buildEnums(br, enumFile.getValue());
+                Map<String, String> fromFile = builtEnumerations.computeIfAbsent(enumFile.getKey(),
+                        k -> new HashMap<>());
+                for (String enumeration : enumFile.getValue()) {
+                    fromFile.put(enumeration, built.get(enumeration));
+                }
             }
         }
+        List<String> enums = new ArrayList<>();
+        for (String enumeration : enumerations) {
+            String compiled = getCompiledEnum(enumeration);
+            enums.add(compiled != null ? compiled : builtEnumerations.get(enumFiles.get(enumeration)).get(enumeration));
+        }
         return enums;
     }
 
-    public File getEnumFile(String enumeration) throws IOException {
-        for (String include : getClassIncludes()) {
-            if (include.endsWith("." + enumeration)) {
-                include = include.replaceAll("\\.", "/");
-                for (String baseDirectory : baseDirectories) {
-                    File enumFile = new File(baseDirectory + include + ".java");
-                    if (enumFile.exists()) {
-                        return enumFile;
-                    }
-                    String subInclude = include.substring(0, include.lastIndexOf('/'));
-                    enumFile = new File(baseDirectory + subInclude + ".java");
-                    if (enumFile.exists()) {
-                        return enumFile;
-                    }
-                }
+    /**
+     * Carries over the source index, and the enumerations already built, from
+     * another parser of the same base directories, so that a long running
+     * process doesn't need to re-index or re-read unchanged sources each time
+     * the glue code is re-parsed. Sources which have since changed should be
+     * passed to sourceChanged, but as the sources may not all be watched, any
+     * enumeration whose file has been modified since it was built is dropped
+     * too, and the index is rebuilt if an enumeration can't be found in it
+     *
+     * @param previous - the enumeration info from an earlier parse
+     */
+    public void reuseSources(EnumInfo previous) {
+        sourceIndex = previous.sourceIndex;
+        indexReused = sourceIndex != null;
+        builtEnumerations = previous.builtEnumerations;
+        builtModified = previous.builtModified;
+        classpath = previous.classpath;
+        builtEnumerations.keySet().removeIf(file -> {
+            Long modified = builtModified.get(file);
+            return modified == null || modified != file.lastModified();
+        });
+        builtModified.keySet().retainAll(builtEnumerations.keySet());
+    }
+
+    /**
+     * Forgets anything built from the provided source file, and updates the
+     * source index, if one has been built, to reflect the file having been
+     * created, modified or deleted
+     *
+     * @param file - the java source file which changed
+     */
+    public void sourceChanged(Path file) {
+        builtEnumerations.remove(file.toFile());
+        builtModified.remove(file.toFile());
+        if (sourceIndex == null || baseDirectories == null) {
+            return;
+        }
+        for (String baseDirectory : new LinkedHashSet<>(baseDirectories)) {
+            Path base = Paths.get(baseDirectory);
+            if (!file.startsWith(base) || !file.toString().endsWith(JAVA)) {
+                continue;
+            }
+            String name = base.relativize(file).toString();
+            name = name.substring(0, name.length() - JAVA.length()).replace(File.separatorChar, '.');
+            if (file.toFile().isFile()) {
+                sourceIndex.putIfAbsent(name, file.toFile());
+            } else {
+                sourceIndex.remove(name, file.toFile());
             }
         }
+    }
+
+    /**
+     * Returns the number of source files read while building enumerations
+     *
+     * @return long - the number of files read
+     */
+    public long getFilesRead() {
+        return filesRead;
+    }
+
+    /**
+     * Returns the number of source lines read while building enumerations.
+     * Files are only read up until the enumerations needed from them are built
+     *
+     * @return long - the number of lines read
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * Returns the size of the source files read while building enumerations
+     *
+     * @return long - the number of bytes in the files read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Locates the file defining the provided enumeration, based on the
+     * includes identified while parsing. The enumeration may be defined in its
+     * own file, or nested within another class
+     *
+     * @param enumeration - the simple name of the enumeration
+     * @return File - the java file the enumeration is defined in
+     * @throws IOException
+     */
+    public File getEnumFile(String enumeration) throws IOException {
+        if (sourceIndex == null) {
+            indexSources();
+        }
+        File enumFile = findEnumFile(enumeration);
+        // a reused index may be missing sources added, or deleted, outside of the watched folders
+        if (indexReused && (enumFile == null || !enumFile.isFile())) {
+            indexSources();
+            indexReused = false;
+            enumFile = findEnumFile(enumeration);
+        }
+        if (enumFile != null) {
+            return enumFile;
+        }
         String error = "There is a problem with your enum declaration. The defining enumeration file " +
                 "is not properly identified. Please update your code appropriately where referencing '" + enumeration +
                 "'";
@@ -136,21 +427,143 @@ public class EnumInfo {
         throw new MalformedMethod(error);
     }
 
+    private File findEnumFile(String enumeration) {
+        for (String include : includesByName.getOrDefault(enumeration, Collections.emptyList())) {
+            // check the include itself, and then each class it might be nested within
+            String name = include;
+            while (name.lastIndexOf('.') > 0) {
+                File enumFile = sourceIndex.get(name);
+                if (enumFile != null) {
+                    return enumFile;
+                }
+                name = name.substring(0, name.lastIndexOf('.'));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Formats the source of an enumeration into a javascript array of its
+     * constant names
+     *
+     * @param value - the source of the enumeration, from its declaration onwards
+     * @return String - a javascript array declaration, named after the enumeration
+     */
     public String formatEnumValues(String value) {
-        int start = value.indexOf("enum");
-        String trim = value.substring(start + 5);
-        String enumName = trim.split(" ")[0];
-        String enumVals = trim.substring(trim.indexOf('{') + 1);
-        while (enumVals.endsWith(";") || enumVals.endsWith("}")) {
-            enumVals = enumVals.substring(0, enumVals.length() - 1);
-        }
-        while (enumVals.contains("(")) {
-            enumVals = enumVals.replaceAll("(\\([^(\\)|\\()]*\\))", "");
-        }
-        enumVals = enumVals.replace(" ", "");
-        String array = "var " + enumName + " = new Array(\"";
-        array += enumVals.replace(",", "\",\"");
-        array += "\");";
-        return array;
-    }
-}
\ No newline at end of file
+        // the keyword, and the space following it
+        int start = value.indexOf(ENUM) + ENUM.length() + 1;
+        int end = start;
+        while (end < value.length() && Character.isJavaIdentifierPart(value.charAt(end))) {
+            end++;
+        }
+        String enumName = value.substring(Math.min(start, value.length()), end);
+        int body = value.indexOf('{', end) + 1;
+        ConstantScanner scanner = new ConstantScanner(true);
+        scanner.scan(value, body > 0 ? body : start, value.length());
+        return scanner.toArray(enumName);
+    }
+
+    private static String toArray(String enumName, CharSequence constants) {
+        return "var " + enumName + " = new Array(\"" + constants + "\");";
+    }
+
+    /**
+     * Picks the constant names out of the body of an enumeration in a single
+     * pass. Constructor arguments, constant bodies, annotations, comments and
+     * literals are skipped by tracking how deeply nested they are, rather than
+     * by removing them, so each character is only examined once. The source
+     * can be provided all at once, or a piece at a time
+     */
+    private static class ConstantScanner {
+        private StringBuilder constants = new StringBuilder();
+        private boolean inBody;
+        private boolean done;
+        private int depth = 0;
+        private char quote = 0;
+        private boolean lineComment;
+        private boolean blockComment;
+        private boolean annotation;
+        private boolean named;
+        private boolean inName;
+
+        ConstantScanner(boolean inBody) {
+            this.inBody = inBody;
+        }
+
+        void scan(CharSequence text, int from, int to) {
+            for (int i = from; i < to && !done; i++) {
+                char c = text.charAt(i);
+                char next = i + 1 < to ? text.charAt(i + 1) : 0;
+                if (lineComment) {
+                    lineComment = c != '\n';
+                } else if (blockComment) {
+                    if (c == '*' && next == '/') {
+                        blockComment = false;
+                        i++;
+                    }
+                } else if (quote != 0) {
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '/' && (next == '/' || next == '*')) {
+                    endName();
+                    lineComment = next == '/';
+                    blockComment = next == '*';
+                    i++;
+                } else if (c == '"' || c == '\'') {
+                    endName();
+                    quote = c;
+                } else if (!inBody) {
+                    // skip over the declaration, up to the start of the body
+                    inBody = c == '{';
+                } else {
+                    scanBody(c);
+                }
+            }
+        }
+
+        private void scanBody(char c) {
+            if (c == '(' || c == '{' || c == '[') {
+                endName();
+                depth++;
+            } else if (c == ')' || c == '}' || c == ']') {
+                endName();
+                // closing the enumeration itself, when there is nothing after the constants
+                done = depth == 0;
+                depth = Math.max(0, depth - 1);
+            } else if (depth > 0) {
+                return;
+            } else if (c == ',' || c == ';') {
+                endName();
+                named = false;
+                done = c == ';';
+            } else if (c == '@') {
+                annotation = true;
+            } else if (Character.isJavaIdentifierPart(c)) {
+                if (inName) {
+                    constants.append(c);
+                } else if (!annotation && !named) {
+                    if (constants.length() > 0) {
+                        constants.append("\",\"");
+                    }
+                    constants.append(c);
+                    inName = true;
+                    named = true;
+                }
+            } else if (c != '.' || !annotation) {
+                endName();
+            }
+        }
+
+        private void endName() {
+            inName = false;
+            annotation = false;
+        }
+
+        String toArray(String enumName) {
+            return EnumInfo.toArray(enumName, constants);
+        }
+    }
+}
@@ -21,8 +21,21 @@
 package com.coveros;
 
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,49 +43,531 @@ public class GenerateStepDefs {
 
     private static Logger log = Logger.getLogger("GherkinBuilder");
     private static final String STEPS = "public/js/steps.js";
+    static final String THREADS = "threads";
+    static final String CACHE = "cache";
+    private static final String CACHE_HASH = "cache-hash";
+    private static final String REPORT = "report";
+    private static final String WATCH = "watch";
+    private static final String MMAP = "mmap";
+    private static final String CLASSES = "classes";
+    private static final String CLASSPATH = "classpath";
+    static final String STREAM = "stream";
+    private static final String SERVE = "serve";
+    private static final String INTERVAL = "interval";
+    private static final String DAEMON = "daemon";
+    private static final String DAEMON_DIR = "daemon-dir";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_INTERVAL = 10;
+    private static final String DEFAULT_REPORT = "public/js/steps-report.json";
+    private static final String SPOOL = ".steps";
+    // how many files, per thread, may be parsed ahead of the one being merged
+    private static final int PARSE_AHEAD = 4;
 
     private GenerateStepDefs() {
     }
 
     public static void main(String[] args) throws Exception {
-        GlueCode glueCode = new GlueCode();
-
+        Map<String, String> options = Outputs.checkOptions(args);
+        // keep the generator warm between runs, waiting on requests from StepClient, if asked to
+        if (options.containsKey(DAEMON)) {
+            daemon(options);
+            return;
+        }
         List<File> stepDirs = Outputs.checkInputs(args);
-        List<String> fileDefs = new ArrayList<>();
-        for (File stepDir : stepDirs ) {
-            fileDefs.addAll( Outputs.listFilesForFolder(stepDir) );
-            glueCode.addBaseDirectory(stepDir.getAbsolutePath().substring(0, stepDir.getAbsolutePath().indexOf
-                    ("src/main/java/") + 14));
-        }
-
-        // parse through our step definitions
-        for (String file : fileDefs) {
-            String line;
-            try (FileReader fr = new FileReader(file); BufferedReader br = new BufferedReader(fr);) {
-                while ((line = br.readLine()) != null) {
-                    glueCode.processLine(line);
-                }
+        int threads = Outputs.getIntOption(options, THREADS, Runtime.getRuntime().availableProcessors());
+
+        // keep the steps up to date as the glue code changes, if asked to
+        if (options.containsKey(WATCH)) {
+            if (options.containsKey(CLASSES)) {
+                String error = "Compiled classes can't be watched, only glue code source folders";
+                log.log(Level.SEVERE, error);
+                throw new IOException(error);
             }
+            watch(stepDirs, options, threads);
+            return;
         }
-        // write out to our steps file
-        try (BufferedWriter buffer = new BufferedWriter(new FileWriter(STEPS))) {
-            // write our enumerations
-            buffer.write("//our enumerations\n");
-            for (String enumeration : glueCode.getEnumInfo().getStepEnumerations()) {
-                if (enumeration != null) {
-                    buffer.write(enumeration);
-                    buffer.write("\n");
-                }
+
+        StepGenerator generator = getGenerator(options, stepDirs, threads, null);
+        // serve the steps from memory, re-parsing the glue code every so often, if asked to
+        if (options.containsKey(SERVE)) {
+            serve(generator, options, threads);
+            return;
+        }
+        generate(generator, options, null);
+    }
+
+    /**
+     * Sets up a generator from the provided program options
+     *
+     * @param options  - the provided program options
+     * @param stepDirs - the provided glue code locations
+     * @param threads  - the number of threads to parse the glue code with
+     * @param base     - the folder relative paths in the options are within, or null for the working folder
+     * @return StepGenerator - the configured generator, without any output
+     */
+    static StepGenerator getGenerator(Map<String, String> options, List<File> stepDirs, int threads, File base) {
+        StepGenerator generator = new StepGenerator().setKeywords(Outputs.getKeywords(options))
+                .setExcludes(Outputs.getExcludes(options)).setThreads(threads).setMapped(options.containsKey(MMAP))
+                .setClasses(options.containsKey(CLASSES));
+        for (File stepDir : stepDirs) {
+            generator.addRoot(stepDir);
+        }
+        // load enumerations from compiled classes, rather than reading their source, if asked to
+        if (options.containsKey(CLASSPATH)) {
+            List<File> classpath = new ArrayList<>();
+            for (File location : ClasspathEnumerations.split(options.get(CLASSPATH))) {
+                classpath.add(resolve(base, location.getPath()));
+            }
+            generator.setClasspath(classpath);
+        }
+        // only re-parse files which changed since the last run, if asked to
+        if (options.containsKey(CACHE)) {
+            generator.setCache(resolve(base, options.get(CACHE)), options.containsKey(CACHE_HASH));
+        }
+        return generator;
+    }
+
+    /**
+     * Generates the steps file, then logs, and reports on if asked to, how
+     * long each phase of the run took
+     *
+     * @param generator - the configured generator
+     * @param options   - the provided program options
+     * @param base      - the folder relative paths in the options are within, or null for the working folder
+     * @return RunStats - the measurements of the run
+     * @throws IOException
+     */
+    static RunStats generate(StepGenerator generator, Map<String, String> options, File base) throws IOException {
+        generator.setStreaming(options.containsKey(STREAM)).setOutput(resolve(base, STEPS));
+        RunStats stats = generator.generate().getStats();
+        if (options.containsKey(CACHE)) {
+            log.log(Level.INFO, "Re-used " + stats.getValue("cacheHits") + " cached files, parsed " +
+                    stats.getValue("cacheMisses") + " files");
+        }
+        writeReport(stats, options, base);
+        return stats;
+    }
+
+    /**
+     * Determines whether the provided program options ask for a process which
+     * keeps running, rather than generating the steps file once
+     *
+     * @param options - the provided program options
+     * @return boolean - whether the options watch, serve, or start a daemon
+     */
+    static boolean isLongRunning(Map<String, String> options) {
+        return options.containsKey(WATCH) || options.containsKey(SERVE) ||
+                options.containsKey(DAEMON);
+    }
+
+    /**
+     * Resolves a path from the program options, relative paths being within
+     * the provided folder
+     */
+    static File resolve(File base, String path) {
+        File file = new File(path);
+        return base == null || file.isAbsolute() ? file : new File(base, path);
+    }
+
+    private static void daemon(Map<String, String> options) throws IOException, InterruptedException {
+        File directory = options.containsKey(DAEMON_DIR) ? new File(options.get(DAEMON_DIR)) : StepDaemon.DEFAULT_DIRECTORY;
+        int threads = Outputs.getIntOption(options, THREADS, Runtime.getRuntime().availableProcessors());
+        try (StepDaemon daemon = new StepDaemon(directory)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            daemon.start(threads);
+            daemon.await();
+        }
+    }
+
+    private static void serve(StepGenerator generator, Map<String, String> options, int threads)
+            throws IOException, InterruptedException {
+        int port = "true".equals(options.get(SERVE)) ? DEFAULT_PORT : Outputs.getIntOption(options, SERVE, DEFAULT_PORT);
+        int interval = Outputs.getIntOption(options, INTERVAL, DEFAULT_INTERVAL);
+        try (StepServer server = new StepServer(generator)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            server.start(new InetSocketAddress(port), threads);
+            if (interval > 0) {
+                server.refreshEvery(interval, TimeUnit.SECONDS);
             }
+            server.await();
+        }
+    }
+
+    private static void watch(List<File> stepDirs, Map<String, String> options, int threads) throws IOException {
+        GlueCodeReader reader = new GlueCodeReader(Outputs.getKeywords(options)).setMapped(options.containsKey(MMAP));
+        List<String> baseDirectories = new ArrayList<>();
+        for (File stepDir : stepDirs) {
+            baseDirectories.add(StepGenerator.getSourceRoot(stepDir));
+        }
+        try (ClasspathEnumerations classpath = options.containsKey(CLASSPATH) ?
+                new ClasspathEnumerations(ClasspathEnumerations.split(options.get(CLASSPATH))) : null;
+             StepWatcher watcher = new StepWatcher(stepDirs, Outputs.getExcludes(options), baseDirectories,
+                     new File(STEPS), threads)) {
+            watcher.setReader(reader);
+            watcher.setClasspath(classpath);
+            watcher.start();
+            log.log(Level.INFO, "Watching " + watcher.getFiles() + " glue code files for changes");
+            watcher.watch();
+        }
+    }
+
+    /**
+     * Logs how long each phase of the run took, and writes out the report of
+     * those measurements, if one was asked for
+     */
+    private static void writeReport(RunStats stats, Map<String, String> options, File base) {
+        for (RunStats.Phase phase : stats.getPhases()) {
+            log.log(Level.INFO, phase.toString());
+        }
+        if (options.containsKey(REPORT)) {
+            String report = "true".equals(options.get(REPORT)) ? DEFAULT_REPORT : options.get(REPORT);
+            try {
+                stats.writeJson(resolve(base, report));
+            } catch (IOException e) {
+                log.log(Level.SEVERE, "Some error occurred writing to '" + report + "'", e);
+            }
+        }
+    }
+
+    /**
+     * Writes out the enumerations and steps identified in the glue code, as
+     * javascript to be consumed by the gherkin builder
+     *
+     * @param glueCode - the parsed glue code
+     * @param output   - the file to write the javascript to
+     * @throws IOException
+     */
+    public static void writeSteps(GlueCode glueCode, File output) throws IOException {
+        writeSteps(glueCode, output, new RunStats());
+    }
+
+    /**
+     * Writes out the enumerations and steps identified in the glue code,
+     * recording the time taken building the enumerations, and writing the
+     * steps, into the provided measurements
+     *
+     * @param glueCode - the parsed glue code
+     * @param output   - the file to write the javascript to
+     * @param stats    - the measurements of the run
+     * @throws IOException
+     */
+    public static void writeSteps(GlueCode glueCode, File output, RunStats stats) throws IOException {
+        List<String> enumerations = getStepEnumerations(glueCode.getEnumInfo(), stats);
+
+        RunStats.Phase write = stats.getPhase(RunStats.WRITE);
+        long start = System.nanoTime();
+        long allocated = RunStats.getAllocatedBytes();
+        long lines;
+        try (BufferedWriter buffer = new BufferedWriter(new FileWriter(output))) {
+            lines = writeSteps(enumerations, glueCode.getGlueCodeSteps(), buffer);
+        } finally {
+            write.addNanos(System.nanoTime() - start);
+            write.addAllocated(RunStats.getAllocatedBytes() - allocated);
+        }
+        write.addFiles(1);
+        write.addLines(lines);
+        write.addBytes(output.length());
+    }
+
+    /**
+     * Parses each of the provided files, writing the steps found out as each
+     * file is parsed, rather than gathering them all up first. Only the
+     * includes and enumerations are merged into the provided glue code, so
+     * memory use doesn't grow with the number of steps. The steps are spooled
+     * to a file alongside the output, and once every file has been parsed, the
+     * enumerations are written, followed by the spooled steps, so the output
+     * is identical to parsing the files, and then writing them out. The time
+     * taken spooling the steps is recorded as part of parsing. A cache holds
+     * on to every file's steps until it's saved, so memory only stays flat
+     * without one
+     *
+     * @param files    - the glue code files to parse, which are iterated over only once
+     * @param glueCode - the glue code to merge the includes and enumerations into
+     * @param output   - the file to write the javascript to
+     * @param threads  - the number of threads to parse the files with
+     * @param cache    - the previously parsed results, or null to parse every file
+     * @param stats    - the measurements of the run
+     * @param reader   - reads each glue code file
+     * @throws IOException
+     */
+    public static void streamSteps(Iterable<Path> files, GlueCode glueCode, File output, int threads,
+                                   ParseCache cache, RunStats stats, GlueCodeReader reader) throws IOException {
+        File spool = new File(output.getPath() + SPOOL);
+        try {
+            long[] steps = new long[1];
+            try (BufferedWriter buffer = new BufferedWriter(new FileWriter(spool))) {
+                parseEach(files, cache, reader, threads, stats, (file, parsed) -> {
+                    try {
+                        for (String step : parsed.getGlueCodeSteps()) {
+                            buffer.write(step);
+                            buffer.write("\n");
+                            steps[0]++;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    glueCode.addEnumInfo(parsed);
+                });
+            }
+            List<String> enumerations = getStepEnumerations(glueCode.getEnumInfo(), stats);
+
+            RunStats.Phase write = stats.getPhase(RunStats.WRITE);
+            long start = System.nanoTime();
+            long allocated = RunStats.getAllocatedBytes();
+            long lines;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+                // the spooled steps were written in the same encoding, so they can be copied across as is
+                Writer writer = new OutputStreamWriter(out);
+                lines = writeEnumerations(enumerations, writer);
+                writer.flush();
+                Files.copy(spool.toPath(), out);
+            } finally {
+                write.addNanos(System.nanoTime() - start);
+                write.addAllocated(RunStats.getAllocatedBytes() - allocated);
+            }
+            write.addFiles(1);
+            write.addLines(lines + steps[0]);
+            write.addBytes(output.length());
+        } finally {
+            Files.deleteIfExists(spool.toPath());
+        }
+    }
+
+    /**
+     * Builds the enumerations used by the steps, recording the time taken,
+     * and the enumeration files read, into the provided measurements
+     */
+    private static List<String> getStepEnumerations(EnumInfo enumInfo, RunStats stats) throws IOException {
+        RunStats.Phase enums = stats.getPhase(RunStats.ENUMERATIONS);
+        long start = System.nanoTime();
+        long allocated = RunStats.getAllocatedBytes();
+        List<String> enumerations = enumInfo.getStepEnumerations();
+        enums.addNanos(System.nanoTime() - start);
+        enums.addAllocated(RunStats.getAllocatedBytes() - allocated);
+        enums.addFiles(enumInfo.getFilesRead());
+        enums.addLines(enumInfo.getLinesRead());
+        enums.addBytes(enumInfo.getBytesRead());
+        return enumerations;
+    }
+
+    /**
+     * Writes out the enumerations and steps identified in the glue code, as
+     * javascript to be consumed by the gherkin builder, to the provided
+     * writer, which is left open
+     *
+     * @param glueCode - the parsed glue code
+     * @param writer   - where to write the javascript
+     * @throws IOException
+     */
+    public static void writeSteps(GlueCode glueCode, Writer writer) throws IOException {
+        writeSteps(glueCode.getEnumInfo().getStepEnumerations(), glueCode.getGlueCodeSteps(), writer);
+    }
+
+    /**
+     * @return long - the number of lines written
+     */
+    static long writeSteps(List<String> enumerations, List<String> steps, Writer buffer) throws IOException {
+        long lines = writeEnumerations(enumerations, buffer);
+        for (String step : steps) {
+            buffer.write(step);
             buffer.write("\n");
-            // write our old lines
-            buffer.write("//our steps\n");
-            for (String step : glueCode.getGlueCodeSteps()) {
-                buffer.write(step);
+            lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * Writes out the enumerations, along with the headers, leaving the writer
+     * ready for the steps to follow
+     *
+     * @return long - the number of lines written
+     */
+    private static long writeEnumerations(List<String> enumerations, Writer buffer) throws IOException {
+        long lines = 0;
+        // write our enumerations
+        buffer.write("//our enumerations\n");
+        for (String enumeration : enumerations) {
+            if (enumeration != null) {
+                buffer.write(enumeration);
                 buffer.write("\n");
+                lines++;
             }
-        } catch (IOException e) {
-            log.log(Level.SEVERE, "Some error occurred writing to '" + STEPS + "'", e);
         }
+        buffer.write("\n");
+        // write our old lines
+        buffer.write("//our steps\n");
+        // along with the two headers, and the blank line between them
+        return lines + 3;
+    }
+
+    /**
+     * Parses each of the provided files, and merges the results into the
+     * provided glue code, in the order the files were provided. Each file is
+     * parsed with its own glue code parser, so when more than one thread is
+     * requested, files are parsed in parallel, while the merged results are
+     * identical to parsing the files one after another
+     *
+     * @param files    - the glue code files to parse
+     * @param glueCode - the glue code to merge all of the parsed results into
+     * @param threads  - the number of threads to parse the files with
+     * @throws IOException
+     */
+    public static void parseFiles(Iterable<Path> files, GlueCode glueCode, int threads) throws IOException {
+        parseFiles(files, glueCode, null, new GlueCodeReader(), threads, new RunStats());
+    }
+
+    /**
+     * Parses each of the provided files, as above, re-using previously parsed
+     * results for any files which haven't changed, reading each file with the
+     * provided reader, which determines the step keywords recognised, and
+     * whether files are memory mapped, and recording the time taken, along
+     * with the files, lines and bytes parsed, into the provided measurements
+     *
+     * @param files    - the glue code files to parse
+     * @param glueCode - the glue code to merge all of the parsed results into
+     * @param cache    - the previously parsed results, or null to parse every file
+     * @param reader   - reads each glue code file
+     * @param threads  - the number of threads to parse the files with
+     * @param stats    - the measurements of the run
+     * @throws IOException
+     */
+    public static void parseFiles(Iterable<Path> files, GlueCode glueCode, ParseCache cache, GlueCodeReader reader,
+                                  int threads, RunStats stats) throws IOException {
+        parseEach(files, cache, reader, threads, stats, (file, parsed) -> glueCode.addGlueCode(parsed));
+    }
+
+    /**
+     * Parses each of the provided files, as above, but rather than merging the
+     * results, hands each file's results to the provided consumer, in the
+     * order the files were provided. The consumer is always called from the
+     * calling thread
+     *
+     * @param files    - the glue code files to parse
+     * @param cache    - the previously parsed results, or null to parse every file
+     * @param reader   - reads each glue code file
+     * @param threads  - the number of threads to parse the files with
+     * @param stats    - the measurements of the run
+     * @param consumer - receives each file, along with its parsed results
+     * @throws IOException
+     */
+    public static void parseEach(Iterable<Path> files, ParseCache cache, GlueCodeReader reader, int threads,
+                                 RunStats stats, BiConsumer<Path, GlueCode> consumer) throws IOException {
+        RunStats.Phase phase = stats.getPhase(RunStats.PARSE);
+        long start = System.nanoTime();
+        Iterator<Path> iterator = files.iterator();
+        try {
+            if (threads <= 1) {
+                while (iterator.hasNext()) {
+                    Path file = iterator.next();
+                    consumer.accept(file, parseFile(file, cache, reader, phase));
+                }
+                return;
+            }
+            parseInParallel(iterator, threads, cache, reader, phase, consumer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // stop any walk still finding files, when parsing ended early
+            if (iterator instanceof Closeable) {
+                ((Closeable) iterator).close();
+            }
+            phase.addNanos(System.nanoTime() - start);
+        }
+    }
+
+    private static void parseInParallel(Iterator<Path> files, int threads, ParseCache cache,
+                                        GlueCodeReader reader, RunStats.Phase phase, BiConsumer<Path, GlueCode> consumer)
+            throws IOException {
+        // the caller always waits on the parsing, so these never need to keep the jvm running, which
+        // matters when a subscriber to a StepPublisher stops requesting steps without cancelling
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "GherkinBuilder-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Deque<Path> submitted = new ArrayDeque<>();
+            Deque<Future<GlueCode>> results = new ArrayDeque<>();
+            // merge in submission order, to keep our output deterministic, only parsing a
+            // bounded number of files ahead, so the parsed results never pile up in memory
+            while (files.hasNext()) {
+                Path file = files.next();
+                if (results.size() >= threads * PARSE_AHEAD) {
+                    consumer.accept(submitted.remove(), results.remove().get());
+                }
+                submitted.add(file);
+                results.add(executor.submit(() -> parseFile(file, cache, reader, phase)));
+            }
+            while (!results.isEmpty()) {
+                consumer.accept(submitted.remove(), results.remove().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing the glue code");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses a single glue code file, as below, recording the lines and bytes
+     * actually parsed, and the memory allocated doing so
+     */
+    private static GlueCode parseFile(Path file, ParseCache cache, GlueCodeReader reader, RunStats.Phase phase)
+            throws IOException {
+        long allocated = RunStats.getAllocatedBytes();
+        GlueCode glueCode = parseFile(file, cache, reader);
+        phase.addFiles(1);
+        // files re-used from the cache were never read
+        if (glueCode.getLinesRead() > 0) {
+            phase.addLines(glueCode.getLinesRead());
+            phase.addBytes(Files.size(file));
+        }
+        if (glueCode.isSkipped()) {
+            phase.addSkipped(1);
+        }
+        phase.addAllocated(RunStats.getAllocatedBytes() - allocated);
+        return glueCode;
+    }
+
+    /**
+     * Parses a single glue code file, unless it hasn't changed since it was
+     * last parsed, in which case the cached results are used instead, reading
+     * the file with the provided reader
+     *
+     * @param file   - the glue code file to parse
+     * @param cache  - the previously parsed results, or null to always parse the file
+     * @param reader - reads the glue code file
+     * @return GlueCode - the steps, includes and enumerations identified in the file
+     * @throws IOException
+     */
+    public static GlueCode parseFile(Path file, ParseCache cache, GlueCodeReader reader) throws IOException {
+        if (cache == null) {
+            return reader.read(file);
+        }
+        ParseCache.Stamp stamp = cache.stamp(file);
+        GlueCode glueCode = cache.get(file, stamp);
+        if (glueCode == null) {
+            glueCode = reader.read(file);
+            cache.put(file, stamp, glueCode);
+        }
+        return glueCode;
+    }
+
+    /**
+     * Parses a single glue code file, line by line, recognising the default
+     * step keywords, see GlueCodeReader.readLines
+     *
+     * @param file - the glue code file to parse
+     * @return GlueCode - the steps, includes and enumerations identified in the file
+     * @throws IOException
+     */
+    public static GlueCode parseFile(Path file) throws IOException {
+        return new GlueCodeReader().readLines(file);
     }
-}
\ No newline at end of file
+}
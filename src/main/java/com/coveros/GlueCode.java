@@ -26,21 +26,59 @@ import com.coveros.exception.MalformedMethod;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class GlueCode {
 
+    public static final List<String> DEFAULT_KEYWORDS =
+            Collections.unmodifiableList(Arrays.asList("Given", "When", "Then", "And", "But"));
+    private static final KeywordMatcher DEFAULT_MATCHER = new KeywordMatcher(DEFAULT_KEYWORDS);
+    private static final String ARROW = "->";
+
     private Logger log = Logger.getLogger("GherkinBuilder");
+    private static final String ANY_MATCH = "<span class='any'>...</span>";
+    private static final String GENERIC_MATCH = "XXXX";
+    private static final String OPTIONAL_START = "<span class='opt'>";
+    private static final String OPTIONAL_END = "</span>";
+    private static final String LIST = "List<";
+    private static final String FINAL = "final";
+    private static final String VARARGS = "...";
+    private static final String ARRAY = "[]";
+    private static final String[] TEXT_TYPES = {"string", "char", "double", "boolean", "datatable"};
+    private static final String[] NUMBER_TYPES = {"long", "int", "integer"};
+    private static final String[] DATE_TYPES = {"date"};
 
     private EnumInfo enumInfo = new EnumInfo(null);
+    private KeywordMatcher keywords;
     private Boolean next = false;
+    private boolean lambda = false;
     private List<String> steps;
     private List<String> baseDirectories = new ArrayList<>();
     private StringBuilder step;
+    private StringBuilder display = new StringBuilder();
+    private long lines = 0;
+    private boolean skipped = false;
+    private List<StepDefinition> definitions;
+    private String keyword;
+    private String text;
+    private long stepLine;
+    private List<StepDefinition.Parameter> parameters;
 
     public GlueCode() {
+        this(DEFAULT_MATCHER);
+    }
+
+    /**
+     * Builds a glue code parser recognising the provided step keywords, see
+     * GlueCodeReader
+     *
+     * @param keywords - the step keywords, without the '@'
+     */
+    public GlueCode(KeywordMatcher keywords) {
+        this.keywords = keywords;
         steps = new ArrayList<>();
         step = new StringBuilder();
     }
@@ -57,24 +95,149 @@ public class GlueCode {
      * @return String - a step to be consumed by the gherkin builder class as js
      */
     public void processLine(String line) throws IOException {
+        lines++;
         // grab any imports that might be useful
         if (line.startsWith("import ")) {
             enumInfo.addClassInclude(line.substring(7, line.length() - 1));
         }
-        // if our previous line was just a Given, When or Then, next
-        // will be set, to indicate this line contains parameters
+        // if our previous line was just a step annotation, or a lambda step
+        // without its parameters, next will be set, to indicate this line
+        // contains parameters
         if (next) {
-            step.append(getStepVariables(getMethodVariables(line)));
-            step.append(" ) );");
-            next = false;
-            steps.add(step.toString());
-            step.setLength(0);
+            if (lambda) {
+                appendLambdaVariables(line, 0, step);
+            } else {
+                appendStepVariables(line, step);
+            }
+            endStep();
         }
         String ln = line.trim();
-        if (ln.startsWith("@Given") || ln.startsWith("@When") || ln.startsWith("@Then")) {
-            step.append("testSteps.push( new step( \"" + getStep(ln) + "\"");
+        if (isAnnotation(ln)) {
+            step.append("testSteps.push( new step( \"");
+            startStep(ln, 1, 1 + keywords.matchAt(ln, 1));
+            appendStep(ln, 0, ln.length(), step);
+            recordText();
+            step.append('"');
             next = true;
+            lambda = false;
+            return;
+        }
+        int literal = getLambdaLiteral(ln);
+        if (literal >= 0) {
+            int close = skipLiteral(ln, literal, ln.length());
+            step.append("testSteps.push( new step( \"");
+            startStep(ln, 0, keywords.matchAt(ln, 0));
+            appendStep(ln, literal, close, step);
+            recordText();
+            step.append('"');
+            lambda = true;
+            // the parameters may be on this line, or the next one
+            if (appendLambdaVariables(ln, close + 1, step)) {
+                endStep();
+            } else {
+                next = true;
+            }
+        }
+    }
+
+    /**
+     * Processes a step which has already been picked apart, such as one read
+     * from a compiled class, by handing over the annotation and method
+     * declaration it was written as, so that it's formatted exactly as it
+     * would be from source
+     *
+     * @param keyword    - the step keyword the step was annotated with
+     * @param expression - the step's regular expression, as a plain string
+     * @param parameters - each of the method's parameters, as its type and name
+     * @throws IOException
+     */
+    public void processStep(String keyword, String expression, List<String> parameters) throws IOException {
+        StringBuilder annotation = new StringBuilder("@").append(keyword).append("(\"");
+        for (int i = 0; i < expression.length(); i++) {
+            // escape the expression back into a java string literal
+            char c = expression.charAt(i);
+            if (c == '\\' || c == '"') {
+                annotation.append('\\').append(c);
+            } else if (c == '\n') {
+                annotation.append("\\n");
+            } else if (c == '\r') {
+                annotation.append("\\r");
+            } else if (c == '\t') {
+                annotation.append("\\t");
+            } else if (c < ' ') {
+                annotation.append(String.format("\\u%04x", (int) c));
+            } else {
+                annotation.append(c);
+            }
+        }
+        processLine(annotation.append("\")").toString());
+        processLine("public void step(" + String.join(", ", parameters) + ")");
+    }
+
+    private void endStep() {
+        step.append(" ) );");
+        next = false;
+        steps.add(step.toString());
+        if (parameters != null) {
+            definitions.add(new StepDefinition(keyword, text, step.toString(), parameters, null, stepLine));
+            parameters = null;
+        }
+        step.setLength(0);
+    }
+
+    /**
+     * When recording step definitions, notes where the step being processed
+     * starts, and begins collecting its parameters. The keyword is only taken
+     * out of the line when recording, so nothing's allocated otherwise
+     */
+    private void startStep(String line, int from, int to) {
+        if (definitions != null) {
+            keyword = line.substring(from, to);
+            stepLine = lines;
+            parameters = new ArrayList<>();
+        }
+    }
+
+    /**
+     * When recording step definitions, takes the formatted step, which has
+     * just been written after the opening of the step
+     */
+    private void recordText() {
+        if (parameters != null) {
+            text = step.substring("testSteps.push( new step( \"".length());
+        }
+    }
+
+    /**
+     * Determines if the trimmed line starts with a step annotation, such as
+     * \@Given, for any of the keywords
+     */
+    private boolean isAnnotation(String ln) {
+        if (ln.isEmpty() || ln.charAt(0) != '@') {
+            return false;
+        }
+        int length = keywords.matchAt(ln, 1);
+        return length > 0 && (length + 1 == ln.length() || !Character.isJavaIdentifierPart(ln.charAt(length + 1)));
+    }
+
+    /**
+     * Determines if the trimmed line starts a java 8 lambda step, such as
+     * Given("^I have (\\d+) cukes$", (Integer cukes) -> {, for any of the
+     * keywords
+     *
+     * @return int - the index of the quote opening the step's expression, or -1 if this isn't a step
+     */
+    private int getLambdaLiteral(String ln) {
+        int length = keywords.matchAt(ln, 0);
+        if (length == 0) {
+            return -1;
         }
+        int i = skipWhitespace(ln, length, ln.length());
+        if (i == ln.length() || ln.charAt(i) != '(') {
+            return -1;
+        }
+        i = skipWhitespace(ln, i + 1, ln.length());
+        return i < ln.length() && ln.charAt(i) == '"' ? i : -1;
     }
 
     /**
@@ -89,24 +252,131 @@ public class GlueCode {
      * @throws MalformedGlueCode
      */
     public String getStep(String glueCode) throws MalformedGlueCode {
+        display.setLength(0);
+        appendStep(glueCode, 0, glueCode.length(), display);
+        return display.toString();
+    }
+
+    /**
+     * Extracts the regular expression from the cucumber given, when or then
+     * annotation, writing the formatted step directly to the provided buffer
+     *
+     * @param glueCode - cucumber given, when or then annotation
+     * @param from     - the index to start looking for the expression at
+     * @param to       - the index to stop looking for the expression at
+     * @param out      - where to write the formatted step
+     * @throws MalformedGlueCode
+     */
+    private void appendStep(String glueCode, int from, int to, StringBuilder out) throws MalformedGlueCode {
         // check for valid formatted glue code
-        int start = glueCode.indexOf('^');
-        int end = glueCode.lastIndexOf('$');
-        if (start < 0 || end < 0 || start > end) {
+        int start = glueCode.indexOf('^', from);
+        int end = glueCode.lastIndexOf('$', to - 1);
+        if (start < 0 || end < from || start > end) {
             String error = "There is a problem with your glue code. It is expected to" +
                     " start with '^' and end with '$'. Examine the expression '" + glueCode + "'";
             log.log(Level.SEVERE, error);
             throw new MalformedGlueCode(error);
         }
-        // get just the regex from the annotation
-        String regex = glueCode.substring(start + 1, end);
-        // denote a non-capturing match
-        regex = regex.replaceAll("\\(\\?:.*?\\)", "<span class='any'>...</span>");
-        // capture any generic matches
-        regex = regex.replaceAll("\\(.*?\\)", "XXXX");
-        // capture any optional matches
-        regex = regex.replaceAll("\\[(.*?)\\]\\?", "<span class='opt'>$1</span>");
-        return regex;
+        // render just the regex from the annotation
+        renderRegex(glueCode, start + 1, end, out);
+    }
+
+    /**
+     * Renders a section of a step's regular expression for display, in a
+     * single pass. Non-capturing groups are denoted as any match, any other
+     * groups (including any groups nested within them) as a generic match,
+     * and bracketed sections followed by a '?' as optional matches. The
+     * expression is still escaped as it was in the java source, and is left
+     * that way, so that it can be written back out as a javascript string
+     *
+     * @param regex - the java source text containing the regular expression
+     * @param from  - the index to start rendering from
+     * @param to    - the index to stop rendering at
+     * @param out   - where to write the rendered expression
+     */
+    private void renderRegex(String regex, int from, int to, StringBuilder out) {
+        int i = from;
+        while (i < to) {
+            char c = regex.charAt(i);
+            int close = c == '(' || c == '[' ? findClose(regex, i, to) : -1;
+            if (c == '\\') {
+                int length = escapeLength(regex, i, to);
+                out.append(regex, i, i + length);
+                i += length;
+            } else if (close < 0) {
+                out.append(c);
+                i++;
+            } else if (c == '(') {
+                // denote a non-capturing match, otherwise capture any generic matches
+                out.append(regex.startsWith("?:", i + 1) ? ANY_MATCH : GENERIC_MATCH);
+                i = close + 1;
+            } else if (close + 1 < to && regex.charAt(close + 1) == '?') {
+                // capture any optional matches
+                out.append(OPTIONAL_START);
+                renderRegex(regex, i + 1, close, out);
+                out.append(OPTIONAL_END);
+                i = close + 2;
+            } else {
+                out.append(c);
+                renderRegex(regex, i + 1, close, out);
+                out.append(']');
+                i = close + 1;
+            }
+        }
+    }
+
+    /**
+     * Finds the parenthesis or bracket closing the one at the provided index,
+     * skipping over any escaped characters, and any nested within it. Within
+     * brackets, parentheses are just characters, and aren't matched up
+     *
+     * @param regex - the java source text containing the regular expression
+     * @param open  - the index of the opening parenthesis or bracket
+     * @param to    - the index to stop looking at
+     * @return int - the index of the closing parenthesis or bracket, or -1 if it isn't closed
+     */
+    private static int findClose(String regex, int open, int to) {
+        boolean brackets = regex.charAt(open) == '[';
+        int depth = 0;
+        int i = open;
+        while (i < to) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += escapeLength(regex, i, to);
+                continue;
+            }
+            if (!brackets && c == '[') {
+                i = findClose(regex, i, to);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == (brackets ? '[' : '(')) {
+                depth++;
+            } else if (c == (brackets ? ']' : ')') && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Determines how many characters of java source make up the escape
+     * sequence at the provided index. A java escaped backslash is a regular
+     * expression escape, which also covers the (possibly java escaped)
+     * character following it
+     *
+     * @param regex - the java source text containing the regular expression
+     * @param i     - the index of the backslash
+     * @param to    - the index to stop looking at
+     * @return int - the number of characters in the escape sequence
+     */
+    private static int escapeLength(String regex, int i, int to) {
+        int length = 2;
+        if (i + 1 < to && regex.charAt(i + 1) == '\\') {
+            length = i + 2 < to && regex.charAt(i + 2) == '\\' ? 4 : 3;
+        }
+        return Math.min(length, to - i);
     }
 
     /**
@@ -118,6 +388,27 @@ public class GlueCode {
      * @throws MalformedMethod
      */
     public List<String> getMethodVariables(String method) throws MalformedMethod {
+        int end = getParametersEnd(method);
+        int start = method.indexOf('(') + 1;
+        List<String> parameters = new ArrayList<>();
+        // if any parameters exist, grab each of them
+        while (start < end) {
+            int next = getParameterEnd(method, start, end);
+            parameters.add(method.substring(start, next));
+            start = next + 1;
+        }
+        return parameters;
+    }
+
+    /**
+     * Determines where the parameters of a method declaration end, checking
+     * that the declaration contains a proper parameter definition
+     *
+     * @param method - the string representation of a method
+     * @return int - the index of the parenthesis closing the parameters
+     * @throws MalformedMethod
+     */
+    private int getParametersEnd(String method) throws MalformedMethod {
         // check for valid formatted java method
         int start = method.indexOf('(');
         int end = method.lastIndexOf(')');
@@ -127,15 +418,33 @@ public class GlueCode {
             log.log(Level.SEVERE, error);
             throw new MalformedMethod(error);
         }
-        // define where our parameters are captured
-        String params = method.substring(start + 1, end);
-        // if any parameters exist
-        if (params.length() > 0) {
-            // grab an array of them
-            return Arrays.asList(params.split(","));
+        return end;
+    }
+
+    /**
+     * Finds the end of the parameter starting at the provided index. Commas
+     * within generics, annotation arguments or literals don't end a parameter
+     *
+     * @param method - the string representation of a method
+     * @param from   - the index the parameter starts at
+     * @param to     - the index the parameters end at
+     * @return int - the index of the comma ending the parameter, or the end of the parameters
+     */
+    private static int getParameterEnd(String method, int from, int to) {
+        int depth = 0;
+        for (int i = from; i < to; i++) {
+            char c = method.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = skipLiteral(method, i, to);
+            } else if (c == '<' || c == '(') {
+                depth++;
+            } else if (c == '>' || c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                return i;
+            }
         }
-        // if no parameters, ok to return empty
-        return new ArrayList<>();
+        return to;
     }
 
     /**
@@ -146,7 +455,11 @@ public class GlueCode {
      * @return Boolean - is it a properly identified list
      */
     public Boolean isList(String input) {
-        return input.startsWith("List<") && input.endsWith(">") && input.length() > 6;
+        return isList(input, 0, input.length());
+    }
+
+    private static boolean isList(String input, int from, int to) {
+        return input.startsWith(LIST, from) && input.charAt(to - 1) == '>' && to - from > LIST.length() + 1;
     }
 
     /**
@@ -157,8 +470,7 @@ public class GlueCode {
      * @return Boolean - is it a text element
      */
     public Boolean isText(String input) {
-        return "string".equalsIgnoreCase(input) || "char".equalsIgnoreCase(input) || "double".equalsIgnoreCase(input) ||
-                "boolean".equalsIgnoreCase(input) || "datatable".equalsIgnoreCase(input);
+        return isAny(input, 0, input.length(), TEXT_TYPES);
     }
 
     /**
@@ -169,7 +481,16 @@ public class GlueCode {
      * @return Boolean - is it a number element
      */
     public Boolean isNumber(String input) {
-        return "long".equalsIgnoreCase(input) || "int".equalsIgnoreCase(input) || "integer".equalsIgnoreCase(input);
+        return isAny(input, 0, input.length(), NUMBER_TYPES);
+    }
+
+    private static boolean isAny(String input, int from, int to, String[] types) {
+        for (String type : types) {
+            if (to - from == type.length() && input.regionMatches(true, from, type, 0, type.length())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -182,37 +503,238 @@ public class GlueCode {
     public String getStepVariables(List<String> parameters) {
         StringBuilder params = new StringBuilder();
         for (String parameter : parameters) {
-            // remove any surrounding whitespace
-            parameter = parameter.trim();
-            if (parameter.startsWith("@Transform")) {
-                parameter = parameter.split("\\) ")[1];
-            }
-            if (parameter.startsWith("@Delimiter")) {
-                parameter = parameter.split("\\) ")[1];
-            }
-            String type;
-            String object = parameter.split(" ")[0];
-            String name = parameter.split(" ")[1];
-
-            // are we dealing with a list of elements
-            if (isList(object)) {
-                object = object.substring(5, object.length() - 1);
-                name += "List";
-            }
-            // are we dealing with a whole number
-            if (isNumber(object)) {
-                type = "\"number\"";
-            } else if (isText(object)) {
-                type = "\"text\"";
-            } else if ("date".equalsIgnoreCase(object)) {
-                type = "\"date\"";
+            appendStepVariable(parameter, 0, parameter.length(), params);
+        }
+        return params.toString();
+    }
+
+    /**
+     * Converts the parameters of a method declaration directly into step
+     * variables, without breaking the declaration apart first
+     *
+     * @param method - the string representation of a method
+     * @param out    - where to write the keypair definitions
+     * @throws MalformedMethod
+     */
+    private void appendStepVariables(String method, StringBuilder out) throws MalformedMethod {
+        int end = getParametersEnd(method);
+        int start = method.indexOf('(') + 1;
+        while (start < end) {
+            int next = getParameterEnd(method, start, end);
+            appendStepVariable(method, start, next, out);
+            start = next + 1;
+        }
+    }
+
+    /**
+     * Converts the parameters of a lambda step into step variables. The
+     * parameters are whatever comes before the arrow, optionally following
+     * the comma after the step's expression, and optionally in parentheses.
+     * Parameters without a type are treated as text
+     *
+     * @param text - the line containing the parameters
+     * @param from - the index to start looking for the parameters at
+     * @param out  - where to write the keypair definitions
+     * @return boolean - whether the parameters were found, false if there is no arrow
+     */
+    private boolean appendLambdaVariables(String text, int from, StringBuilder out) {
+        int arrow = text.indexOf(ARROW, from);
+        if (arrow < 0) {
+            return false;
+        }
+        int start = skipWhitespace(text, from, arrow);
+        if (start < arrow && text.charAt(start) == ',') {
+            start = skipWhitespace(text, start + 1, arrow);
+        }
+        int end = arrow;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end && text.charAt(start) == '(' && text.charAt(end - 1) == ')') {
+            start++;
+            end--;
+        }
+        while (start < end) {
+            int next = getParameterEnd(text, start, end);
+            int nameStart = skipWhitespace(text, start, next);
+            int nameEnd = skipIdentifier(text, nameStart, next);
+            if (nameStart < nameEnd && skipWhitespace(text, nameEnd, next) == next) {
+                out.append(", new keypair( \"").append(text, nameStart, nameEnd).append("\", \"text\" )");
+                addParameter(text, nameStart, nameEnd, StepDefinition.TEXT, false, false);
             } else {
-                type = object;
-                enumInfo.addGlueCodeEnumeration(type);
+                appendStepVariable(text, start, next, out);
             }
-            params.append(", new keypair( \"" + name + "\", " + type + " )");
+            start = next + 1;
         }
-        return params.toString();
+        return true;
+    }
+
+    /**
+     * Converts a single parameter into a step variable. Any annotations (such
+     * as @Transform, @Delimiter or @Format) and the final modifier are
+     * skipped, and lists, arrays and varargs are all treated as lists
+     *
+     * @param parameter - the text containing the parameter
+     * @param from      - the index the parameter starts at
+     * @param to        - the index the parameter ends at
+     * @param out       - where to write the keypair definition
+     */
+    private void appendStepVariable(String parameter, int from, int to, StringBuilder out) {
+        int i = skipWhitespace(parameter, from, to);
+        // skip over any annotations or modifiers
+        while (i < to) {
+            if (parameter.charAt(i) == '@') {
+                i = skipWhitespace(parameter, skipIdentifier(parameter, i + 1, to), to);
+                if (i < to && parameter.charAt(i) == '(') {
+                    i = skipWhitespace(parameter, skipParentheses(parameter, i, to), to);
+                }
+            } else if (parameter.startsWith(FINAL, i) && i + FINAL.length() < to &&
+                    Character.isWhitespace(parameter.charAt(i + FINAL.length()))) {
+                i = skipWhitespace(parameter, i + FINAL.length(), to);
+            } else {
+                break;
+            }
+        }
+        if (i >= to) {
+            return;
+        }
+        // the type, including any generics
+        int typeStart = i;
+        int depth = 0;
+        while (i < to && (depth > 0 || !Character.isWhitespace(parameter.charAt(i)))) {
+            char c = parameter.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            }
+            i++;
+        }
+        int typeEnd = i;
+        int nameStart = skipWhitespace(parameter, i, to);
+        int nameEnd = skipIdentifier(parameter, nameStart, to);
+
+        // are we dealing with a list of elements
+        boolean list = false;
+        if (parameter.startsWith(VARARGS, typeEnd - VARARGS.length())) {
+            typeEnd -= VARARGS.length();
+            list = true;
+        } else if (parameter.startsWith(ARRAY, typeEnd - ARRAY.length())) {
+            typeEnd -= ARRAY.length();
+            list = true;
+        }
+        // ignore any package the type was qualified with
+        typeStart = getSimpleNameStart(parameter, typeStart, typeEnd);
+        if (!list && isList(parameter, typeStart, typeEnd)) {
+            typeStart = skipWhitespace(parameter, typeStart + LIST.length(), typeEnd);
+            typeEnd--;
+            while (typeEnd > typeStart && Character.isWhitespace(parameter.charAt(typeEnd - 1))) {
+                typeEnd--;
+            }
+            typeStart = getSimpleNameStart(parameter, typeStart, typeEnd);
+            list = true;
+        }
+        out.append(", new keypair( \"").append(parameter, nameStart, nameEnd);
+        if (list) {
+            out.append("List");
+        }
+        out.append("\", ");
+        // are we dealing with a whole number
+        if (isAny(parameter, typeStart, typeEnd, NUMBER_TYPES)) {
+            out.append("\"number\"");
+            addParameter(parameter, nameStart, nameEnd, StepDefinition.NUMBER, list, false);
+        } else if (isAny(parameter, typeStart, typeEnd, TEXT_TYPES) || isGeneric(parameter, typeStart, typeEnd)) {
+            // other generic types, such as maps, come from data tables
+            out.append("\"text\"");
+            addParameter(parameter, nameStart, nameEnd, StepDefinition.TEXT, list, false);
+        } else if (isAny(parameter, typeStart, typeEnd, DATE_TYPES)) {
+            out.append("\"date\"");
+            addParameter(parameter, nameStart, nameEnd, StepDefinition.DATE, list, false);
+        } else {
+            String type = parameter.substring(typeStart, typeEnd);
+            enumInfo.addGlueCodeEnumeration(type);
+            out.append(type);
+            addParameter(parameter, nameStart, nameEnd, type, list, true);
+        }
+        out.append(" )");
+    }
+
+    /**
+     * When recording step definitions, adds a parameter to the step being
+     * processed, only taking its name out of the text when recording
+     */
+    private void addParameter(String text, int nameStart, int nameEnd, String type, boolean list,
+                              boolean enumeration) {
+        if (parameters != null) {
+            parameters.add(new StepDefinition.Parameter(text.substring(nameStart, nameEnd), type, list, enumeration));
+        }
+    }
+
+    private static boolean isGeneric(String type, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (type.charAt(i) == '<') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipWhitespace(String text, int from, int to) {
+        int i = from;
+        while (i < to && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipIdentifier(String text, int from, int to) {
+        int i = from;
+        while (i < to && (Character.isJavaIdentifierPart(text.charAt(i)) || text.charAt(i) == '.')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipParentheses(String text, int open, int to) {
+        int depth = 0;
+        for (int i = open; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\'') {
+                i = skipLiteral(text, i, to);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    private static int skipLiteral(String text, int open, int to) {
+        char quote = text.charAt(open);
+        for (int i = open + 1; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Finds where the simple name of a type starts, skipping any package (or
+     * enclosing class) it was qualified with, but not looking into generics
+     */
+    private static int getSimpleNameStart(String type, int from, int to) {
+        int start = from;
+        for (int i = from; i < to && type.charAt(i) != '<'; i++) {
+            if (type.charAt(i) == '.') {
+                start = i + 1;
+            }
+        }
+        return start;
     }
 
     /**
@@ -224,6 +746,100 @@ public class GlueCode {
         return steps;
     }
 
+    /**
+     * Adds a previously identified step
+     *
+     * @param step - a step, formatted to be consumed by the gherkin builder class as js
+     */
+    public void addGlueCodeStep(String step) {
+        steps.add(step);
+    }
+
+    /**
+     * Merges the steps, includes and enumerations identified by another glue
+     * code parser into this one. Steps are appended after the ones already
+     * identified, and includes and enumerations are only added if they haven't
+     * been seen before, so merging parsers in file order produces the same
+     * results as parsing those files one after another
+     *
+     * @param glueCode - the glue code parser to merge into this one
+     */
+    public void addGlueCode(GlueCode glueCode) {
+        steps.addAll(glueCode.getGlueCodeSteps());
+        addEnumInfo(glueCode);
+    }
+
+    /**
+     * Merges just the includes and enumerations identified in another piece
+     * of glue code into this one, leaving its steps behind
+     *
+     * @param glueCode - the parsed glue code to merge in
+     */
+    public void addEnumInfo(GlueCode glueCode) {
+        for (String include : glueCode.getEnumInfo().getClassIncludes()) {
+            enumInfo.addClassInclude(include);
+        }
+        for (String enumeration : glueCode.getEnumInfo().getGlueCodeEnumerations()) {
+            enumInfo.addGlueCodeEnumeration(enumeration);
+        }
+    }
+
+    /**
+     * Determines whether each step is also recorded as a typed step
+     * definition, see getStepDefinitions. This is off by default, as the
+     * generated steps don't need them
+     *
+     * @param record - whether to record step definitions
+     */
+    public void setRecording(boolean record) {
+        definitions = record ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Returns the typed step definitions recorded for each step identified,
+     * if recording was turned on, in the order they were found. These don't
+     * know the file they came from, only the line they were found on
+     *
+     * @return List - the step definitions, or an empty list if they weren't recorded
+     */
+    public List<StepDefinition> getStepDefinitions() {
+        return definitions == null ? Collections.<StepDefinition>emptyList() : definitions;
+    }
+
+    /**
+     * Records whether the file was skipped over, without being fully parsed,
+     * as it didn't contain any step annotations
+     *
+     * @param skipped - whether the file was skipped
+     */
+    public void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Records lines of glue code which were read, but skipped over without
+     * being processed, as they couldn't contain anything of interest
+     *
+     * @param count - the number of lines skipped
+     */
+    public void skipLines(long count) {
+        lines += count;
+    }
+
+    /**
+     * Returns the number of lines of glue code read by this parser, whether
+     * they were processed, or skipped
+     *
+     * @return long - the number of lines read
+     */
+    public long getLinesRead() {
+        return lines;
+    }
+
     /**
      * Returns the enumerations identified in the step code
      *
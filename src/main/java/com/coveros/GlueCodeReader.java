@@ -0,0 +1,329 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads glue code files, recognising steps by a configurable set of keywords,
+ * either line by line, or by memory mapping each file. Both the characters
+ * and the bytes of the keywords are matched with a single automaton, so
+ * recognising more keywords doesn't cost any more per line. A reader holds
+ * no state between files, so can be shared between threads
+ */
+public class GlueCodeReader {
+
+    private static final byte[] IMPORT = "import ".getBytes(StandardCharsets.US_ASCII);
+    private static final boolean ASCII_COMPATIBLE = isAsciiCompatible(Charset.defaultCharset());
+    private static final GlueCodeReader DEFAULT = new GlueCodeReader(GlueCode.DEFAULT_KEYWORDS);
+
+    private KeywordMatcher keywords;
+    private KeywordMatcher keywordBytes;
+    private boolean mapped = false;
+    private boolean recording = false;
+
+    /**
+     * Builds a reader recognising the default step keywords
+     */
+    public GlueCodeReader() {
+        this(DEFAULT);
+    }
+
+    /**
+     * Builds a reader recognising the provided step keywords, as annotations
+     * (such as @Given) or as java 8 lambda steps (such as Given(...)). Any
+     * meta-annotations, or translated keywords, should be included
+     *
+     * @param keywords - the step keywords, without the '@'
+     */
+    public GlueCodeReader(Collection<String> keywords) {
+        this.keywords = new KeywordMatcher(keywords);
+        this.keywordBytes = new KeywordMatcher(keywords, Charset.defaultCharset());
+    }
+
+    private GlueCodeReader(GlueCodeReader reader) {
+        this.keywords = reader.keywords;
+        this.keywordBytes = reader.keywordBytes;
+    }
+
+    /**
+     * Copies the keywords and settings of another reader
+     *
+     * @param reader - the reader to copy
+     * @return GlueCodeReader - a new reader, set up the same way
+     */
+    public static GlueCodeReader copyOf(GlueCodeReader reader) {
+        return new GlueCodeReader(reader).setMapped(reader.mapped).setRecording(reader.recording);
+    }
+
+    /**
+     * Determines whether files are memory mapped, rather than read line by
+     * line, see readMapped
+     *
+     * @param mapped - whether to memory map the files
+     * @return GlueCodeReader - this reader
+     */
+    public GlueCodeReader setMapped(boolean mapped) {
+        this.mapped = mapped;
+        return this;
+    }
+
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Determines whether the glue code parsed also records a typed step
+     * definition for each step, see GlueCode.getStepDefinitions
+     *
+     * @param recording - whether to record step definitions
+     * @return GlueCodeReader - this reader
+     */
+    public GlueCodeReader setRecording(boolean recording) {
+        this.recording = recording;
+        return this;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public List<String> getKeywords() {
+        return keywords.getKeywords();
+    }
+
+    /**
+     * Builds an empty glue code parser, recognising this reader's keywords
+     *
+     * @return GlueCode - a new glue code parser
+     */
+    public GlueCode newGlueCode() {
+        GlueCode glueCode = new GlueCode(keywords);
+        glueCode.setRecording(recording);
+        return glueCode;
+    }
+
+    /**
+     * Parses a single glue code file, either memory mapping it, or reading it
+     * line by line, as this reader was set up to
+     *
+     * @param file - the glue code file to parse
+     * @return GlueCode - the steps, includes and enumerations identified in the file
+     * @throws IOException
+     */
+    public GlueCode read(Path file) throws IOException {
+        return mapped ? readMapped(file) : readLines(file);
+    }
+
+    /**
+     * Parses a single glue code file, line by line. Most files alongside the
+     * glue code (page objects, utilities, data classes) contain no steps at
+     * all, so the file's bytes are first searched for a step keyword. If
+     * there isn't one, only the imports are picked out of the file, and it
+     * is marked as skipped
+     *
+     * @param file - the glue code file to parse
+     * @return GlueCode - the steps, includes and enumerations identified in the file
+     * @throws IOException
+     */
+    public GlueCode readLines(Path file) throws IOException {
+        if (!ASCII_COMPATIBLE) {
+            return readLines(new FileReader(file.toFile()));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        if (!containsStep(ByteBuffer.wrap(bytes))) {
+            GlueCode glueCode = newGlueCode();
+            scanLines(ByteBuffer.wrap(bytes), glueCode);
+            glueCode.setSkipped(true);
+            return glueCode;
+        }
+        return readLines(new InputStreamReader(new ByteArrayInputStream(bytes), Charset.defaultCharset()));
+    }
+
+    private GlueCode readLines(Reader reader) throws IOException {
+        GlueCode glueCode = newGlueCode();
+        String line;
+        try (BufferedReader br = new BufferedReader(reader)) {
+            while ((line = br.readLine()) != null) {
+                glueCode.processLine(line);
+            }
+        }
+        return glueCode;
+    }
+
+    /**
+     * Parses a single glue code file, by memory mapping it, and scanning its
+     * bytes for the lines which matter: imports, steps, and the lines
+     * following them. Only those lines are decoded into strings, every other
+     * line is skipped over without being decoded. Lines are split exactly as
+     * a BufferedReader would split them, so the results are identical to
+     * readLines. When the platform encoding isn't a superset of ASCII, bytes
+     * can't be compared directly, so the file is read line by line instead
+     *
+     * @param file - the glue code file to parse
+     * @return GlueCode - the steps, includes and enumerations identified in the file
+     * @throws IOException
+     */
+    public GlueCode readMapped(Path file) throws IOException {
+        if (!ASCII_COMPATIBLE) {
+            return readLines(file);
+        }
+        GlueCode glueCode = newGlueCode();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return readLines(file);
+            }
+            if (size > 0) {
+                glueCode.setSkipped(!scanLines(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), glueCode));
+            } else {
+                glueCode.setSkipped(true);
+            }
+        }
+        return glueCode;
+    }
+
+    /**
+     * Runs through the lines of a file, only processing the ones which matter
+     *
+     * @return boolean - whether any steps were found
+     */
+    private boolean scanLines(ByteBuffer buffer, GlueCode glueCode) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        byte[] bytes = new byte[256];
+        int limit = buffer.limit();
+        int start = 0;
+        long skipped = 0;
+        boolean next = false;
+        boolean steps = false;
+        while (start < limit) {
+            int end = start;
+            byte b = 0;
+            while (end < limit && (b = buffer.get(end)) != '\n' && b != '\r') {
+                end++;
+            }
+            boolean step = isStep(buffer, start, end);
+            // the line after a step may hold its parameters, so it's needed too
+            if (next || step || startsWith(buffer, start, end, IMPORT)) {
+                int length = end - start;
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = buffer.get(start + i);
+                }
+                // count the lines skipped so far, so steps know which line they're on
+                glueCode.skipLines(skipped);
+                skipped = 0;
+                glueCode.processLine(new String(bytes, 0, length, charset));
+            } else {
+                skipped++;
+            }
+            next = step;
+            steps |= step;
+            // a line ends with a line feed, a carriage return, or both
+            if (end < limit) {
+                end++;
+                if (b == '\r' && end < limit && buffer.get(end) == '\n') {
+                    end++;
+                }
+            }
+            start = end;
+        }
+        glueCode.skipLines(skipped);
+        return steps;
+    }
+
+    /**
+     * Searches for a step anywhere in the file: any keyword followed by an
+     * opening parenthesis, which covers both annotations and lambda steps
+     *
+     * @param buffer - the contents of the file
+     * @return boolean - whether there might be a step within the file
+     */
+    private boolean containsStep(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int state = KeywordMatcher.START;
+        for (int i = 0; i < limit; i++) {
+            state = keywordBytes.step(state, buffer.get(i) & 0xFF);
+            if (keywordBytes.isMatch(state)) {
+                int j = i + 1;
+                while (j < limit && (buffer.get(j) & 0xFF) <= ' ') {
+                    j++;
+                }
+                if (j < limit && buffer.get(j) == '(') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if the line, once trimmed, starts with a step keyword, or a
+     * step annotation. This may let through a few lines which aren't steps,
+     * those are simply decoded and processed, but never misses a step
+     */
+    private boolean isStep(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        // trim treats every control character as whitespace, and those are all single bytes
+        while (i < end && (buffer.get(i) & 0xFF) <= ' ') {
+            i++;
+        }
+        if (i < end && buffer.get(i) == '@') {
+            i++;
+        }
+        return keywordBytes.matchAt(buffer, i, end) > 0;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        String ascii = "import @GivenWhenThen\r\n\t ";
+        return (charset.equals(StandardCharsets.UTF_8) || charset.newEncoder().maxBytesPerChar() == 1) &&
+                Arrays.equals(ascii.getBytes(charset), ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Walks the provided folders looking for java files. Directories which can't
+ * contain glue code (version control and build output folders by default) are
+ * skipped without being descended into, symbolic link loops are detected, and
+ * files reachable from more than one of the folders are only returned once.
+ * Iterating over the scanner walks the folders in the background, returning
+ * files as soon as they're found. The walk stops when its iterator is closed,
+ * or once the iterator is no longer referenced, so stopping partway through
+ * never leaves the walk behind
+ */
+public class JavaFileScanner implements Iterable<Path> {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    public static final Set<String> DEFAULT_EXCLUDES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(".git", ".svn", ".hg", ".idea", "target", "node_modules")));
+    private static final String JAVA = ".java";
+    private static final Path END = Paths.get("");
+    private static final int QUEUE_SIZE = 1024;
+    private static final long OFFER_MILLIS = 100;
+
+    private List<Path> roots = new ArrayList<>();
+    private Set<String> excludes;
+    private RunStats.Phase phase = new RunStats().getPhase(RunStats.SCAN);
+
+    public JavaFileScanner(List<File> folders) {
+        this(folders, DEFAULT_EXCLUDES);
+    }
+
+    public JavaFileScanner(List<File> folders, Set<String> excludes) {
+        for (File folder : folders) {
+            roots.add(folder.toPath());
+        }
+        this.excludes = excludes;
+    }
+
+    /**
+     * Records the time taken walking the folders, and the files found, into
+     * the provided measurements
+     *
+     * @param stats - the measurements of the run
+     */
+    public void setStats(RunStats stats) {
+        phase = stats.getPhase(RunStats.SCAN);
+    }
+
+    /**
+     * Walks all of the folders, returning once every java file has been found
+     *
+     * @return List - all of the java files found, in the order they were found
+     * @throws IOException
+     */
+    public List<Path> scan() throws IOException {
+        List<Path> files = new ArrayList<>();
+        walk(files::add);
+        return files;
+    }
+
+    /**
+     * Walks all of the folders on a background thread, so that files can be
+     * consumed while the walk is still in progress. Any problem encountered
+     * while walking is re-thrown as an UncheckedIOException once all of the
+     * files found before it have been returned. The iterator returned is a
+     * ScanIterator, which should be closed if it isn't iterated to the end
+     *
+     * @return Iterator - the java files, in the order they are found
+     */
+    @Override
+    public Iterator<Path> iterator() {
+        return new ScanIterator();
+    }
+
+    /**
+     * Iterates over the files found by a walk running in the background.
+     * Closing the iterator stops the walk. The walk only holds a weak
+     * reference to its iterator, so an iterator which is simply dropped stops
+     * its walk too, once it has been garbage collected
+     */
+    public class ScanIterator implements Iterator<Path>, Closeable {
+        private final BlockingQueue<Path> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private final Thread walker;
+        private volatile IOException failure;
+        private Path next;
+
+        private ScanIterator() {
+            // the walk mustn't reference this iterator, so only hands it locals
+            JavaFileScanner scanner = JavaFileScanner.this;
+            BlockingQueue<Path> files = queue;
+            AtomicBoolean stop = stopped;
+            WeakReference<ScanIterator> iterator = new WeakReference<>(this);
+            walker = new Thread(() -> {
+                try {
+                    scanner.walk(file -> offer(files, file, stop, iterator));
+                } catch (IOException e) {
+                    ScanIterator owner = iterator.get();
+                    if (owner != null) {
+                        owner.failure = e;
+                    }
+                } finally {
+                    offer(files, END, stop, iterator);
+                }
+            }, "GherkinBuilder-scanner");
+            walker.setDaemon(true);
+            walker.start();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (stopped.get()) {
+                return false;
+            }
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new IOException("Interrupted while scanning for glue code"));
+                }
+            }
+            if (next == END) {
+                if (failure != null) {
+                    throw new UncheckedIOException(failure);
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path file = next;
+            next = null;
+            return file;
+        }
+
+        /**
+         * Stops the walk, if it's still running. No more files are returned
+         * once the iterator is closed
+         */
+        @Override
+        public void close() {
+            stopped.set(true);
+            walker.interrupt();
+            queue.clear();
+        }
+
+        /**
+         * Determines whether the background walk is still running
+         *
+         * @return boolean - whether the walk has yet to finish
+         */
+        public boolean isWalking() {
+            return walker.isAlive();
+        }
+    }
+
+    /**
+     * Hands a file over to the iterator, waiting while the iterator has
+     * fallen behind, unless the iterator has been closed, or dropped, in
+     * which case the walk is interrupted, so it stops
+     */
+    private static void offer(BlockingQueue<Path> queue, Path file, AtomicBoolean stopped,
+                              WeakReference<ScanIterator> iterator) {
+        try {
+            while (!stopped.get() && iterator.get() != null) {
+                if (queue.offer(file, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // fall through, and stop the walk
+        }
+        Thread.currentThread().interrupt();
+    }
+
+    private void walk(Consumer<Path> consumer) throws IOException {
+        long start = System.nanoTime();
+        long allocated = RunStats.getAllocatedBytes();
+        try {
+            walkRoots(consumer);
+        } finally {
+            phase.addNanos(System.nanoTime() - start);
+            phase.addAllocated(RunStats.getAllocatedBytes() - allocated);
+        }
+    }
+
+    private void walkRoots(Consumer<Path> consumer) throws IOException {
+        // only folders, and files reached through a link, are remembered, so memory doesn't grow with every file
+        Set<Object> visited = new HashSet<>();
+        Set<Object> linked = new HashSet<>();
+        for (Path root : roots) {
+            if (!Files.exists(root)) {
+                log.log(Level.WARNING, "Skipping folder which does not exist: " + root);
+                continue;
+            }
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return FileVisitResult.TERMINATE;
+                            }
+                            if (!dir.equals(root) && excludes.contains(String.valueOf(dir.getFileName()))) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            // don't walk the same folder twice, whether linked to, or under multiple roots
+                            if (!visited.add(getKey(dir, attrs))) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return FileVisitResult.TERMINATE;
+                            }
+                            if (!attrs.isRegularFile() || !file.toString().endsWith(JAVA)) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            if (Files.isSymbolicLink(file)) {
+                                // skip links to a file whose own folder is walked, or to one already returned
+                                if (isWalked(file.toRealPath(), visited) || !linked.add(getKey(file, attrs))) {
+                                    return FileVisitResult.CONTINUE;
+                                }
+                            } else if (!linked.isEmpty() && linked.contains(getKey(file, attrs))) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            phase.addFiles(1);
+                            consumer.accept(file);
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            if (e instanceof FileSystemLoopException) {
+                                log.log(Level.WARNING, "Skipping symbolic link loop at " + file);
+                            } else {
+                                log.log(Level.WARNING, "Unable to read " + file, e);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Determines whether the folder holding a java file has been walked, so
+     * the file itself has, or will be, returned from there
+     */
+    private static boolean isWalked(Path target, Set<Object> visited) throws IOException {
+        Path folder = target.getParent();
+        return target.toString().endsWith(JAVA) && folder != null &&
+                visited.contains(getKey(folder, Files.readAttributes(folder, BasicFileAttributes.class)));
+    }
+
+    /**
+     * Uniquely identifies a file, using the file system's key where one is
+     * available, and the canonical path otherwise
+     */
+    private static Object getKey(Path path, BasicFileAttributes attrs) throws IOException {
+        Object key = attrs.fileKey();
+        if (key != null) {
+            return key;
+        }
+        return path.toRealPath();
+    }
+}
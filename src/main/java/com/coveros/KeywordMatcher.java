@@ -0,0 +1,275 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Matches a set of keywords using a single Aho-Corasick automaton, so that
+ * looking for any number of keywords costs one pass over the input. The
+ * automaton can be built over characters, for matching lines of source, or
+ * over the bytes of the keywords in some encoding, for searching file contents
+ * without decoding them. Transitions for single byte symbols are fully
+ * resolved up front, so matching those never needs to follow failure links.
+ * Once built, a matcher can be shared between threads
+ */
+public class KeywordMatcher {
+
+    /**
+     * The state every match starts from, see step
+     */
+    public static final int START = 0;
+    private static final int DENSE = 256;
+    private static final int ROOT = START;
+
+    private List<String> keywords = new ArrayList<>();
+    private int states = 0;
+    private int[][] dense = new int[16][];
+    private Map<Integer, Integer>[] others = newMaps(16);
+    private int[] fail = new int[16];
+    private int[] depth = new int[16];
+    // whether a keyword ends exactly at each state
+    private boolean[] keyword = new boolean[16];
+    // whether any keyword ends at each state, including through its failure links
+    private boolean[] output = new boolean[16];
+
+    /**
+     * Builds a matcher over the characters of the keywords
+     *
+     * @param keywords - the keywords to match
+     */
+    public KeywordMatcher(Collection<String> keywords) {
+        this(keywords, null);
+    }
+
+    /**
+     * Builds a matcher over the bytes of the keywords, as encoded in the
+     * provided character set
+     *
+     * @param keywords - the keywords to match
+     * @param charset  - the encoding of the bytes to be matched
+     */
+    public KeywordMatcher(Collection<String> keywords, Charset charset) {
+        addState(0);
+        for (String word : keywords) {
+            if (word.isEmpty() || this.keywords.contains(word)) {
+                continue;
+            }
+            int state = ROOT;
+            for (int symbol : getSymbols(word, charset)) {
+                int next = getGoto(state, symbol);
+                if (next < 0) {
+                    next = addState(depth[state] + 1);
+                    setGoto(state, symbol, next);
+                }
+                state = next;
+            }
+            keyword[state] = true;
+            output[state] = true;
+            this.keywords.add(word);
+        }
+        buildFailureLinks();
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    private static int[] getSymbols(String word, Charset charset) {
+        if (charset == null) {
+            return word.chars().toArray();
+        }
+        byte[] bytes = word.getBytes(charset);
+        int[] symbols = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            symbols[i] = bytes[i] & 0xFF;
+        }
+        return symbols;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Integer>[] newMaps(int size) {
+        return (Map<Integer, Integer>[]) new Map<?, ?>[size];
+    }
+
+    private int addState(int stateDepth) {
+        if (states == dense.length) {
+            int size = states * 2;
+            dense = Arrays.copyOf(dense, size);
+            others = Arrays.copyOf(others, size);
+            fail = Arrays.copyOf(fail, size);
+            depth = Arrays.copyOf(depth, size);
+            keyword = Arrays.copyOf(keyword, size);
+            output = Arrays.copyOf(output, size);
+        }
+        dense[states] = new int[DENSE];
+        Arrays.fill(dense[states], -1);
+        others[states] = new HashMap<>();
+        depth[states] = stateDepth;
+        return states++;
+    }
+
+    private int getGoto(int state, int symbol) {
+        if (symbol < DENSE) {
+            return dense[state][symbol];
+        }
+        return others[state].getOrDefault(symbol, -1);
+    }
+
+    private void setGoto(int state, int symbol, int next) {
+        if (symbol < DENSE) {
+            dense[state][symbol] = next;
+        } else {
+            others[state].put(symbol, next);
+        }
+    }
+
+    /**
+     * Links each state to the state for its longest proper suffix, breadth
+     * first, resolving every single byte transition along the way
+     */
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < DENSE; symbol++) {
+            if (dense[ROOT][symbol] < 0) {
+                dense[ROOT][symbol] = ROOT;
+            } else {
+                queue.add(dense[ROOT][symbol]);
+            }
+        }
+        queue.addAll(others[ROOT].values());
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            int[] failTransitions = dense[fail[state]];
+            for (int symbol = 0; symbol < DENSE; symbol++) {
+                int child = dense[state][symbol];
+                if (child < 0) {
+                    dense[state][symbol] = failTransitions[symbol];
+                } else {
+                    link(child, failTransitions[symbol], queue);
+                }
+            }
+            for (Map.Entry<Integer, Integer> transition : others[state].entrySet()) {
+                link(transition.getValue(), next(fail[state], transition.getKey()), queue);
+            }
+        }
+    }
+
+    private void link(int child, int failState, Queue<Integer> queue) {
+        fail[child] = failState;
+        output[child] |= output[failState];
+        queue.add(child);
+    }
+
+    /**
+     * Advances the automaton by a single symbol, for callers which need to
+     * look at the input around each match. Start from START, and check
+     * isMatch after each step
+     *
+     * @param state  - the current state
+     * @param symbol - the next character, or unsigned byte
+     * @return int - the state after the symbol
+     */
+    public int step(int state, int symbol) {
+        return next(state, symbol);
+    }
+
+    /**
+     * Determines whether a keyword ends at the provided state
+     *
+     * @param state - the current state
+     * @return boolean - whether any keyword ends at this state
+     */
+    public boolean isMatch(int state) {
+        return output[state];
+    }
+
+    private int next(int state, int symbol) {
+        if (symbol < DENSE) {
+            return dense[state][symbol];
+        }
+        while (true) {
+            Integer next = others[state].get(symbol);
+            if (next != null) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Finds the longest keyword starting exactly at the provided index
+     *
+     * @param text  - the text to match against
+     * @param start - the index the keyword must start at
+     * @return int - the length of the longest keyword found, or 0 if none start there
+     */
+    public int matchAt(CharSequence text, int start) {
+        int longest = 0;
+        int state = ROOT;
+        for (int i = start; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            // once we've fallen off the direct path, no keyword can start at the provided index
+            if (depth[state] != i - start + 1) {
+                break;
+            }
+            if (keyword[state]) {
+                longest = i - start + 1;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Finds the longest keyword starting exactly at the provided index
+     *
+     * @param buffer - the bytes to match against
+     * @param start  - the index the keyword must start at
+     * @param end    - the index to stop matching at
+     * @return int - the length of the longest keyword found, or 0 if none start there
+     */
+    public int matchAt(ByteBuffer buffer, int start, int end) {
+        int longest = 0;
+        int state = ROOT;
+        for (int i = start; i < end; i++) {
+            state = next(state, buffer.get(i) & 0xFF);
+            if (depth[state] != i - start + 1) {
+                break;
+            }
+            if (keyword[state]) {
+                longest = i - start + 1;
+            }
+        }
+        return longest;
+    }
+}
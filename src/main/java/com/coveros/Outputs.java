@@ -22,14 +22,27 @@ package com.coveros;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Outputs {
 
     private static Logger log = Logger.getLogger("Outputs");
+    private static final String OPTION = "--";
+    private static final String EXCLUDE = "exclude";
+    private static final String KEYWORDS = "keywords";
+    private static final String HASH = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
     private Outputs() {
     }
@@ -43,15 +56,29 @@ public class Outputs {
      * @throws IOException
      */
     public static List<File> checkInputs(String[] inputs) throws IOException {
-        // get all of our files for the listing
-        if (inputs.length < 1) {
-            String error = "Please provide the file location for the step definitions";
-            log.log(Level.SEVERE, error);
-            throw new IOException(error);
-        }
+        return checkInputs(inputs, null);
+    }
+
+    /**
+     * Checks the provided inputs, as above, treating any relative locations
+     * as within the provided folder, rather than the working folder
+     *
+     * @param inputs - the provided program parameters
+     * @param base   - the folder relative locations are within, or null for the working folder
+     * @return File - the File object of the provided input
+     * @throws IOException
+     */
+    public static List<File> checkInputs(String[] inputs, File base) throws IOException {
         List<File> stepDirs = new ArrayList<>();
         for( String input : inputs ) {
+            // options aren't locations, those are handled by checkOptions
+            if (input.startsWith(OPTION)) {
+                continue;
+            }
             File stepDir = new File(input);
+            if (base != null && !stepDir.isAbsolute()) {
+                stepDir = new File(base, input);
+            }
             if (!stepDir.exists()) {
                 String error = "Step defs file does not exist: " + stepDir;
                 log.log(Level.SEVERE, error);
@@ -59,25 +86,171 @@ public class Outputs {
             }
             stepDirs.add(stepDir);
         }
+        // get all of our files for the listing
+        if (stepDirs.isEmpty()) {
+            String error = "Please provide the file location for the step definitions";
+            log.log(Level.SEVERE, error);
+            throw new IOException(error);
+        }
         return stepDirs;
     }
 
     /**
-     * a method to recursively retrieve all the files in a folder
+     * Checks the provided inputs for any program options. Options are provided
+     * in the form '--name=value', or just '--name' for a simple flag, which is
+     * then given the value 'true'
+     *
+     * @param inputs - the provided program parameters
+     * @return Map - the provided options, keyed by their name
+     */
+    public static Map<String, String> checkOptions(String[] inputs) {
+        Map<String, String> options = new HashMap<>();
+        for (String input : inputs) {
+            if (!input.startsWith(OPTION)) {
+                continue;
+            }
+            String option = input.substring(OPTION.length());
+            int split = option.indexOf('=');
+            if (split < 0) {
+                options.put(option, "true");
+            } else {
+                options.put(option.substring(0, split), option.substring(split + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Retrieves a numeric option, falling back to the provided default if the
+     * option wasn't provided
+     *
+     * @param options      - the provided program options
+     * @param name         - the name of the option to retrieve
+     * @param defaultValue - the value to use if the option wasn't provided
+     * @return int - the value of the option
+     * @throws IOException
+     */
+    public static int getIntOption(Map<String, String> options, String name, int defaultValue) throws IOException {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            String error = "The option '" + name + "' must be a number, but was '" + value + "'";
+            log.log(Level.SEVERE, error);
+            throw new IOException(error, e);
+        }
+    }
+
+    /**
+     * a method to recursively retrieve all the java files in a folder
      *
      * @param folder: the folder to check for files
      * @return ArrayList<String>: an ArrayList with the of multiple files
      * @throws IOException
      */
-    public static List<String> listFilesForFolder(File folder) {
+    public static List<String> listFilesForFolder(File folder) throws IOException {
         List<String> files = new ArrayList<>();
-        for (final File fileEntry : folder.listFiles()) {
-            if (fileEntry.isDirectory()) {
-                files.addAll(listFilesForFolder(fileEntry));
-            } else {
-                files.add(fileEntry.getPath());
-            }
+        for (Path file : new JavaFileScanner(Collections.singletonList(folder)).scan()) {
+            files.add(file.toString());
         }
         return files;
     }
-}
\ No newline at end of file
+
+    /**
+     * Determines which directories should not be scanned for glue code. Any
+     * directory names provided with the exclude option, separated by commas,
+     * are excluded in addition to the default ones
+     *
+     * @param options - the provided program options
+     * @return Set - the names of directories to skip
+     */
+    public static Set<String> getExcludes(Map<String, String> options) {
+        Set<String> excludes = new HashSet<>(JavaFileScanner.DEFAULT_EXCLUDES);
+        String exclude = options.get(EXCLUDE);
+        if (exclude != null) {
+            for (String name : exclude.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    excludes.add(name.trim());
+                }
+            }
+        }
+        return excludes;
+    }
+
+    /**
+     * Determines which step keywords glue code is searched for. Any keywords
+     * provided with the keywords option, separated by commas, replace the
+     * default ones, so that meta-annotations or translated keywords can be
+     * recognised. A leading '@' is optional
+     *
+     * @param options - the provided program options
+     * @return List - the step keywords to recognise
+     */
+    public static List<String> getKeywords(Map<String, String> options) {
+        return getKeywords(options.get(KEYWORDS));
+    }
+
+    /**
+     * Splits up a list of step keywords, separated by commas, as above
+     *
+     * @param keyword - the provided keywords, or null to use the default ones
+     * @return List - the step keywords to recognise
+     */
+    public static List<String> getKeywords(String keyword) {
+        List<String> keywords = new ArrayList<>();
+        if (keyword != null && !"true".equals(keyword)) {
+            for (String name : keyword.split(",")) {
+                name = name.trim();
+                if (name.startsWith("@")) {
+                    name = name.substring(1);
+                }
+                if (!name.isEmpty()) {
+                    keywords.add(name);
+                }
+            }
+        }
+        return keywords.isEmpty() ? GlueCode.DEFAULT_KEYWORDS : keywords;
+    }
+
+    /**
+     * Starts a SHA-256 digest, for contents which are added to it bit by bit
+     *
+     * @return MessageDigest - a fresh digest
+     * @throws IOException - if the platform somehow doesn't provide SHA-256
+     */
+    public static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance(HASH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Hashes the provided contents with SHA-256
+     *
+     * @param content - the contents to hash
+     * @return String - the hash, as lower case hex
+     * @throws IOException - if the platform somehow doesn't provide SHA-256
+     */
+    public static String sha256Hex(byte[] content) throws IOException {
+        return toHex(sha256().digest(content));
+    }
+
+    /**
+     * Writes out a digest, or any other bytes, as lower case hex
+     *
+     * @param bytes - the bytes to write out
+     * @return String - two hex digits for each byte
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An on disk cache of the steps, includes and enumerations parsed out of each
+ * glue code file. A file is only re-parsed when its size or modification time
+ * have changed, or when content hashing is enabled, when its contents have
+ * changed. A file modified so shortly before it was examined that another
+ * edit could still share its modification time is never trusted on its
+ * modification time alone, but re-parsed, or with content hashing, hashed.
+ * Entries can be retrieved and stored from multiple threads
+ */
+public class ParseCache {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    // increase whenever the parsed output changes, so old caches aren't used
+    private static final int VERSION = 5;
+    // the coarsest modification time kept by a common filesystem, FAT's two seconds
+    private static final long RACY_MILLIS = 2000;
+
+    private File location;
+    private boolean hashContents;
+    private String keywords;
+    private Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private Map<String, Entry> used = new ConcurrentHashMap<>();
+    private AtomicInteger hits = new AtomicInteger();
+    private AtomicInteger misses = new AtomicInteger();
+    private boolean started = false;
+
+    public ParseCache(File location, boolean hashContents) {
+        this(location, hashContents, GlueCode.DEFAULT_KEYWORDS);
+    }
+
+    /**
+     * Builds a cache of files parsed with the provided step keywords. The
+     * keywords are stored with the cache, as a cache written while looking
+     * for different keywords can't be used
+     *
+     * @param location     - the file the cache is stored in
+     * @param hashContents - whether to compare contents when a file was touched
+     * @param keywords     - the step keywords the files are parsed with
+     */
+    public ParseCache(File location, boolean hashContents, List<String> keywords) {
+        this.location = location;
+        this.hashContents = hashContents;
+        this.keywords = String.join(",", keywords);
+    }
+
+    /**
+     * The stamp of a file at the time it was examined. It should be taken
+     * before the file is parsed, so that changes made while parsing cause the
+     * file to be parsed again the next time around
+     */
+    public static class Stamp {
+        private final long size;
+        private final long modified;
+        private final long taken;
+        private String hash;
+
+        private Stamp(long size, long modified, long taken, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.taken = taken;
+            this.hash = hash;
+        }
+
+        /**
+         * Whether the file could still have been changed without changing
+         * its modification time, as the time hadn't moved on since
+         */
+        private boolean isRacy() {
+            return taken < modified + RACY_MILLIS;
+        }
+    }
+
+    private static class Entry {
+        private Stamp stamp;
+        private List<String> steps;
+        private List<String> includes;
+        private List<String> enumerations;
+    }
+
+    /**
+     * Reads in the previously stored cache, if there is one. A missing,
+     * unreadable, or out of date cache is simply treated as empty
+     */
+    public void load() {
+        entries.clear();
+        started = false;
+        if (!location.exists()) {
+            return;
+        }
+        // no length read from the cache can be longer than the cache itself
+        long limit = location.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(location)))) {
+            if (in.readInt() != VERSION || in.readBoolean() != hashContents ||
+                    !keywords.equals(readString(in, limit))) {
+                log.log(Level.INFO, "Ignoring out of date parse cache '" + location + "'");
+                return;
+            }
+            int count = readLength(in, limit);
+            for (int i = 0; i < count; i++) {
+                String file = readString(in, limit);
+                Entry entry = new Entry();
+                entry.stamp = new Stamp(in.readLong(), in.readLong(), in.readLong(),
+                        hashContents ? readString(in, limit) : null);
+                entry.steps = readList(in, limit);
+                entry.includes = readList(in, limit);
+                entry.enumerations = readList(in, limit);
+                entries.put(file, entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.clear();
+            log.log(Level.WARNING, "Unable to read parse cache '" + location + "', ignoring it", e);
+        }
+    }
+
+    /**
+     * Writes out the cache, including only the files which were retrieved or
+     * stored since it was loaded, so that deleted files don't linger
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        File parent = location.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        // write to the side, so an interrupted write never leaves a broken cache behind
+        File temp = new File(location.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            out.writeBoolean(hashContents);
+            writeString(out, keywords);
+            out.writeInt(used.size());
+            for (Map.Entry<String, Entry> file : used.entrySet()) {
+                Entry entry = file.getValue();
+                writeString(out, file.getKey());
+                out.writeLong(entry.stamp.size);
+                out.writeLong(entry.stamp.modified);
+                out.writeLong(entry.stamp.taken);
+                if (hashContents) {
+                    writeString(out, entry.stamp.hash);
+                }
+                writeList(out, entry.steps);
+                writeList(out, entry.includes);
+                writeList(out, entry.enumerations);
+            }
+        }
+        Files.move(temp.toPath(), location.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Starts another run over the glue code, for a cache which is kept in
+     * memory between runs, rather than loaded for each one. Entries for files
+     * the previous run didn't come across are dropped, as those files are
+     * gone, and the hits and misses are counted afresh. This mustn't be called
+     * while the cache is being saved
+     */
+    public void startRun() {
+        if (started) {
+            entries.keySet().retainAll(used.keySet());
+        }
+        started = true;
+        used.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Takes the current stamp of a file
+     *
+     * @param file - the glue code file to examine
+     * @return Stamp - the size and modification time of the file, and when they were taken
+     * @throws IOException
+     */
+    public Stamp stamp(Path file) throws IOException {
+        long taken = System.currentTimeMillis();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new Stamp(attrs.size(), attrs.lastModifiedTime().toMillis(), taken, null);
+    }
+
+    /**
+     * Retrieves the previously parsed results for a file, if the file hasn't
+     * changed since they were stored
+     *
+     * @param file  - the glue code file to look up
+     * @param stamp - the current stamp of the file
+     * @return GlueCode - the previously parsed results, or null if the file needs to be parsed
+     * @throws IOException
+     */
+    public GlueCode get(Path file, Stamp stamp) throws IOException {
+        String key = file.toAbsolutePath().toString();
+        Entry entry = entries.get(key);
+        if (entry == null || !matches(file, entry.stamp, stamp)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        // remember the new modification time, so the contents don't need to be hashed again
+        if (stamp.hash == null) {
+            stamp.hash = entry.stamp.hash;
+        }
+        entry.stamp = stamp;
+        used.put(key, entry);
+        GlueCode glueCode = new GlueCode();
+        for (String step : entry.steps) {
+            glueCode.addGlueCodeStep(step);
+        }
+        for (String include : entry.includes) {
+            glueCode.getEnumInfo().addClassInclude(include);
+        }
+        for (String enumeration : entry.enumerations) {
+            glueCode.getEnumInfo().addGlueCodeEnumeration(enumeration);
+        }
+        return glueCode;
+    }
+
+    /**
+     * Stores the parsed results for a file
+     *
+     * @param file     - the glue code file which was parsed
+     * @param stamp    - the stamp of the file, taken before it was parsed
+     * @param glueCode - the parsed results of the file
+     * @throws IOException
+     */
+    public void put(Path file, Stamp stamp, GlueCode glueCode) throws IOException {
+        if (hashContents && stamp.hash == null) {
+            stamp.hash = hash(file);
+        }
+        Entry entry = new Entry();
+        entry.stamp = stamp;
+        entry.steps = new ArrayList<>(glueCode.getGlueCodeSteps());
+        entry.includes = new ArrayList<>(glueCode.getEnumInfo().getClassIncludes());
+        entry.enumerations = new ArrayList<>(glueCode.getEnumInfo().getGlueCodeEnumerations());
+        String key = file.toAbsolutePath().toString();
+        entries.put(key, entry);
+        used.put(key, entry);
+    }
+
+    /**
+     * Returns the number of files whose parsed results were retrieved
+     *
+     * @return int - the number of cache hits
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of files which needed to be parsed
+     *
+     * @return int - the number of cache misses
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private boolean matches(Path file, Stamp cached, Stamp current) throws IOException {
+        if (cached.size != current.size) {
+            return false;
+        }
+        if (cached.modified == current.modified && !cached.isRacy()) {
+            return true;
+        }
+        // the file was touched, or may have been changed within the same modification time,
+        // but that doesn't mean the contents changed
+        if (hashContents && cached.hash != null) {
+            current.hash = hash(file);
+            return current.hash.equals(cached.hash);
+        }
+        return false;
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = Outputs.sha256();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return Outputs.toHex(digest.digest());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length, which must fit within the cache, so that a corrupt
+     * cache is rejected, rather than having a huge array allocated for it
+     */
+    private static int readLength(DataInputStream in, long limit) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid length " + length + " in a cache of " + limit + " bytes");
+        }
+        return length;
+    }
+
+    private static String readString(DataInputStream in, long limit) throws IOException {
+        byte[] bytes = new byte[readLength(in, limit)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in, long limit) throws IOException {
+        int count = readLength(in, limit);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in, limit));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records where the time goes while generating steps. Each phase (walking the
+ * folders, parsing the glue code, resolving enumerations, and writing the
+ * steps out) tracks its wall time, along with the files, lines and bytes it
+ * read, and the memory it allocated. Phases can be recorded into from multiple
+ * threads. Walking the folders happens in the background, while the glue code
+ * is being parsed, so the wall time of those two phases overlap
+ */
+public class RunStats {
+
+    public static final String SCAN = "scan";
+    public static final String PARSE = "parse";
+    public static final String ENUMERATIONS = "enumerations";
+    public static final String WRITE = "write";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION = isAllocationSupported();
+
+    private final long started = System.nanoTime();
+    private Map<String, Phase> phases = new LinkedHashMap<>();
+    private Map<String, Long> values = new LinkedHashMap<>();
+
+    public RunStats() {
+        for (String phase : new String[]{SCAN, PARSE, ENUMERATIONS, WRITE}) {
+            phases.put(phase, new Phase(phase));
+        }
+    }
+
+    /**
+     * The measurements of a single phase. Counters are only ever added to, so
+     * the same phase can be recorded into any number of times
+     */
+    public static class Phase {
+        private final String name;
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong lines = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong allocated = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void addNanos(long value) {
+            nanos.addAndGet(value);
+        }
+
+        public void addFiles(long value) {
+            files.addAndGet(value);
+        }
+
+        public void addLines(long value) {
+            lines.addAndGet(value);
+        }
+
+        public void addBytes(long value) {
+            bytes.addAndGet(value);
+        }
+
+        public void addAllocated(long value) {
+            allocated.addAndGet(value);
+        }
+
+        public void addSkipped(long value) {
+            skipped.addAndGet(value);
+        }
+
+        public long getNanos() {
+            return nanos.get();
+        }
+
+        public long getFiles() {
+            return files.get();
+        }
+
+        public long getLines() {
+            return lines.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        public long getAllocated() {
+            return allocated.get();
+        }
+
+        public long getSkipped() {
+            return skipped.get();
+        }
+
+        public double getMillis() {
+            return nanos.get() / 1e6;
+        }
+
+        private double perSecond(long count) {
+            return nanos.get() == 0 ? 0 : count * 1e9 / nanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%s: %.1f ms, %d files (%.0f/s, %d skipped), %d lines (%.0f/s), %d bytes, %d bytes allocated",
+                    name, getMillis(), getFiles(), perSecond(getFiles()), getSkipped(), getLines(),
+                    perSecond(getLines()), getBytes(), getAllocated());
+        }
+    }
+
+    /**
+     * Retrieves one of the phases, to record into
+     *
+     * @param name - the name of the phase, one of SCAN, PARSE, ENUMERATIONS or WRITE
+     * @return Phase - the measurements of the phase
+     */
+    public Phase getPhase(String name) {
+        return phases.get(name);
+    }
+
+    public List<Phase> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    /**
+     * Records an additional value about the run, such as the number of
+     * threads used, to be included in the report
+     *
+     * @param name  - the name of the value
+     * @param value - the value
+     */
+    public void setValue(String name, long value) {
+        values.put(name, value);
+    }
+
+    /**
+     * Returns an additional value recorded about the run
+     *
+     * @param name - the name of the value
+     * @return Long - the value, or null if it wasn't recorded
+     */
+    public Long getValue(String name) {
+        return values.get(name);
+    }
+
+    /**
+     * Determines how many bytes the current thread has allocated so far. The
+     * difference between two calls is the memory allocated between them
+     *
+     * @return long - the bytes allocated by the current thread, or 0 if the JVM can't tell
+     */
+    public static long getAllocatedBytes() {
+        if (!ALLOCATION) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static boolean isAllocationSupported() {
+        try {
+            return THREADS instanceof com.sun.management.ThreadMXBean &&
+                    ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported() &&
+                    ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+        } catch (LinkageError | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Formats the measurements as a JSON object, so that they can be trended
+     * over time. Rates are per second of each phase's wall time, and the
+     * allocation is null when the JVM can't measure it
+     *
+     * @return String - the measurements, as JSON
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"totalMillis\": ").append(format((System.nanoTime() - started) / 1e6)).append(",\n");
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            json.append("  \"").append(value.getKey()).append("\": ").append(value.getValue()).append(",\n");
+        }
+        json.append("  \"phases\": [");
+        String separator = "\n";
+        for (Phase phase : phases.values()) {
+            json.append(separator).append("    {");
+            json.append("\"name\": \"").append(phase.name).append("\", ");
+            json.append("\"millis\": ").append(format(phase.getMillis())).append(", ");
+            json.append("\"files\": ").append(phase.getFiles()).append(", ");
+            json.append("\"skippedFiles\": ").append(phase.getSkipped()).append(", ");
+            json.append("\"lines\": ").append(phase.getLines()).append(", ");
+            json.append("\"bytes\": ").append(phase.getBytes()).append(", ");
+            json.append("\"allocatedBytes\": ").append(ALLOCATION ? String.valueOf(phase.getAllocated()) : "null")
+                    .append(", ");
+            json.append("\"filesPerSecond\": ").append(format(phase.perSecond(phase.getFiles()))).append(", ");
+            json.append("\"linesPerSecond\": ").append(format(phase.perSecond(phase.getLines()))).append(", ");
+            json.append("\"bytesPerSecond\": ").append(format(phase.perSecond(phase.getBytes()))).append('}');
+            separator = ",\n";
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Writes the measurements out as a JSON report
+     *
+     * @param report - the file to write the report to
+     * @throws IOException
+     */
+    public void writeJson(File report) throws IOException {
+        File parent = report.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(report))) {
+            writer.write(toJson());
+        }
+    }
+}
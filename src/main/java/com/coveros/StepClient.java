@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Asks a running StepDaemon to generate the steps file, printing what happens
+ * as the daemon reports it. The client takes the same parameters as
+ * GenerateStepDefs, with relative locations within the current folder, and
+ * exits with 0 if the steps file was generated, 1 if it wasn't, and 2 if
+ * there's no daemon running, so scripts can fall back to running the jar
+ */
+public class StepClient {
+
+    public static final int NO_DAEMON = 2;
+    private static final String DAEMON_DIR = "--daemon-dir=";
+
+    private StepClient() {
+    }
+
+    public static void main(String[] args) {
+        File directory = StepDaemon.DEFAULT_DIRECTORY;
+        List<String> request = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(DAEMON_DIR)) {
+                directory = new File(arg.substring(DAEMON_DIR.length()));
+            } else {
+                request.add(arg);
+            }
+        }
+        System.exit(run(directory, new File("").getAbsoluteFile(), request.toArray(new String[0]), System.out));
+    }
+
+    /**
+     * Sends a request to the daemon, and prints its responses
+     *
+     * @param directory - where the daemon keeps its state
+     * @param base      - the folder relative locations are within
+     * @param args      - the program parameters, as for GenerateStepDefs, or --stop to stop the daemon
+     * @param out       - where to print the daemon's responses
+     * @return int - the exit status, 0 if the steps file was generated
+     */
+    public static int run(File directory, File base, String[] args, PrintStream out) {
+        File state = new File(directory, StepDaemon.STATE);
+        if (!state.exists()) {
+            out.println("No daemon is running, start one with --daemon");
+            return NO_DAEMON;
+        }
+        try {
+            List<String> daemon = StepDaemon.readState(state.toPath());
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(daemon.get(0)));
+                 DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                 DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                request.writeInt(StepDaemon.VERSION);
+                request.writeUTF(daemon.get(1));
+                request.writeUTF(base.getAbsolutePath());
+                request.writeInt(args.length);
+                for (String arg : args) {
+                    request.writeUTF(arg);
+                }
+                request.flush();
+                while (true) {
+                    byte type = response.readByte();
+                    if (type == StepDaemon.DONE) {
+                        return response.readInt();
+                    }
+                    out.println(response.readUTF());
+                }
+            }
+        } catch (ConnectException e) {
+            out.println("No daemon is running, start one with --daemon");
+            return NO_DAEMON;
+        } catch (IOException | RuntimeException e) {
+            out.println("Unable to reach the daemon: " + e);
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the generator loaded, compiled and cached between runs, generating
+ * the steps file whenever StepClient asks it to, so each run costs a round
+ * trip rather than starting a new JVM. The daemon only listens on the
+ * loopback address, and only accepts requests carrying the token it writes,
+ * along with its port, to a file only the current user can read, through
+ * either POSIX permissions or an ACL. Unless a cache is asked for, each
+ * project gets its own parse cache. The parse caches of the most recently
+ * used projects, and the enumerations read for them, are kept in memory
+ * between requests, so only the glue code and enumeration files which
+ * changed since the last request are read. The caches are written to disk
+ * behind the requests, rather than holding them up
+ */
+public class StepDaemon implements Closeable {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    public static final File DEFAULT_DIRECTORY = new File(System.getProperty("user.home"), ".gherkin-builder");
+    // increase whenever the messages between the client and daemon change
+    static final int VERSION = 1;
+    static final String STATE = "daemon";
+    static final String STOP = "--stop";
+    static final byte LINE = 1;
+    static final byte DONE = 2;
+    private static final String CACHES = "caches";
+    private static final int REQUESTS = 4;
+    private static final int READ_TIMEOUT = 10000;
+    private static final int SAVE_TIMEOUT = 30;
+    private static final int PROJECTS = 16;
+
+    private final File directory;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    // the least recently used project is dropped, once its cache is saved, to bound the memory kept
+    private final Map<String, StepGenerator.Warm> projects = new LinkedHashMap<String, StepGenerator.Warm>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StepGenerator.Warm> eldest) {
+            if (size() <= maxProjects) {
+                return false;
+            }
+            saveBehind(eldest.getValue());
+            return true;
+        }
+    };
+    private ServerSocket socket;
+    private ExecutorService requests;
+    private ExecutorService saves;
+    private String token;
+    private int threads;
+    private volatile int readTimeout = READ_TIMEOUT;
+    private volatile int maxProjects = PROJECTS;
+
+    /**
+     * Builds a daemon, which keeps its state in the provided folder
+     *
+     * @param directory - where the port, token and parse caches are kept
+     */
+    public StepDaemon(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Sets how long a client has to send each part of its request, so that a
+     * client which connects, but never sends anything, can't hold on to one
+     * of the few threads handling requests
+     *
+     * @param readTimeout - the time to wait for the client, in milliseconds
+     * @return StepDaemon - this daemon
+     */
+    public StepDaemon setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how many projects are kept warm in memory. Once more projects
+     * than this have been generated, the least recently used one is dropped,
+     * and is read back from its saved parse cache if it's asked for again
+     *
+     * @param maxProjects - the number of projects to keep in memory
+     * @return StepDaemon - this daemon
+     */
+    public StepDaemon setMaxProjects(int maxProjects) {
+        this.maxProjects = maxProjects;
+        return this;
+    }
+
+    /**
+     * Starts listening for requests, on any free port, and records the port
+     * and token for clients to find
+     *
+     * @param threads - the number of threads to parse each project's glue code with
+     * @throws IOException
+     */
+    public void start(int threads) throws IOException {
+        this.threads = threads;
+        Files.createDirectories(directory.toPath());
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        token = Outputs.toHex(random);
+        socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        requests = Executors.newFixedThreadPool(REQUESTS, runnable -> {
+            Thread thread = new Thread(runnable, "GherkinBuilder-daemon");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saves = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GherkinBuilder-daemon-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writeState();
+        Thread acceptor = new Thread(this::accept, "GherkinBuilder-daemon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.log(Level.INFO, "Daemon listening on port " + getPort());
+    }
+
+    /**
+     * @return int - the port being listened on
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * @return int - the number of projects currently kept in memory
+     */
+    public int getProjectCount() {
+        synchronized (projects) {
+            return projects.size();
+        }
+    }
+
+    /**
+     * Blocks until the daemon is closed, either directly, or by a client
+     *
+     * @throws InterruptedException
+     */
+    public void await() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public void close() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+            // only clean up after ourselves, not a daemon which has since replaced us
+            Path state = new File(directory, STATE).toPath();
+            if (token != null && Files.exists(state) && readState(state).contains(token)) {
+                Files.delete(state);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to clean up the daemon", e);
+        } finally {
+            saveAll();
+            if (requests != null) {
+                requests.shutdownNow();
+            }
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Finishes writing out any caches still waiting to be saved
+     */
+    private void saveAll() {
+        if (saves == null) {
+            return;
+        }
+        saves.shutdown();
+        try {
+            if (!saves.awaitTermination(SAVE_TIMEOUT, TimeUnit.SECONDS)) {
+                log.log(Level.WARNING, "Gave up waiting for the parse caches to be saved");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes out a project's parse cache behind the request, so the client
+     * doesn't wait on it
+     */
+    private void saveBehind(StepGenerator.Warm warm) {
+        try {
+            saves.execute(() -> save(warm));
+        } catch (RejectedExecutionException e) {
+            // the daemon is stopping, and no longer writing caches behind
+            save(warm);
+        }
+    }
+
+    /**
+     * Writes out a project's parse cache, once nothing is being generated for
+     * it. Only caches which changed since they were last written are saved
+     */
+    private static void save(StepGenerator.Warm warm) {
+        synchronized (warm) {
+            try {
+                warm.save();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to save a parse cache", e);
+            }
+        }
+    }
+
+    private void writeState() throws IOException {
+        Path state = new File(directory, STATE).toPath();
+        Path temp = new File(directory, STATE + ".tmp").toPath();
+        Files.deleteIfExists(temp);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else if (FileSystems.getDefault().supportedFileAttributeViews().contains("acl")) {
+            // replace the inherited entries, so only the owner can read the token
+            Files.createFile(temp);
+            AclFileAttributeView view = Files.getFileAttributeView(temp, AclFileAttributeView.class);
+            view.setAcl(Collections.singletonList(AclEntry.newBuilder().setType(AclEntryType.ALLOW)
+                    .setPrincipal(view.getOwner()).setPermissions(AclEntryPermission.values()).build()));
+        } else {
+            log.log(Level.WARNING, "Unable to restrict who can read the daemon's token, in " + temp);
+        }
+        Files.write(temp, Arrays.asList(Integer.toString(getPort()), token), StandardCharsets.UTF_8);
+        Files.move(temp, state, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static List<String> readState(Path state) throws IOException {
+        return Files.readAllLines(state, StandardCharsets.UTF_8);
+    }
+
+    private void accept() {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                requests.execute(() -> handle(client));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.log(Level.WARNING, "Unable to accept a request", e);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        try {
+            client.setSoTimeout(readTimeout);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to set up a request", e);
+        }
+        try (Socket connection = client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            if (in.readInt() != VERSION) {
+                done(out, 1, "The client and daemon are different versions, restart the daemon");
+                return;
+            }
+            if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                    in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                done(out, 1, "The request wasn't authorised by the daemon");
+                return;
+            }
+            File base = new File(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            if (args.length == 1 && STOP.equals(args[0])) {
+                done(out, 0, "Stopping the daemon");
+                close();
+                return;
+            }
+            int status = generate(base, args, out);
+            out.writeByte(DONE);
+            out.writeInt(status);
+        } catch (SocketTimeoutException e) {
+            log.log(Level.INFO, "Gave up on a client which didn't send its request");
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to handle a request", e);
+        }
+    }
+
+    /**
+     * Generates the steps file for the provided program parameters, with any
+     * relative locations within the client's working folder, sending what
+     * happened back to the client as it happens
+     *
+     * @return int - the exit status for the client, 0 if the steps file was generated
+     */
+    private int generate(File base, String[] args, DataOutputStream out) throws IOException {
+        try {
+            Map<String, String> options = Outputs.checkOptions(args);
+            if (GenerateStepDefs.isLongRunning(options)) {
+                line(out, "Watching, serving and starting a daemon can't be done through the daemon");
+                return 1;
+            }
+            if (options.containsKey(GenerateStepDefs.STREAM)) {
+                line(out, "Streaming can't be done through the daemon, which keeps every project's steps cached");
+                return 1;
+            }
+            List<File> stepDirs = Outputs.checkInputs(args, base);
+            int requestThreads = Outputs.getIntOption(options, GenerateStepDefs.THREADS, threads);
+            // keep a cache for each project, so only files changed since its last request are parsed
+            if (!options.containsKey(GenerateStepDefs.CACHE)) {
+                options.put(GenerateStepDefs.CACHE, getCache(base, args).getPath());
+            }
+            String cache = GenerateStepDefs.resolve(base, options.get(GenerateStepDefs.CACHE)).getCanonicalPath();
+            line(out, "Generating steps for " + base);
+            long start = System.nanoTime();
+            RunStats stats;
+            // the same project can't be generated twice at once, as they'd both use the same cache
+            StepGenerator.Warm warm;
+            synchronized (projects) {
+                warm = projects.computeIfAbsent(cache, k -> new StepGenerator.Warm());
+            }
+            synchronized (warm) {
+                stats = GenerateStepDefs.generate(GenerateStepDefs.getGenerator(options, stepDirs, requestThreads,
+                        base).setWarm(warm), options, base);
+            }
+            saveBehind(warm);
+            for (RunStats.Phase phase : stats.getPhases()) {
+                line(out, phase.toString());
+            }
+            line(out, "Re-used " + stats.getValue("cacheHits") + " cached files, parsed " +
+                    stats.getValue("cacheMisses") + " files, in " + (System.nanoTime() - start) / 1000000 + " ms");
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Unable to generate steps for " + base, e);
+            line(out, "Unable to generate steps: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * The parse cache kept for a project, by its folder and parameters
+     */
+    private File getCache(File base, String[] args) throws IOException {
+        MessageDigest digest = Outputs.sha256();
+        digest.update(base.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+        for (String arg : args) {
+            digest.update((byte) 0);
+            digest.update(arg.getBytes(StandardCharsets.UTF_8));
+        }
+        return new File(new File(directory, CACHES), Outputs.toHex(digest.digest()) + ".cache").getAbsoluteFile();
+    }
+
+    private static void line(DataOutputStream out, String line) throws IOException {
+        out.writeByte(LINE);
+        out.writeUTF(line);
+        out.flush();
+    }
+
+    private static void done(DataOutputStream out, int status, String line) throws IOException {
+        line(out, line);
+        out.writeByte(DONE);
+        out.writeInt(status);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single step definition, as identified in the glue code: the keyword it
+ * was written with, the step as displayed, its parameters, and where it was
+ * found. Definitions are immutable, so can be handed between threads freely
+ */
+public class StepDefinition {
+
+    public static final String TEXT = "text";
+    public static final String NUMBER = "number";
+    public static final String DATE = "date";
+
+    private final String keyword;
+    private final String text;
+    private final String step;
+    private final List<Parameter> parameters;
+    private final Path file;
+    private final long line;
+
+    StepDefinition(String keyword, String text, String step, List<Parameter> parameters, Path file, long line) {
+        this.keyword = keyword;
+        this.text = text;
+        this.step = step;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        this.file = file;
+        this.line = line;
+    }
+
+    /**
+     * A single parameter of a step. Its type is text, number or date, or
+     * otherwise the simple name of the enumeration it takes
+     */
+    public static class Parameter {
+        private final String name;
+        private final String type;
+        private final boolean list;
+        private final boolean enumeration;
+
+        Parameter(String name, String type, boolean list, boolean enumeration) {
+            this.name = name;
+            this.type = type;
+            this.list = list;
+            this.enumeration = enumeration;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isList() {
+            return list;
+        }
+
+        public boolean isEnumeration() {
+            return enumeration;
+        }
+
+        @Override
+        public String toString() {
+            return type + (list ? "[] " : " ") + name;
+        }
+    }
+
+    /**
+     * Returns a copy of this definition, noting the file it was found in
+     */
+    StepDefinition withFile(Path source) {
+        return new StepDefinition(keyword, text, step, parameters, source, line);
+    }
+
+    /**
+     * Returns the step keyword the step was written with, such as Given
+     *
+     * @return String - the step keyword, without any '@'
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Returns the step as it is displayed by the gherkin builder, with any
+     * groups replaced by input fields
+     *
+     * @return String - the formatted step
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the step exactly as it's written out into the steps file
+     *
+     * @return String - the step, formatted to be consumed by the gherkin builder class as js
+     */
+    public String getStep() {
+        return step;
+    }
+
+    public List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the enumerations this step's parameters take, in the order the
+     * parameters are declared
+     *
+     * @return List - the simple names of the enumerations referenced
+     */
+    public List<String> getEnumerations() {
+        List<String> enumerations = new ArrayList<>();
+        for (Parameter parameter : parameters) {
+            if (parameter.isEnumeration() && !enumerations.contains(parameter.getType())) {
+                enumerations.add(parameter.getType());
+            }
+        }
+        return enumerations;
+    }
+
+    /**
+     * Returns the glue code file the step was found in
+     *
+     * @return Path - the source file, or null if it isn't known
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the line of the glue code file the step starts on
+     *
+     * @return long - the line number, starting at 1
+     */
+    public long getLine() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        return (file == null ? "" : file + ":") + line + " " + keyword + " " + text;
+    }
+}
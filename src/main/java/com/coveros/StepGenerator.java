@@ -0,0 +1,459 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the steps file from within another java program, such as a build
+ * tool, rather than from the command line. A generator is configured with
+ * chained setters, and can be run any number of times, each run starting
+ * from scratch, and sharing nothing with any other run or generator, so many
+ * projects can be generated one after another, or side by side, in one JVM.
+ * For example
+ * <pre>
+ * StepGenerator.Result result = new StepGenerator()
+ *         .addRoot(new File("src/test/java/steps"))
+ *         .setOutput(new File("target/steps.js"))
+ *         .generate();
+ * </pre>
+ */
+public class StepGenerator {
+
+    private static final String SOURCE_ROOT = "src/main/java/";
+    private static final String THREADS = "threads";
+
+    private List<File> roots = new ArrayList<>();
+    private List<String> sourceRoots = new ArrayList<>();
+    private List<String> keywords = GlueCode.DEFAULT_KEYWORDS;
+    private Set<String> excludes = JavaFileScanner.DEFAULT_EXCLUDES;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean mapped = false;
+    private boolean classes = false;
+    private boolean streaming = false;
+    private List<File> classpath = Collections.emptyList();
+    private File cache;
+    private boolean cacheHash = false;
+    private File output;
+    private Writer writer;
+    private Warm warm;
+
+    /**
+     * Adds a folder of glue code to look for steps in, or when reading
+     * compiled classes, a folder of classes, a jar, or a single class file
+     *
+     * @param root - where to look for steps
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator addRoot(File root) {
+        roots.add(root);
+        return this;
+    }
+
+    /**
+     * Adds a folder the enumerations used by the steps are defined within,
+     * as the root of the package structure. If none are added, they're
+     * worked out from each glue code folder, see getSourceRoot
+     *
+     * @param sourceRoot - the root of a source tree, such as src/main/java
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator addSourceRoot(File sourceRoot) {
+        sourceRoots.add(withSeparator(sourceRoot.getAbsolutePath()));
+        return this;
+    }
+
+    /**
+     * Sets the step keywords to look for, without the '@'
+     *
+     * @param keywords - the step keywords, by default Given, When, Then, And and But
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setKeywords(List<String> keywords) {
+        this.keywords = keywords;
+        return this;
+    }
+
+    /**
+     * Sets the names of folders which are never descended into
+     *
+     * @param excludes - the folder names, by default JavaFileScanner.DEFAULT_EXCLUDES
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setExcludes(Set<String> excludes) {
+        this.excludes = excludes;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads to parse the glue code with
+     *
+     * @param threads - the number of threads, by default one per processor
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Determines whether glue code files are memory mapped, see
+     * GlueCodeReader.readMapped
+     *
+     * @param mapped - whether to memory map the files
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setMapped(boolean mapped) {
+        this.mapped = mapped;
+        return this;
+    }
+
+    /**
+     * Determines whether the roots are compiled classes and jars, rather
+     * than source, see CompiledGlueReader
+     *
+     * @param classes - whether to read compiled classes
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setClasses(boolean classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    /**
+     * Determines whether steps are written to the output file as they're
+     * parsed, rather than being held until the end, see
+     * GenerateStepDefs.streamSteps. Streamed steps aren't returned in the
+     * result, an output file must be set, and a writer can't be. Nor can a
+     * cache, as it holds every file's steps in memory until it's saved
+     *
+     * @param streaming - whether to stream the steps
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    /**
+     * Sets the folders and jars of compiled classes to load enumerations
+     * from, see ClasspathEnumerations
+     *
+     * @param classpath - the compiled classes, by default none
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setClasspath(List<File> classpath) {
+        this.classpath = classpath;
+        return this;
+    }
+
+    /**
+     * Sets where previously parsed results are kept, so only files which
+     * changed since the last run are parsed, see ParseCache
+     *
+     * @param cache     - the cache file, or null to parse every file
+     * @param cacheHash - whether to compare contents when a file was touched
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setCache(File cache, boolean cacheHash) {
+        this.cache = cache;
+        this.cacheHash = cacheHash;
+        return this;
+    }
+
+    /**
+     * Keeps the parse cache, and the enumerations already read, in memory in
+     * the provided state between runs, rather than loading and saving the
+     * cache, and re-indexing the source roots, on every run. See Warm
+     *
+     * @param warm - what's kept between runs, or null to start each run from disk
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setWarm(Warm warm) {
+        this.warm = warm;
+        return this;
+    }
+
+    /**
+     * Sets the file the steps are written to
+     *
+     * @param output - the steps file, or null to not write one
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setOutput(File output) {
+        this.output = output;
+        return this;
+    }
+
+    /**
+     * Sets a writer the steps are also written to. The writer is flushed,
+     * but left open
+     *
+     * @param writer - where to write the steps, or null to not write them
+     * @return StepGenerator - this generator
+     */
+    public StepGenerator setWriter(Writer writer) {
+        this.writer = writer;
+        return this;
+    }
+
+    /**
+     * Works out the root of the source tree a glue code folder is within,
+     * which is where its enumerations are looked for. That's the folder
+     * ending in src/main/java, if the glue code is within one, otherwise the
+     * glue code folder itself
+     *
+     * @param root - the glue code folder
+     * @return String - the root of the source tree, ending in a separator
+     */
+    public static String getSourceRoot(File root) {
+        String path = withSeparator(root.getAbsolutePath());
+        String normalized = path.replace(File.separatorChar, '/');
+        int index = normalized.indexOf(SOURCE_ROOT);
+        if (index < 0) {
+            return path;
+        }
+        return path.substring(0, index + SOURCE_ROOT.length());
+    }
+
+    private static String withSeparator(String path) {
+        return path.endsWith(File.separator) ? path : path + File.separator;
+    }
+
+    /**
+     * What's kept in memory between runs over the same project by a long
+     * running process: the parse cache, and the source index and enumerations
+     * already built. Runs given the same warm state only read the glue code,
+     * and the enumeration files, which changed since the last run. The parse
+     * cache isn't saved by each run, but whenever suits, with save, so it can
+     * be written behind the runs. A warm state must only be used, or saved,
+     * by one thread at a time
+     */
+    public static class Warm {
+        private ParseCache parseCache;
+        private String cacheKey;
+        private boolean unsaved = false;
+        private EnumInfo sources;
+        private List<String> sourceRoots;
+
+        /**
+         * Retrieves the parse cache kept in memory, loading it first if it
+         * hasn't been, or if a different cache, or different settings, are
+         * asked for, and starts a run over it
+         */
+        private ParseCache getParseCache(File cache, boolean cacheHash, List<String> keywords) throws IOException {
+            String key = cache.getAbsolutePath() + File.pathSeparator + cacheHash + File.pathSeparator +
+                    String.join(",", keywords);
+            if (parseCache == null || !key.equals(cacheKey)) {
+                save();
+                parseCache = new ParseCache(cache, cacheHash, keywords);
+                parseCache.load();
+                cacheKey = key;
+            }
+            parseCache.startRun();
+            unsaved = true;
+            return parseCache;
+        }
+
+        /**
+         * Writes out the parse cache, if it has changed since it was last
+         * written
+         *
+         * @throws IOException
+         */
+        public void save() throws IOException {
+            if (unsaved) {
+                parseCache.save();
+                unsaved = false;
+            }
+        }
+    }
+
+    /**
+     * The results of a single run of the generator
+     */
+    public static class Result {
+        private final List<String> steps;
+        private final List<String> enumerations;
+        private final RunStats stats;
+
+        private Result(List<String> steps, List<String> enumerations, RunStats stats) {
+            this.steps = Collections.unmodifiableList(steps);
+            // enumerations which couldn't be found are left out of the steps file too
+            this.enumerations = Collections.unmodifiableList(
+                    enumerations.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+            this.stats = stats;
+        }
+
+        /**
+         * @return List - the steps, formatted as javascript, or nothing if they were streamed
+         */
+        public List<String> getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return List - the enumerations used by the steps, formatted as javascript
+         */
+        public List<String> getEnumerations() {
+            return enumerations;
+        }
+
+        /**
+         * @return RunStats - how long each phase of the run took, along with what it read
+         */
+        public RunStats getStats() {
+            return stats;
+        }
+
+        /**
+         * Writes out the enumerations and steps, exactly as they appear in the
+         * steps file, to the provided writer, which is left open
+         *
+         * @param writer - where to write the javascript
+         * @throws IOException
+         */
+        public void writeSteps(Writer writer) throws IOException {
+            GenerateStepDefs.writeSteps(enumerations, steps, writer);
+        }
+    }
+
+    /**
+     * Finds and parses all of the glue code, and writes out the steps to the
+     * output file and writer, if either were set
+     *
+     * @return Result - the steps, enumerations, and measurements of the run
+     * @throws IOException
+     */
+    public Result generate() throws IOException {
+        if (streaming && (output == null || writer != null)) {
+            throw new IllegalStateException("Steps can only be streamed to an output file");
+        }
+        if (streaming && !classes && cache != null) {
+            throw new IllegalStateException("Steps can't be streamed while using a cache, " +
+                    "as the cache holds every step until it's saved");
+        }
+        try (ClasspathEnumerations enumerations = classpath.isEmpty() ? null : new ClasspathEnumerations(classpath)) {
+            return generate(enumerations);
+        }
+    }
+
+    /**
+     * Publishes each step definition in the glue code as soon as it's been
+     * parsed, rather than waiting for all of the glue code, see StepPublisher.
+     * Only the roots, keywords, excludes, threads and mapping are used, the
+     * glue code is always parsed from source, and nothing is written out
+     *
+     * @return StepPublisher - walks and parses the roots afresh for each subscriber
+     */
+    public StepPublisher publish() {
+        GlueCodeReader reader = new GlueCodeReader(keywords).setMapped(mapped);
+        return new StepPublisher(new JavaFileScanner(new ArrayList<>(roots), excludes), reader, threads);
+    }
+
+    private Result generate(ClasspathEnumerations enumerations) throws IOException {
+        RunStats stats = new RunStats();
+        GlueCodeReader reader = new GlueCodeReader(keywords).setMapped(mapped);
+        GlueCode glueCode = reader.newGlueCode();
+        if (classes) {
+            glueCode.getEnumInfo().setClasspath(enumerations);
+            CompiledGlueReader compiled = new CompiledGlueReader(reader.getKeywords());
+            compiled.setStats(stats);
+            compiled.read(roots, glueCode);
+            return write(glueCode, stats);
+        }
+
+        List<String> baseDirectories = getSourceRoots();
+        for (String sourceRoot : baseDirectories) {
+            glueCode.addBaseDirectory(sourceRoot);
+        }
+        // the enumerations already read are only any use for the same source roots
+        if (warm != null && warm.sources != null && warm.sourceRoots.equals(baseDirectories)) {
+            glueCode.getEnumInfo().reuseSources(warm.sources);
+        }
+        glueCode.getEnumInfo().setClasspath(enumerations);
+        ParseCache parseCache = null;
+        if (cache != null && warm != null) {
+            parseCache = warm.getParseCache(cache, cacheHash, reader.getKeywords());
+        } else if (cache != null) {
+            parseCache = new ParseCache(cache, cacheHash, reader.getKeywords());
+            parseCache.load();
+        }
+        stats.setValue(THREADS, threads);
+        JavaFileScanner scanner = new JavaFileScanner(roots, excludes);
+        scanner.setStats(stats);
+        Result result;
+        if (streaming) {
+            GenerateStepDefs.streamSteps(scanner, glueCode, output, threads, parseCache, stats, reader);
+            result = new Result(Collections.emptyList(), glueCode.getEnumInfo().getStepEnumerations(), stats);
+        } else {
+            GenerateStepDefs.parseFiles(scanner, glueCode, parseCache, reader, threads, stats);
+            result = write(glueCode, stats);
+        }
+        if (parseCache != null) {
+            // a warm cache is saved whenever its owner chooses
+            if (warm == null) {
+                parseCache.save();
+            }
+            stats.setValue("cacheHits", parseCache.getHits());
+            stats.setValue("cacheMisses", parseCache.getMisses());
+        }
+        if (warm != null) {
+            warm.sources = glueCode.getEnumInfo();
+            warm.sourceRoots = new ArrayList<>(baseDirectories);
+        }
+        return result;
+    }
+
+    /**
+     * The source roots provided, or those worked out from the glue code
+     * folders, if none were
+     */
+    private List<String> getSourceRoots() {
+        if (!sourceRoots.isEmpty()) {
+            return sourceRoots;
+        }
+        List<String> derived = new ArrayList<>();
+        for (File root : roots) {
+            derived.add(getSourceRoot(root));
+        }
+        return derived;
+    }
+
+    private Result write(GlueCode glueCode, RunStats stats) throws IOException {
+        if (output != null) {
+            GenerateStepDefs.writeSteps(glueCode, output, stats);
+        }
+        if (writer != null) {
+            GenerateStepDefs.writeSteps(glueCode, writer);
+            writer.flush();
+        }
+        return new Result(glueCode.getGlueCodeSteps(), glueCode.getEnumInfo().getStepEnumerations(), stats);
+    }
+}
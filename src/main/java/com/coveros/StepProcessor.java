@@ -0,0 +1,223 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the steps file while the glue code is compiled, rather than as a
+ * separate step afterwards. Step annotations, parameter types and
+ * enumeration constants are all taken from the compiler's model of the code,
+ * so no source is parsed, and enumerations can come from anywhere on the
+ * compile classpath. The processor is registered as a service, so is picked
+ * up by javac whenever this jar is on the classpath, but does nothing unless
+ * it's asked for, through gherkin.output. It never claims any annotations, so
+ * other processors still see them. Options:
+ * <ul>
+ * <li>gherkin.output - where to write the steps file, which turns the
+ * processor on</li>
+ * <li>gherkin.keywords - the step keywords to look for, separated by commas</li>
+ * </ul>
+ * The steps file is rewritten from only the glue code compiled in each run,
+ * so it needs a full build of the glue code. An incremental compile, which
+ * only recompiles the changed classes, leaves only their steps. The steps
+ * file is only written if some steps were found
+ */
+public class StepProcessor extends AbstractProcessor {
+
+    public static final String OUTPUT = "gherkin.output";
+    public static final String KEYWORDS = "gherkin.keywords";
+    private static final String VALUE = "value";
+
+    private String output;
+    private GlueCode glueCode;
+    private Set<String> keywords;
+    private Set<String> enumerations = new HashSet<>();
+    private boolean failed = false;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // the step annotations can come from any package
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return new HashSet<>(Arrays.asList(OUTPUT, KEYWORDS));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // only run when asked to, rather than on every compile with this jar on the classpath
+        output = processingEnv.getOptions().get(OUTPUT);
+        if (output == null) {
+            return false;
+        }
+        if (glueCode == null) {
+            List<String> keywordList = Outputs.getKeywords(processingEnv.getOptions().get(KEYWORDS));
+            keywords = new HashSet<>(keywordList);
+            glueCode = new GlueCode(new KeywordMatcher(keywordList));
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            processType(type);
+        }
+        if (roundEnv.processingOver() && !failed && !glueCode.getGlueCodeSteps().isEmpty()) {
+            writeSteps();
+        }
+        return false;
+    }
+
+    /**
+     * Processes each method of the type, and of any types nested within it
+     */
+    private void processType(TypeElement type) {
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+                processAnnotation(method, annotation);
+            }
+        }
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            processType(nested);
+        }
+    }
+
+    /**
+     * Processes a step annotation, along with any step annotations held
+     * within a repeatable annotation's container
+     */
+    private void processAnnotation(ExecutableElement method, AnnotationMirror annotation) {
+        String keyword = annotation.getAnnotationType().asElement().getSimpleName().toString();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> element :
+                annotation.getElementValues().entrySet()) {
+            if (!VALUE.equals(element.getKey().getSimpleName().toString())) {
+                continue;
+            }
+            Object value = element.getValue().getValue();
+            if (value instanceof String && keywords.contains(keyword)) {
+                processStep(method, keyword, (String) value);
+            } else if (value instanceof List) {
+                for (Object nested : (List<?>) value) {
+                    Object nestedValue = ((AnnotationValue) nested).getValue();
+                    if (nestedValue instanceof AnnotationMirror) {
+                        processAnnotation(method, (AnnotationMirror) nestedValue);
+                    }
+                }
+            }
+        }
+    }
+
+    private void processStep(ExecutableElement method, String keyword, String expression) {
+        List<String> parameters = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            TypeMirror type = parameter.asType();
+            addEnumerations(type);
+            parameters.add(type + " " + parameter.getSimpleName());
+        }
+        try {
+            glueCode.processStep(keyword, expression, parameters);
+        } catch (IOException e) {
+            error(e.getMessage(), method);
+        }
+    }
+
+    /**
+     * Records the constants of any enumerations the type refers to, including
+     * within generics, so that they never need to be found in the source
+     */
+    private void addEnumerations(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            addEnumerations(((ArrayType) type).getComponentType());
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            DeclaredType declared = (DeclaredType) type;
+            TypeElement element = (TypeElement) declared.asElement();
+            String name = element.getQualifiedName().toString();
+            glueCode.getEnumInfo().addClassInclude(name);
+            if (element.getKind() == ElementKind.ENUM && enumerations.add(name)) {
+                List<String> constants = new ArrayList<>();
+                for (Element constant : element.getEnclosedElements()) {
+                    if (constant.getKind() == ElementKind.ENUM_CONSTANT) {
+                        constants.add(constant.getSimpleName().toString());
+                    }
+                }
+                glueCode.getEnumInfo().addCompiledEnumeration(name, constants);
+            }
+            for (TypeMirror argument : declared.getTypeArguments()) {
+                addEnumerations(argument);
+            }
+        }
+    }
+
+    private void writeSteps() {
+        try {
+            File file = new File(output);
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            GenerateStepDefs.writeSteps(glueCode, file);
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Wrote " +
+                    glueCode.getGlueCodeSteps().size() + " steps to " + output);
+        } catch (IOException e) {
+            error("Unable to write the steps file: " + e.getMessage(), null);
+        }
+    }
+
+    private void error(String message, Element element) {
+        failed = true;
+        Messager messager = processingEnv.getMessager();
+        if (element == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, message);
+        } else {
+            messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes each step definition in the glue code as soon as the file it's
+ * in has been parsed, so that consumers, such as indexers or validators, can
+ * work through the steps while the rest of the glue code is still being
+ * parsed. Each subscriber gets its own run over the files, on its own
+ * thread, and definitions are only published as they are requested: while
+ * a subscriber has no outstanding demand, parsing pauses, once a bounded
+ * number of files have been parsed ahead. The definitions arrive in file
+ * order, and within each file, in the order they were written. Every thread
+ * a run uses is a daemon thread, so a subscriber which stops requesting
+ * without cancelling never keeps the jvm running, but its run stays paused,
+ * holding on to its threads, until it's cancelled.
+ * <p>
+ * These are the reactive streams interfaces, which on java 9 and above can
+ * be adapted to java.util.concurrent.Flow with FlowAdapters.toFlowPublisher
+ */
+public class StepPublisher implements Publisher<StepDefinition> {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    private final Iterable<Path> files;
+    private final GlueCodeReader reader;
+    private final int threads;
+
+    /**
+     * Builds a publisher of the steps in the provided files, parsed one at a
+     * time with the default step keywords
+     *
+     * @param files - the glue code files to parse
+     */
+    public StepPublisher(Iterable<Path> files) {
+        this(files, new GlueCodeReader(), 1);
+    }
+
+    /**
+     * Builds a publisher of the steps in the provided files. The files are
+     * iterated over again for each subscriber, so a JavaFileScanner walks its
+     * folders afresh each time
+     *
+     * @param files   - the glue code files to parse
+     * @param reader  - reads each glue code file, this reader isn't changed
+     * @param threads - the number of threads to parse the files with
+     */
+    public StepPublisher(Iterable<Path> files, GlueCodeReader reader, int threads) {
+        this.files = files;
+        this.reader = GlueCodeReader.copyOf(reader).setRecording(true);
+        this.threads = threads;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super StepDefinition> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("A subscriber must be provided");
+        }
+        StepSubscription subscription = new StepSubscription(subscriber);
+        Thread thread = new Thread(subscription::run, "GherkinBuilder-publisher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Thrown from within the parsing, to stop it once a subscription has been
+     * cancelled, or failed
+     */
+    private static class Cancelled extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A single subscriber's run over the files. Every signal is sent from the
+     * subscription's own thread, one after another, while the demand, and
+     * whether the subscription is still wanted, are shared with whichever
+     * threads the subscriber calls back from
+     */
+    private class StepSubscription implements Subscription {
+        private final Subscriber<? super StepDefinition> subscriber;
+        private long demand = 0;
+        private boolean cancelled = false;
+        private Throwable failure;
+
+        private StepSubscription(Subscriber<? super StepDefinition> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Only a positive number of steps can be requested, not " + n);
+                cancelled = true;
+            } else {
+                // demand beyond Long.MAX_VALUE is treated as unbounded
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        private synchronized void awaitDemand() {
+            while (demand == 0 && !cancelled) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted while publishing steps"));
+                }
+            }
+            if (cancelled) {
+                throw new Cancelled();
+            }
+            // unbounded demand is never used up
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+        }
+
+        private synchronized Throwable getFailure() {
+            return failure;
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void run() {
+            if (!signal(() -> subscriber.onSubscribe(this))) {
+                return;
+            }
+            try {
+                GenerateStepDefs.parseEach(files, null, reader, threads, new RunStats(), (file, parsed) -> {
+                    for (StepDefinition definition : parsed.getStepDefinitions()) {
+                        awaitDemand();
+                        if (!signal(() -> subscriber.onNext(definition.withFile(file)))) {
+                            throw new Cancelled();
+                        }
+                    }
+                });
+            } catch (Cancelled e) {
+                // nothing more is sent once cancelled, unless the subscriber asked for it incorrectly
+                if (getFailure() != null) {
+                    signal(() -> subscriber.onError(getFailure()));
+                }
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (!isCancelled()) {
+                    signal(() -> subscriber.onError(e));
+                }
+                return;
+            }
+            if (getFailure() != null) {
+                signal(() -> subscriber.onError(getFailure()));
+            } else if (!isCancelled()) {
+                signal(subscriber::onComplete);
+            }
+        }
+
+        /**
+         * Sends a single signal to the subscriber. A subscriber which throws
+         * is broken, so its subscription is cancelled, and nothing more is
+         * sent to it
+         *
+         * @return boolean - whether the signal was received
+         */
+        private boolean signal(Runnable signal) {
+            try {
+                signal.run();
+                return true;
+            } catch (RuntimeException e) {
+                cancel();
+                log.log(Level.WARNING, "Step subscriber failed, cancelling its subscription", e);
+                return false;
+            }
+        }
+    }
+}
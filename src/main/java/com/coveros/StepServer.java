@@ -0,0 +1,326 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the steps file over HTTP, straight from memory. The steps are held
+ * as an immutable snapshot, which is replaced in one go each time the glue
+ * code is re-parsed, so requests never wait on parsing, and never see a
+ * partially built set of steps. Each snapshot is compressed, and tagged with
+ * a hash of its contents, once, when it's built, so clients which already
+ * have the current steps are answered with a 304, and the rest get the steps
+ * gzipped, if they accept it
+ */
+public class StepServer implements Closeable {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    public static final String PATH = "/steps.js";
+    private static final String ROOT = "/";
+    private static final String GET = "GET";
+    private static final String HEAD = "HEAD";
+    private static final String GZIP = "gzip";
+    private static final String CONTENT_TYPE = "application/javascript; charset=UTF-8";
+
+    private final StepGenerator generator;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Builds a server of the steps generated by the provided generator. The
+     * generator shouldn't stream its steps, as the steps are needed in memory
+     *
+     * @param generator - generates the steps each time they're refreshed
+     */
+    public StepServer(StepGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * A complete, unchanging, set of steps, as served
+     */
+    public static final class Snapshot {
+        private final byte[] content;
+        private final byte[] gzipped;
+        private final String tag;
+        private final int steps;
+        private final int enumerations;
+
+        private Snapshot(byte[] content, int steps, int enumerations) throws IOException {
+            this.content = content;
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(content);
+            }
+            this.gzipped = compressed.toByteArray();
+            this.tag = Outputs.sha256Hex(content);
+            this.steps = steps;
+            this.enumerations = enumerations;
+        }
+
+        /**
+         * @return byte[] - a copy of the steps file, as UTF-8
+         */
+        public byte[] getContent() {
+            return content.clone();
+        }
+
+        /**
+         * @return String - the entity tag of the uncompressed steps file
+         */
+        public String getETag() {
+            return "\"" + tag + "\"";
+        }
+
+        /**
+         * @return String - the entity tag of the gzipped steps file
+         */
+        public String getGzipETag() {
+            return "\"" + tag + "-" + GZIP + "\"";
+        }
+
+        public int getSteps() {
+            return steps;
+        }
+
+        public int getEnumerations() {
+            return enumerations;
+        }
+    }
+
+    /**
+     * Re-parses the glue code, and swaps in the new steps once they're
+     * complete. Refreshes are run one at a time, while requests continue to be
+     * served from the previous snapshot
+     *
+     * @return Snapshot - the new snapshot
+     * @throws IOException
+     */
+    public synchronized Snapshot refresh() throws IOException {
+        StepGenerator.Result result = generator.generate();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(content, StandardCharsets.UTF_8)) {
+            result.writeSteps(writer);
+        }
+        Snapshot next = new Snapshot(content.toByteArray(), result.getSteps().size(),
+                result.getEnumerations().size());
+        Snapshot previous = snapshot.getAndSet(next);
+        if (previous == null || !previous.tag.equals(next.tag)) {
+            log.log(Level.INFO, "Serving " + next.steps + " steps and " + next.enumerations + " enumerations");
+        }
+        return next;
+    }
+
+    /**
+     * @return Snapshot - the steps currently being served, or null before the first refresh
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Generates the steps, then starts serving them, at both / and /steps.js
+     *
+     * @param address - the address to listen on, with a port of 0 picking any free port
+     * @param threads - the number of threads to serve requests with
+     * @throws IOException
+     */
+    public void start(InetSocketAddress address, int threads) throws IOException {
+        if (snapshot.get() == null) {
+            refresh();
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext(ROOT, this::handle);
+        handlers = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "GherkinBuilder-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.start();
+        log.log(Level.INFO, "Serving steps at http://" + address.getHostString() + ":" + getPort() + PATH);
+    }
+
+    /**
+     * Re-parses the glue code in the background, at a fixed interval. A
+     * refresh which fails is logged, and the previous steps are kept
+     *
+     * @param interval - the time between the end of one refresh and the start of the next
+     * @param unit     - the unit of the interval
+     */
+    public void refreshEvery(long interval, TimeUnit unit) {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GherkinBuilder-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (IOException | RuntimeException e) {
+                log.log(Level.WARNING, "Unable to refresh the steps, still serving the previous ones", e);
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * @return int - the port being listened on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Blocks until the server is closed
+     *
+     * @throws InterruptedException
+     */
+    public void await() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        if (handlers != null) {
+            handlers.shutdownNow();
+        }
+        stopped.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!PATH.equals(path) && !ROOT.equals(path)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            Headers headers = exchange.getResponseHeaders();
+            if (!GET.equals(method) && !HEAD.equals(method)) {
+                headers.set("Allow", GET + ", " + HEAD);
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            // take the snapshot once, so the tag and body always match
+            Snapshot current = snapshot.get();
+            boolean gzip = acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            String tag = gzip ? current.getGzipETag() : current.getETag();
+            headers.set("ETag", tag);
+            headers.set("Cache-Control", "no-cache");
+            headers.set("Vary", "Accept-Encoding");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), current)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = gzip ? current.gzipped : current.content;
+            headers.set("Content-Type", CONTENT_TYPE);
+            if (gzip) {
+                headers.set("Content-Encoding", GZIP);
+            }
+            if (HEAD.equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Determines whether the client accepts gzipped responses, honouring a
+     * quality of zero as a refusal
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.split(";");
+            if (!GZIP.equalsIgnoreCase(parts[0].trim())) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.matches("q\\s*=\\s*0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether any of the tags the client has match the current
+     * steps, in either encoding, as the contents are the same
+     */
+    private static boolean matches(String ifNoneMatch, Snapshot current) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if ("*".equals(trimmed) || current.getETag().equals(trimmed) || current.getGzipETag().equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the steps file up to date while the glue code is being worked on.
+ * The glue code folders are parsed once, and then watched for changes. Bursts
+ * of changes (such as an IDE saving several files, or a branch being checked
+ * out) are gathered together, and then only the java files which changed are
+ * re-parsed, before the steps file is rewritten. The results of every other
+ * file, the index of the source folders, and any enumerations whose sources
+ * haven't changed are all kept in memory between updates
+ */
+public class StepWatcher implements Closeable {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    private static final String JAVA = ".java";
+    // how long to wait for things to go quiet, before regenerating
+    private static final long QUIET_MILLIS = 100;
+    // how long to keep gathering changes for, if they just keep coming
+    private static final long MAX_DELAY_MILLIS = 500;
+
+    private List<File> folders = new ArrayList<>();
+    private Set<String> excludes;
+    private List<String> baseDirectories;
+    private File output;
+    private int threads;
+    private GlueCodeReader reader = new GlueCodeReader();
+    private ClasspathEnumerations classpath;
+    private WatchService watchService;
+    private Map<WatchKey, Path> watched = new HashMap<>();
+    private Map<Path, GlueCode> parsed = new LinkedHashMap<>();
+    private EnumInfo previous;
+
+    public StepWatcher(List<File> folders, Set<String> excludes, List<String> baseDirectories, File output,
+                       int threads) throws IOException {
+        for (File folder : folders) {
+            this.folders.add(folder.getAbsoluteFile());
+        }
+        this.excludes = excludes;
+        this.baseDirectories = baseDirectories;
+        this.output = output;
+        this.threads = threads;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Determines how glue code files are read when they're parsed: the step
+     * keywords recognised, and whether the files are memory mapped
+     *
+     * @param reader - reads each glue code file
+     */
+    public void setReader(GlueCodeReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Loads enumerations from the provided compiled classpath, rather than
+     * reading them from their source. Classes are only loaded once, so
+     * changes to them are only picked up on a restart
+     *
+     * @param classpath - the compiled classes to load enumerations from
+     */
+    public void setClasspath(ClasspathEnumerations classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Starts watching the glue code folders, and then parses all of the glue
+     * code within them, and writes out the steps file. Watching starts first,
+     * so that nothing changed while parsing is missed
+     *
+     * @throws IOException
+     */
+    public void start() throws IOException {
+        for (File folder : folders) {
+            register(folder.toPath());
+        }
+        parsed.clear();
+        GenerateStepDefs.parseEach(new JavaFileScanner(folders, excludes), null, reader, threads,
+                new RunStats(), parsed::put);
+        writeSteps();
+    }
+
+    /**
+     * Waits for changes to the glue code, and regenerates the steps file
+     * whenever there are any, until the watcher is closed, or the thread is
+     * interrupted. A problem parsing a file is logged, and the steps file is
+     * left as it was, until the file is changed again
+     *
+     * @throws IOException
+     */
+    public void watch() throws IOException {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                if (!gather(watchService.take(), changed)) {
+                    rescan(changed);
+                }
+                // wait for things to go quiet, but not forever
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                WatchKey key;
+                while (System.currentTimeMillis() < deadline &&
+                        (key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    if (!gather(key, changed)) {
+                        rescan(changed);
+                    }
+                }
+                try {
+                    update(changed);
+                } catch (IOException e) {
+                    log.log(Level.SEVERE, "Unable to regenerate the steps, waiting for further changes", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // we were closed, so we're done
+        }
+    }
+
+    /**
+     * Re-parses the provided files, dropping any which no longer exist, and
+     * rewrites the steps file. Folders are re-scanned for java files, and
+     * watched, or dropped if they no longer exist. If no glue code changed,
+     * the steps file is left alone
+     *
+     * @param changed - the files and folders which were created, modified or deleted
+     * @return int - the number of java files which were re-parsed
+     * @throws IOException
+     */
+    public int update(Set<Path> changed) throws IOException {
+        long start = System.nanoTime();
+        boolean removed = false;
+        List<Path> toParse = new ArrayList<>();
+        for (Path path : changed) {
+            Path file = path.toAbsolutePath();
+            if (Files.isDirectory(file)) {
+                if (!isExcluded(file)) {
+                    register(file);
+                    toParse.addAll(new JavaFileScanner(Collections.singletonList(file.toFile()), excludes).scan());
+                }
+            } else if (file.toString().endsWith(JAVA) && Files.isRegularFile(file) && !isExcluded(file)) {
+                toParse.add(file);
+            } else {
+                // deleted, so drop the file, or everything which was within the folder
+                for (Iterator<Path> it = parsed.keySet().iterator(); it.hasNext(); ) {
+                    Path known = it.next();
+                    if (known.startsWith(file)) {
+                        it.remove();
+                        sourceChanged(known);
+                        removed = true;
+                    }
+                }
+            }
+            sourceChanged(file);
+        }
+        if (toParse.isEmpty() && !removed) {
+            return 0;
+        }
+        Map<Path, GlueCode> results = new LinkedHashMap<>();
+        GenerateStepDefs.parseEach(toParse, null, reader, threads, new RunStats(), results::put);
+        for (Map.Entry<Path, GlueCode> result : results.entrySet()) {
+            sourceChanged(result.getKey());
+            parsed.put(result.getKey(), result.getValue());
+        }
+        writeSteps();
+        log.log(Level.INFO, "Regenerated '" + output + "' after re-parsing " + toParse.size() + " files, in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return toParse.size();
+    }
+
+    /**
+     * Returns the number of glue code files currently known about
+     *
+     * @return int - the number of parsed files
+     */
+    public int getFiles() {
+        return parsed.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void sourceChanged(Path file) {
+        if (previous != null) {
+            previous.sourceChanged(file);
+        }
+    }
+
+    /**
+     * Merges the results of every file, re-using what's known about the
+     * enumerations from last time, and replaces the steps file in one go, so
+     * it's never seen half written
+     */
+    private void writeSteps() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        for (String baseDirectory : baseDirectories) {
+            glueCode.addBaseDirectory(baseDirectory);
+        }
+        glueCode.getEnumInfo().setClasspath(classpath);
+        if (previous != null) {
+            glueCode.getEnumInfo().reuseSources(previous);
+        }
+        for (GlueCode fileGlueCode : parsed.values()) {
+            glueCode.addGlueCode(fileGlueCode);
+        }
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        File temp = new File(output.getPath() + ".tmp");
+        GenerateStepDefs.writeSteps(glueCode, temp);
+        Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        previous = glueCode.getEnumInfo();
+    }
+
+    /**
+     * Collects the paths changed from a watch key
+     *
+     * @return boolean - false if events were lost, and the folder needs to be re-scanned
+     */
+    private boolean gather(WatchKey key, Set<Path> changed) {
+        Path folder = watched.get(key);
+        boolean complete = true;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                complete = false;
+            } else if (folder != null) {
+                changed.add(folder.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            watched.remove(key);
+        }
+        return complete;
+    }
+
+    /**
+     * Too much changed at once for the events to keep up, so treat every
+     * folder as changed
+     */
+    private void rescan(Set<Path> changed) {
+        log.log(Level.WARNING, "Lost track of some changes, re-parsing all of the glue code");
+        parsed.clear();
+        previous = null;
+        for (File folder : folders) {
+            changed.add(folder.toPath());
+        }
+    }
+
+    private boolean isExcluded(Path path) {
+        for (File folder : folders) {
+            Path root = folder.toPath();
+            if (path.startsWith(root)) {
+                for (Path name : root.relativize(path)) {
+                    if (excludes.contains(name.toString())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Watches a folder, and every folder within it which isn't excluded
+     */
+    private void register(Path folder) throws IOException {
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(folder) && excludes.contains(String.valueOf(dir.getFileName()))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                // registering the same folder again just returns the same key
+                watched.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.log(Level.WARNING, "Unable to watch " + file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
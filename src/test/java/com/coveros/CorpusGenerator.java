@@ -0,0 +1,362 @@
+/*
+ * Copyright 2018 Coveros, Inc.
+ *
+ * This file is part of Gherkin Builder.
+ *
+ * Gherkin Builder is licensed under the Apache License, Version
+ * 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.coveros;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates a synthetic, but realistic, corpus of cucumber glue code, so that
+ * the whole pipeline can be exercised at scale. Each glue class contains a
+ * configurable number of given, when and then steps, taking a mix of text,
+ * number, date, list and enumeration parameters. The enumerations are split
+ * between plain ones in their own files, ones whose constants take
+ * constructor arguments, and ones nested within another class. The same seed
+ * always produces the same corpus
+ */
+public class CorpusGenerator {
+
+    private static Logger log = Logger.getLogger("GherkinBuilder");
+
+    public static final String PACKAGE = "generated.steps";
+    public static final String DATA_PACKAGE = PACKAGE + ".data";
+    private static final String CLASSES = "classes";
+    private static final String STEPS = "steps";
+    private static final String ENUMS = "enums";
+    private static final String CONSTANTS = "constants";
+    private static final String SUPPORT = "support";
+    private static final String SEED = "seed";
+    private static final String[] KEYWORDS = {"Given", "When", "Then"};
+    private static final String[] WORDS = {"user", "account", "order", "basket", "report", "search", "login",
+            "payment", "profile", "message", "item", "page", "address", "invoice", "review", "filter"};
+    private static final String[] IMPORTS = {"cucumber.api.java.en.Given", "cucumber.api.java.en.When",
+            "cucumber.api.java.en.Then", "cucumber.api.Transform", "cucumber.api.Delimiter", "java.util.Date",
+            "java.util.List"};
+
+    private int classes = 10;
+    private int stepsPerClass = 10;
+    private int enumerations = 6;
+    private int constantsPerEnum = 5;
+    private int supportClasses = 0;
+    private Random random;
+    private long seed;
+
+    public CorpusGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public CorpusGenerator setClasses(int classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    public CorpusGenerator setStepsPerClass(int stepsPerClass) {
+        this.stepsPerClass = stepsPerClass;
+        return this;
+    }
+
+    public CorpusGenerator setEnumerations(int enumerations) {
+        this.enumerations = enumerations;
+        return this;
+    }
+
+    public CorpusGenerator setConstantsPerEnum(int constantsPerEnum) {
+        this.constantsPerEnum = constantsPerEnum;
+        return this;
+    }
+
+    /**
+     * Sets the number of supporting classes (page objects and the like) to
+     * generate alongside the glue code. These contain no steps at all
+     *
+     * @param supportClasses - the number of classes without any steps
+     * @return CorpusGenerator - this generator
+     */
+    public CorpusGenerator setSupportClasses(int supportClasses) {
+        this.supportClasses = supportClasses;
+        return this;
+    }
+
+    /**
+     * Returns the total number of steps the corpus will contain
+     *
+     * @return int - the number of glue classes, times the steps in each
+     */
+    public int getSteps() {
+        return classes * stepsPerClass;
+    }
+
+    /**
+     * Returns the simple names of the enumerations the corpus will contain.
+     * Every enumeration is used by at least one step, as long as there are
+     * at least as many steps as enumerations
+     *
+     * @return List - the enumeration names, in the order they are defined
+     */
+    public List<String> getEnumerationNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < enumerations; i++) {
+            names.add(getEnumName(i));
+        }
+        return names;
+    }
+
+    /**
+     * Writes the corpus out, laid out by package, under the provided source
+     * folder. Any existing files with the same names are overwritten
+     *
+     * @param sourceFolder - the java source folder, typically ending in src/main/java
+     * @return List - the glue code files written, without the enumeration or supporting files
+     * @throws IOException
+     */
+    public List<Path> generate(File sourceFolder) throws IOException {
+        random = new Random(seed);
+        Path steps = sourceFolder.toPath().resolve(PACKAGE.replace('.', File.separatorChar));
+        Path data = sourceFolder.toPath().resolve(DATA_PACKAGE.replace('.', File.separatorChar));
+        Files.createDirectories(data);
+        for (int i = 0; i < enumerations; i++) {
+            write(data.resolve(getEnumFileName(i) + ".java"), getEnumSource(i));
+        }
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < classes; i++) {
+            Path file = steps.resolve("Steps" + i + ".java");
+            write(file, getGlueSource(i));
+            files.add(file);
+        }
+        Path pages = steps.resolve("pages");
+        Files.createDirectories(pages);
+        for (int i = 0; i < supportClasses; i++) {
+            write(pages.resolve("Page" + i + ".java"), getSupportSource(i));
+        }
+        return files;
+    }
+
+    private StringBuilder getSupportSource(int i) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE).append(".pages;\n\n");
+        source.append("import java.util.List;\nimport org.openqa.selenium.WebElement;\n");
+        source.append("import org.openqa.selenium.support.FindBy;\n\n");
+        source.append("/**\n * Generated page object, for use by the glue code\n */\n");
+        source.append("public class Page").append(i).append(" {\n");
+        for (int j = 0; j < 10; j++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            source.append("\n    @FindBy(id = \"").append(word).append(j).append("\")\n");
+            source.append("    private WebElement ").append(word).append(j).append(";\n\n");
+            source.append("    public void click").append(j).append("(String text) {\n");
+            source.append("        if (").append(word).append(j).append(".getText().contains(text)) {\n");
+            source.append("            ").append(word).append(j).append(".click();\n        }\n    }\n");
+        }
+        return source.append("}\n");
+    }
+
+    private static void write(Path file, CharSequence source) throws IOException {
+        Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String getEnumName(int i) {
+        switch (i % 3) {
+            case 0:
+                return "Color" + i;
+            case 1:
+                return "Size" + i;
+            default:
+                return "Mode" + i;
+        }
+    }
+
+    /**
+     * Nested enumerations live in a settings class, all others in their own file
+     */
+    private String getEnumFileName(int i) {
+        return i % 3 == 2 ? "Settings" + i : getEnumName(i);
+    }
+
+    private String getEnumInclude(int i) {
+        String include = DATA_PACKAGE + "." + getEnumFileName(i);
+        return i % 3 == 2 ? include + "." + getEnumName(i) : include;
+    }
+
+    private StringBuilder getEnumSource(int i) {
+        String name = getEnumName(i);
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(DATA_PACKAGE).append(";\n\n");
+        switch (i % 3) {
+            case 0:
+                source.append("public enum ").append(name).append(" {\n    ");
+                for (int j = 0; j < constantsPerEnum; j++) {
+                    source.append(j == 0 ? "" : ", ").append("VALUE_").append(j);
+                }
+                source.append("\n}\n");
+                break;
+            case 1:
+                source.append("import java.util.Arrays;\nimport java.util.List;\n\n");
+                source.append("public enum ").append(name).append(" {\n");
+                for (int j = 0; j < constantsPerEnum; j++) {
+                    source.append("    // the ").append(WORDS[j % WORDS.length]).append(" size, (in units)\n");
+                    source.append("    SIZE_").append(j).append("(\"size ").append(j).append(", (").append(j)
+                            .append(")\", ").append(j * 10).append(", Arrays.asList(\"a\", \"b\"))")
+                            .append(j + 1 < constantsPerEnum ? ",\n" : ";\n");
+                }
+                source.append("\n    private final String label;\n    private final int units;\n");
+                source.append("    private final List<String> tags;\n\n");
+                source.append("    ").append(name).append("(String label, int units, List<String> tags) {\n");
+                source.append("        this.label = label;\n        this.units = units;\n");
+                source.append("        this.tags = tags;\n    }\n\n");
+                source.append("    public String getLabel() {\n        return label;\n    }\n}\n");
+                break;
+            default:
+                source.append("public class ").append(getEnumFileName(i)).append(" {\n\n");
+                source.append("    private String value = \"enum ").append(name).append(" { NOT_A_CONSTANT }\";\n\n");
+                source.append("    public enum ").append(name).append(" {\n        ");
+                for (int j = 0; j < constantsPerEnum; j++) {
+                    source.append(j == 0 ? "" : ", ").append("MODE_").append(j);
+                }
+                source.append("\n    }\n\n    public String getValue() {\n        return value;\n    }\n}\n");
+                break;
+        }
+        return source;
+    }
+
+    private StringBuilder getGlueSource(int c) {
+        StringBuilder methods = new StringBuilder();
+        List<Integer> used = new ArrayList<>();
+        for (int s = 0; s < stepsPerClass; s++) {
+            int step = c * stepsPerClass + s;
+            String keyword = KEYWORDS[step % KEYWORDS.length];
+            StringBuilder regex = new StringBuilder("^I ").append(keyword.toLowerCase()).append(' ')
+                    .append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(step);
+            StringBuilder parameters = new StringBuilder();
+            int count = random.nextInt(4);
+            for (int p = 0; p < count; p++) {
+                parameters.append(p == 0 ? "" : ", ");
+                appendParameter(step, p, regex, parameters, used);
+            }
+            // use every enumeration at least once, as long as there are enough steps
+            if (enumerations > 0 && step < enumerations) {
+                int e = step;
+                regex.append(" as (.*)");
+                parameters.append(count == 0 ? "" : ", ").append(getEnumName(e)).append(" option");
+                used.add(e);
+            }
+            if (random.nextInt(4) == 0) {
+                regex.append(random.nextBoolean() ? "(?: again| quickly)?" : "[ twice]?");
+            }
+            regex.append('$');
+            methods.append("\n    @").append(keyword).append("(\"").append(regex).append("\")\n");
+            methods.append("    public void step").append(step).append('(').append(parameters)
+                    .append(") throws Throwable {\n");
+            methods.append("        driver.perform(\"").append(keyword).append(' ').append(step).append("\");\n");
+            methods.append("    }\n");
+        }
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE).append(";\n\n");
+        for (String include : IMPORTS) {
+            source.append("import ").append(include).append(";\n");
+        }
+        for (int e = 0; e < enumerations; e++) {
+            if (used.contains(e)) {
+                source.append("import ").append(getEnumInclude(e)).append(";\n");
+            }
+        }
+        source.append("\n/**\n * Generated glue code, \"@Given\" steps are below\n */\n");
+        source.append("public class Steps").append(c).append(" {\n\n");
+        source.append("    private final Driver driver = new Driver();\n");
+        source.append(methods);
+        source.append("}\n");
+        return source;
+    }
+
+    private void appendParameter(int step, int p, StringBuilder regex, StringBuilder parameters, List<Integer> used) {
+        switch (random.nextInt(enumerations > 0 ? 7 : 6)) {
+            case 0:
+                regex.append(" named \\\"([^\\\"]*)\\\"");
+                parameters.append("String name").append(p);
+                break;
+            case 1:
+                regex.append(" (\\\\d+) times");
+                parameters.append("int count").append(p);
+                break;
+            case 2:
+                regex.append(" costing (\\\\d+\\\\.\\\\d{2})");
+                parameters.append("final double cost").append(p);
+                break;
+            case 3:
+                regex.append(" on (\\\\d{4}-\\\\d{2}-\\\\d{2})");
+                parameters.append("@Transform(DateConverter.class) Date date").append(p);
+                break;
+            case 4:
+                regex.append(" with (.*)");
+                parameters.append("@Delimiter(\", \") List<String> values").append(p);
+                break;
+            case 5:
+                regex.append(" (true|false)");
+                parameters.append("boolean flag").append(p);
+                break;
+            default:
+                int e = random.nextInt(enumerations);
+                regex.append(" using (.*)");
+                parameters.append(getEnumName(e)).append(" choice").append(p);
+                used.add(e);
+                break;
+        }
+    }
+
+    /**
+     * Generates a corpus from the command line, into the provided source
+     * folder. The size of the corpus is controlled with the options
+     * '--classes', '--steps' (per class), '--enums', '--constants' (per
+     * enumeration), '--support' (classes without steps) and '--seed'
+     *
+     * @param args - the options, and the source folder to write to
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = Outputs.checkOptions(args);
+        List<File> folders = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                folders.add(new File(arg));
+            }
+        }
+        if (folders.size() != 1) {
+            String error = "Please provide the source folder to generate the glue code in";
+            log.log(Level.SEVERE, error);
+            throw new IOException(error);
+        }
+        CorpusGenerator generator = new CorpusGenerator(Outputs.getIntOption(options, SEED, 0))
+                .setClasses(Outputs.getIntOption(options, CLASSES, 100))
+                .setStepsPerClass(Outputs.getIntOption(options, STEPS, 10))
+                .setEnumerations(Outputs.getIntOption(options, ENUMS, 6))
+                .setConstantsPerEnum(Outputs.getIntOption(options, CONSTANTS, 5))
+                .setSupportClasses(Outputs.getIntOption(options, SUPPORT, 0));
+        List<Path> files = generator.generate(folders.get(0));
+        log.log(Level.INFO, "Generated " + generator.getSteps() + " steps in " + files.size() + " files");
+    }
+}
@@ -0,0 +1,70 @@
+package integration;
+
+import com.coveros.CorpusGenerator;
+import com.coveros.GenerateStepDefs;
+import com.coveros.GlueCode;
+import com.coveros.JavaFileScanner;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ITGenerateStepDefs {
+
+    private Path root;
+    private File sourceFolder;
+
+    @BeforeMethod
+    public void createFolder() throws IOException {
+        root = Files.createTempDirectory("corpus");
+        sourceFolder = root.resolve("src/main/java").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFolder() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @DataProvider
+    public Object[][] corpusSizes() {
+        return new Object[][]{{100, 10, 10}, {1000, 10, 30}, {1000, 100, 60}};
+    }
+
+    private List<String> generate(int threads, File output) throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(sourceFolder.getPath() + File.separator);
+        GenerateStepDefs.parseFiles(new JavaFileScanner(Collections.singletonList(sourceFolder)), glueCode, threads);
+        GenerateStepDefs.writeSteps(glueCode, output);
+        return Files.readAllLines(output.toPath());
+    }
+
+    @Test(dataProvider = "corpusSizes")
+    public void generateStepsTest(int classes, int steps, int enumerations) throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(classes).setClasses(classes).setStepsPerClass(steps)
+                .setEnumerations(enumerations);
+        generator.generate(sourceFolder);
+        List<String> sequential = generate(1, root.resolve("sequential.js").toFile());
+        List<String> parallel = generate(4, root.resolve("parallel.js").toFile());
+        Assert.assertEquals(parallel, sequential);
+        // every step and enumeration, plus the two headers and the blank line between them
+        Assert.assertEquals(sequential.size(), generator.getSteps() + enumerations + 3);
+        Assert.assertEquals(sequential.stream().filter(line -> line.startsWith("testSteps.push(")).count(),
+                generator.getSteps());
+        for (String enumeration : generator.getEnumerationNames()) {
+            Assert.assertTrue(sequential.stream().anyMatch(line -> line.startsWith("var " + enumeration + " = ")),
+                    "Missing enumeration " + enumeration);
+        }
+    }
+}
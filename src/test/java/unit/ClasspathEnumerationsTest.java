@@ -0,0 +1,154 @@
+package unit;
+
+import com.coveros.ClasspathEnumerations;
+import com.coveros.EnumInfo;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ClasspathEnumerationsTest {
+
+    private Path dir;
+    private Path classes;
+    private ClasspathEnumerations classpath;
+
+    @BeforeClass
+    public void compileEnumerations() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new SkipException("A java compiler is needed to build the enumerations");
+        }
+        dir = Files.createTempDirectory("classpath");
+        classes = dir.resolve("classes");
+        Files.createDirectories(classes);
+        List<String> arguments = new ArrayList<>(Arrays.asList("-proc:none", "-d", classes.toString()));
+        arguments.add(write("Color.java", "package steps;",
+                "public enum Color {",
+                "    RED(\"#f00\") {",
+                "        public String toString() { return \"red\"; }",
+                "    },",
+                "    /* not a constant */ GREEN(\"#0f0\"), @Deprecated BLUE(\"#00f\");",
+                "    private final String hex;",
+                "    Color(String hex) { this.hex = hex; }",
+                "}"));
+        arguments.add(write("Sizes.java", "package steps;",
+                "public class Sizes {",
+                "    public enum Size { SMALL, LARGE }",
+                "}"));
+        arguments.add(write("Empty.java", "package steps;",
+                "public enum Empty { }"));
+        arguments.add(write("Dated.java", "package steps;",
+                "public enum Dated {",
+                "    TODAY, TOMORROW;",
+                "    static final java.sql.Date EPOCH = new java.sql.Date(0);",
+                "}"));
+        arguments.add(write("Broken.java", "package steps;",
+                "public enum Broken {",
+                "    ONE;",
+                "    static { fail(); }",
+                "    static void fail() { throw new IllegalStateException(); }",
+                "}"));
+        Assert.assertEquals(compiler.run(null, null, null, arguments.toArray(new String[0])), 0);
+        classpath = new ClasspathEnumerations(Collections.singletonList(classes.toFile()));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteEnumerations() throws IOException {
+        if (classpath != null) {
+            classpath.close();
+        }
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private String write(String name, String... lines) throws IOException {
+        Path file = dir.resolve("src").resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines));
+        return file.toString();
+    }
+
+    @Test
+    public void getConstantsTest() {
+        Assert.assertEquals(classpath.getConstants("steps.Color"), Arrays.asList("RED", "GREEN", "BLUE"));
+    }
+
+    @Test
+    public void getConstantsCachedTest() {
+        Assert.assertSame(classpath.getConstants("steps.Color"), classpath.getConstants("steps.Color"));
+    }
+
+    @Test
+    public void getConstantsNestedTest() {
+        Assert.assertEquals(classpath.getConstants("steps.Sizes.Size"), Arrays.asList("SMALL", "LARGE"));
+        Assert.assertEquals(classpath.getConstants("steps.Sizes$Size"), Arrays.asList("SMALL", "LARGE"));
+    }
+
+    @Test
+    public void getConstantsEmptyTest() {
+        Assert.assertEquals(classpath.getConstants("steps.Empty"), Collections.emptyList());
+    }
+
+    @Test
+    public void getConstantsNotEnumTest() {
+        Assert.assertNull(classpath.getConstants("steps.Sizes"));
+        Assert.assertNull(classpath.getConstants("steps.Missing"));
+        Assert.assertNull(classpath.getConstants("Missing"));
+    }
+
+    @Test
+    public void getConstantsIsolatedTest() {
+        // our own classes aren't visible to the classpath being loaded
+        Assert.assertNull(classpath.getConstants("com.coveros.KeywordMatcher"));
+        Assert.assertEquals(classpath.getConstants("java.util.concurrent.TimeUnit").get(0), "NANOSECONDS");
+    }
+
+    @Test
+    public void getConstantsPlatformTest() {
+        // java.sql is outside the bootstrap class loader on java 9 and above
+        Assert.assertEquals(classpath.getConstants("steps.Dated"), Arrays.asList("TODAY", "TOMORROW"));
+    }
+
+    @Test
+    public void getConstantsBrokenTest() {
+        Assert.assertNull(classpath.getConstants("steps.Broken"));
+    }
+
+    @Test
+    public void splitTest() {
+        Assert.assertEquals(ClasspathEnumerations.split("classes" + File.pathSeparator + " lib/steps.jar" +
+                File.pathSeparator), Arrays.asList(new File("classes"), new File("lib/steps.jar")));
+    }
+
+    @Test
+    public void enumInfoTest() throws IOException {
+        EnumInfo enumInfo = new EnumInfo(Collections.singletonList(dir.resolve("src").toString()));
+        enumInfo.setClasspath(classpath);
+        enumInfo.addClassInclude("steps.Color");
+        enumInfo.addClassInclude("steps.Sizes.Size");
+        enumInfo.addGlueCodeEnumeration("Color");
+        enumInfo.addGlueCodeEnumeration("Size");
+        Assert.assertEquals(enumInfo.getStepEnumerations(), Arrays.asList(
+                "var Color = new Array(\"RED\",\"GREEN\",\"BLUE\");", "var Size = new Array(\"SMALL\",\"LARGE\");"));
+        Assert.assertEquals(enumInfo.getFilesRead(), 0);
+    }
+}
@@ -0,0 +1,211 @@
+package unit;
+
+import com.coveros.ClassFile;
+import com.coveros.CompiledGlueReader;
+import com.coveros.GenerateStepDefs;
+import com.coveros.GlueCode;
+import com.coveros.RunStats;
+import com.coveros.exception.MalformedClass;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CompiledGlueReaderTest {
+
+    private Path dir;
+    private Path sources;
+    private Path classes;
+    private Path steps;
+
+    @BeforeClass
+    public void compileGlueCode() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new SkipException("A java compiler is needed to build the glue code");
+        }
+        dir = Files.createTempDirectory("compiled");
+        sources = dir.resolve("src/main/java");
+        classes = dir.resolve("classes");
+        Files.createDirectories(classes);
+        for (String keyword : Arrays.asList("Given", "When", "Then", "And")) {
+            write("cucumber/api/java/en/" + keyword + ".java", "package cucumber.api.java.en;",
+                    "import java.lang.annotation.*;",
+                    "@Retention(RetentionPolicy.RUNTIME)",
+                    "public @interface " + keyword + " {",
+                    "    String value();",
+                    "}");
+        }
+        write("steps/Color.java", "package steps;",
+                "public enum Color {",
+                "    RED(\"#f00\") {",
+                "        public String toString() { return \"red\"; }",
+                "    },",
+                "    GREEN(\"#0f0\"), BLUE(\"#00f\");",
+                "    private final String hex;",
+                "    public static final Color DEFAULT = RED;",
+                "    Color(String hex) { this.hex = hex; }",
+                "}");
+        write("steps/Sizes.java", "package steps;",
+                "public class Sizes {",
+                "    public enum Size { SMALL, LARGE }",
+                "}");
+        steps = write("steps/Steps.java", "package steps;",
+                "import cucumber.api.java.en.*;",
+                "import java.util.List;",
+                "import java.util.Map;",
+                "import steps.Color;",
+                "import steps.Sizes.Size;",
+                "public class Steps {",
+                "    @Given(\"^I have a user$\")",
+                "    public void haveUser() { }",
+                "    @When(\"^I add (\\\\d+) \\\"([^\\\"]*)\\\" users?$\")",
+                "    public void addUsers(int count, final String name) { }",
+                "    @Then(\"^I see (.*) and (.*)$\")",
+                "    public void see(Color color, List<Size> sizes) { }",
+                "    @And(\"^I have (?:some|many) (\\\\d+) items$\")",
+                "    public void items(long count, Map<String, Integer> table, double... amounts) { }",
+                "    public void notAStep(Color color) { }",
+                "}");
+        List<String> files;
+        try (Stream<Path> paths = Files.walk(sources)) {
+            files = paths.filter(path -> path.toString().endsWith(".java")).map(Path::toString)
+                    .collect(Collectors.toList());
+        }
+        List<String> arguments = new ArrayList<>(Arrays.asList("-g", "-proc:none", "-d", classes.toString()));
+        arguments.addAll(files);
+        Assert.assertEquals(compiler.run(null, null, null, arguments.toArray(new String[0])), 0);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteGlueCode() throws IOException {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        Path file = sources.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines));
+        return file;
+    }
+
+    private ClassFile readClass(String name) throws IOException {
+        try (InputStream in = Files.newInputStream(classes.resolve(name))) {
+            return ClassFile.read(in);
+        }
+    }
+
+    private GlueCode parseSource() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(sources.toString() + File.separator);
+        GenerateStepDefs.parseFiles(Collections.singletonList(steps), glueCode, 1);
+        return glueCode;
+    }
+
+    @Test
+    public void classFileTest() throws IOException {
+        ClassFile classFile = readClass("steps/Steps.class");
+        Assert.assertEquals(classFile.getName(), "steps.Steps");
+        Assert.assertFalse(classFile.isEnum());
+        ClassFile.Method see = classFile.getMethods().stream().filter(m -> "see".equals(m.getName())).findFirst()
+                .orElseThrow(AssertionError::new);
+        Assert.assertEquals(see.getParameterTypes(), Arrays.asList("steps.Color", "java.util.List<steps.Sizes.Size>"));
+        Assert.assertEquals(see.getParameterNames(), Arrays.asList("color", "sizes"));
+        Assert.assertEquals(see.getAnnotations().get(0).getType(), "cucumber.api.java.en.Then");
+        Assert.assertEquals(see.getAnnotations().get(0).getValue(), "^I see (.*) and (.*)$");
+    }
+
+    @Test
+    public void classFileEnumTest() throws IOException {
+        ClassFile color = readClass("steps/Color.class");
+        Assert.assertTrue(color.isEnum());
+        Assert.assertEquals(color.getEnumConstants(), Arrays.asList("RED", "GREEN", "BLUE"));
+        ClassFile size = readClass("steps/Sizes$Size.class");
+        Assert.assertEquals(size.getName(), "steps.Sizes.Size");
+        Assert.assertEquals(size.getEnumConstants(), Arrays.asList("SMALL", "LARGE"));
+    }
+
+    @Test(expectedExceptions = MalformedClass.class)
+    public void classFileNotAClassTest() throws IOException {
+        ClassFile.read(new ByteArrayInputStream("public class Steps {}".getBytes()));
+    }
+
+    @Test(expectedExceptions = MalformedClass.class)
+    public void classFileTruncatedTest() throws IOException {
+        byte[] bytes = Files.readAllBytes(classes.resolve("steps/Steps.class"));
+        new ClassFile(Arrays.copyOf(bytes, bytes.length / 2));
+    }
+
+    @Test
+    public void readFolderTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        RunStats stats = new RunStats();
+        CompiledGlueReader reader = new CompiledGlueReader();
+        reader.setStats(stats);
+        reader.read(Collections.singletonList(classes.toFile()), glueCode);
+        GlueCode source = parseSource();
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), source.getGlueCodeSteps());
+        Assert.assertEquals(glueCode.getEnumInfo().getGlueCodeEnumerations(), Arrays.asList("Color", "Size"));
+        Assert.assertEquals(glueCode.getEnumInfo().getStepEnumerations(),
+                source.getEnumInfo().getStepEnumerations());
+        Assert.assertEquals(glueCode.getEnumInfo().getFilesRead(), 0);
+        Assert.assertTrue(stats.getPhase(RunStats.PARSE).getFiles() >= 8);
+        Assert.assertTrue(stats.getPhase(RunStats.PARSE).getBytes() > 0);
+    }
+
+    @Test
+    public void readJarTest() throws IOException {
+        File jar = dir.resolve("steps.jar").toFile();
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(classes)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("META-INF/versions/9/steps/Steps.class"));
+            out.write(Files.readAllBytes(classes.resolve("steps/Steps.class")));
+            for (Path file : files) {
+                out.putNextEntry(new JarEntry(classes.relativize(file).toString().replace(File.separatorChar, '/')));
+                out.write(Files.readAllBytes(file));
+            }
+        }
+        GlueCode glueCode = new GlueCode();
+        new CompiledGlueReader().read(Collections.singletonList(jar), glueCode);
+        GlueCode source = parseSource();
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), source.getGlueCodeSteps());
+        Assert.assertEquals(glueCode.getEnumInfo().getStepEnumerations(),
+                source.getEnumInfo().getStepEnumerations());
+    }
+
+    @Test
+    public void readKeywordsTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        new CompiledGlueReader(Arrays.asList("Given", "Then")).read(
+                Collections.singletonList(classes.resolve("steps/Steps.class").toFile()), glueCode);
+        Assert.assertEquals(glueCode.getGlueCodeSteps().size(), 2);
+    }
+}
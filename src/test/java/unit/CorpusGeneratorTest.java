@@ -0,0 +1,100 @@
+package unit;
+
+import com.coveros.CorpusGenerator;
+import com.coveros.GenerateStepDefs;
+import com.coveros.GlueCode;
+import com.coveros.GlueCodeReader;
+import com.coveros.JavaFileScanner;
+import com.coveros.RunStats;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class CorpusGeneratorTest {
+
+    private Path root;
+    private File sourceFolder;
+
+    @BeforeMethod
+    public void createFolder() throws IOException {
+        root = Files.createTempDirectory("corpus");
+        sourceFolder = root.resolve("src/main/java").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFolder() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private GlueCode parse(List<Path> files) throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(sourceFolder.getPath() + File.separator);
+        GenerateStepDefs.parseFiles(files, glueCode, 1);
+        return glueCode;
+    }
+
+    @Test
+    public void generateTest() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(1).setClasses(4).setStepsPerClass(5).setEnumerations(3);
+        List<Path> files = generator.generate(sourceFolder);
+        Assert.assertEquals(files.size(), 4);
+        Assert.assertEquals(generator.getSteps(), 20);
+        Assert.assertEquals(generator.getEnumerationNames(), Arrays.asList("Color0", "Size1", "Mode2"));
+        Assert.assertEquals(parse(files).getGlueCodeSteps().size(), 20);
+    }
+
+    @Test
+    public void generateEnumerationsTest() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(1).setClasses(2).setStepsPerClass(3).setEnumerations(3)
+                .setConstantsPerEnum(2);
+        GlueCode glueCode = parse(generator.generate(sourceFolder));
+        Assert.assertEquals(glueCode.getEnumInfo().getStepEnumerations(), Arrays.asList(
+                "var Color0 = new Array(\"VALUE_0\",\"VALUE_1\");",
+                "var Size1 = new Array(\"SIZE_0\",\"SIZE_1\");",
+                "var Mode2 = new Array(\"MODE_0\",\"MODE_1\");"));
+    }
+
+    @Test
+    public void generateRepeatableTest() throws IOException {
+        List<Path> first = new CorpusGenerator(7).generate(sourceFolder);
+        List<String> steps = parse(first).getGlueCodeSteps();
+        List<Path> second = new CorpusGenerator(7).generate(sourceFolder);
+        Assert.assertEquals(second, first);
+        Assert.assertEquals(parse(second).getGlueCodeSteps(), steps);
+    }
+
+    @Test
+    public void generateNoEnumerationsTest() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(1).setClasses(3).setEnumerations(0);
+        GlueCode glueCode = parse(generator.generate(sourceFolder));
+        Assert.assertEquals(glueCode.getGlueCodeSteps().size(), 30);
+        Assert.assertTrue(glueCode.getEnumInfo().getGlueCodeEnumerations().isEmpty());
+    }
+
+    @Test
+    public void generateSupportClassesTest() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(1).setClasses(2).setSupportClasses(3);
+        generator.generate(sourceFolder);
+        RunStats stats = new RunStats();
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(sourceFolder.getPath() + File.separator);
+        GenerateStepDefs.parseFiles(new JavaFileScanner(Collections.singletonList(sourceFolder)), glueCode, null,
+                new GlueCodeReader(), 1, stats);
+        Assert.assertEquals(glueCode.getGlueCodeSteps().size(), 20);
+        // the supporting classes, and the enumerations, have no steps
+        Assert.assertEquals(stats.getPhase(RunStats.PARSE).getSkipped(), 9);
+    }
+}
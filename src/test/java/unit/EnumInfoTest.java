@@ -7,11 +7,19 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 public class EnumInfoTest {
 
@@ -19,6 +27,8 @@ public class EnumInfoTest {
 
     enum openSample {HELLO, WORLD}
 
+    public static enum StaticSample {ON, OFF}
+
     enum interfaceSample implements Enumeration {
         HELLO, WORLD;
 
@@ -54,6 +64,57 @@ public class EnumInfoTest {
         glueCode.getEnumInfo().getEnumFile("IOException");
     }
 
+    @Test
+    public void getEnumFileNestedTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory("./src/test/java/");
+        glueCode.processLine("import unit.EnumInfoTest.Sample;");
+        Assert.assertEquals(glueCode.getEnumInfo().getEnumFile("Sample"),
+                new File("./src/test/java/unit/EnumInfoTest.java"));
+    }
+
+    @Test
+    public void getEnumFileIndexedTest() throws IOException {
+        Path base = Files.createTempDirectory("enums");
+        Path enumFile = base.resolve("steps/Color.java");
+        Files.createDirectories(enumFile.getParent());
+        Files.write(enumFile, Collections.singletonList("public enum Color { RED, BLUE }"));
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory("./src/test/java/");
+        glueCode.addBaseDirectory(base.toString());
+        glueCode.processLine("import steps.Color;");
+        glueCode.getEnumInfo().indexSources();
+        // once indexed, the enumeration file is found without going back to the file system
+        Files.delete(enumFile);
+        Files.delete(enumFile.getParent());
+        Files.delete(base);
+        Assert.assertEquals(glueCode.getEnumInfo().getEnumFile("Color"), enumFile.toFile());
+    }
+
+    @Test
+    public void getEnumFileExcludedNameTest() throws IOException {
+        Path base = Files.createTempDirectory("enums");
+        Path enumFile = base.resolve("com/acme/build/Status.java");
+        Files.createDirectories(enumFile.getParent());
+        Files.write(enumFile, Collections.singletonList("public enum Status { PASSED, FAILED }"));
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(base.toString());
+        glueCode.processLine("import com.acme.build.Status;");
+        try {
+            Assert.assertEquals(glueCode.getEnumInfo().getEnumFile("Status"), enumFile.toFile());
+        } finally {
+            Files.delete(enumFile);
+        }
+    }
+
+    @Test(expectedExceptions = MalformedMethod.class)
+    public void getEnumFileNotImportedTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory("./src/test/java/");
+        glueCode.processLine("import unit.EnumInfoTest.Sample;");
+        glueCode.getEnumInfo().getEnumFile("ComplexSample");
+    }
+
     @Test
     public void buildEnumTest() throws IOException {
         String enumValue;
@@ -90,6 +151,83 @@ public class EnumInfoTest {
         Assert.assertNull(enumValue);
     }
 
+    @Test
+    public void buildEnumsTest() throws IOException {
+        Map<String, String> enumValues;
+        try (BufferedReader br = new BufferedReader(new FileReader("./src/test/java/unit/EnumInfoTest.java"));) {
+            enumValues = new EnumInfo(null).buildEnums(br, Arrays.asList("ComplexSample", "Sample", "Sample1"));
+        }
+        Assert.assertEquals(enumValues.size(), 2);
+        Assert.assertEquals(enumValues.get("Sample"), "var Sample = new Array(\"HELLO\",\"WORLD\");");
+        Assert.assertEquals(enumValues.get("ComplexSample"), "var ComplexSample = new Array(\"HELLO\",\"WORLD\");");
+    }
+
+    @Test
+    public void buildEnumsModifiersTest() throws IOException {
+        Map<String, String> enumValues;
+        try (BufferedReader br = new BufferedReader(new StringReader("public static enum A { ON }\n" +
+                "private enum B { ON }\nprotected  static\tenum C { ON }\nstatic enum D { ON }\n" +
+                "public class E { }\nprivate final enum F { ON }\nenumeration G { ON }"))) {
+            enumValues = new EnumInfo(null).buildEnums(br, Arrays.asList("A", "B", "C", "D", "E", "F", "G"));
+        }
+        Assert.assertEquals(enumValues.keySet(), new HashSet<>(Arrays.asList("A", "B", "C", "D")));
+        Assert.assertEquals(enumValues.get("C"), "var C = new Array(\"ON\");");
+    }
+
+    @Test
+    public void getStepEnumerationsStaticNestedTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory("./src/test/java/");
+        glueCode.processLine("import unit.EnumInfoTest.StaticSample;");
+        glueCode.processLine("@Given(\"^I turn (.*)$\")");
+        glueCode.processLine("public void turn(StaticSample state)");
+        Assert.assertEquals(glueCode.getEnumInfo().getStepEnumerations(),
+                Collections.singletonList("var StaticSample = new Array(\"ON\",\"OFF\");"));
+    }
+
+    @Test
+    public void buildEnumPrefixTest() throws IOException {
+        String enumValue;
+        try (BufferedReader br = new BufferedReader(new StringReader("public enum SampleLonger { A }\npublic enum Sample { B }"))) {
+            enumValue = new EnumInfo(null).buildEnum(br, "Sample");
+        }
+        Assert.assertEquals(enumValue, "var Sample = new Array(\"B\");");
+    }
+
+    @Test
+    public void getStepEnumerationsMultipleTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory("./src/test/java/");
+        glueCode.processLine("import unit.EnumInfoTest.Sample;");
+        glueCode.processLine("import unit.EnumInfoTest.ComplexSample;");
+        glueCode.processLine("@Given(\"^I have (.*) and (.*)$\")");
+        glueCode.processLine("public void myMethod(ComplexSample complex, Sample sample)");
+        List<String> list = new ArrayList<>();
+        list.add("var ComplexSample = new Array(\"HELLO\",\"WORLD\");");
+        list.add("var Sample = new Array(\"HELLO\",\"WORLD\");");
+        Assert.assertEquals(glueCode.getEnumInfo().getStepEnumerations(), list);
+    }
+
+    @Test
+    public void getStepEnumerationsBuiltOnceTest() throws IOException {
+        Path base = Files.createTempDirectory("enums");
+        Path enumFile = base.resolve("steps/Color.java");
+        Files.createDirectories(enumFile.getParent());
+        Files.write(enumFile, Collections.singletonList("public enum Color { RED, BLUE }"));
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(base.toString());
+        glueCode.processLine("import steps.Color;");
+        glueCode.processLine("@Given(\"^I have (.*)$\")");
+        glueCode.processLine("public void myMethod(Color color)");
+        List<String> list = Collections.singletonList("var Color = new Array(\"RED\",\"BLUE\");");
+        Assert.assertEquals(glueCode.getEnumInfo().getStepEnumerations(), list);
+        // once built, the enumeration file isn't read again
+        Files.delete(enumFile);
+        Files.delete(enumFile.getParent());
+        Files.delete(base);
+        Assert.assertEquals(glueCode.getEnumInfo().getStepEnumerations(), list);
+    }
+
     @Test
     public void getStepEnumerationsEmptyTest() throws IOException {
         GlueCode glueCode = new GlueCode();
@@ -174,4 +312,58 @@ public class EnumInfoTest {
                         .formatEnumValues("public enum Simple { YES(\"hello(there)\"), NO(\"world" + "(earth)\");"),
                 "var Simple = new Array(\"YES\",\"NO\");");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void formatEnumValuesNoSpaceTest() {
+        Assert.assertEquals(new EnumInfo(null).formatEnumValues("enum Simple{YES,NO}"),
+                "var Simple = new Array(\"YES\",\"NO\");");
+    }
+
+    @Test
+    public void formatEnumValuesDeeplyNestedTest() {
+        Assert.assertEquals(new EnumInfo(null).formatEnumValues(
+                "public enum Simple { YES(of(of(of(1, 2), 3)), \")\"), NO(x -> { return x(')'); }, new int[]{1}) }"),
+                "var Simple = new Array(\"YES\",\"NO\");");
+    }
+
+    @Test
+    public void formatEnumValuesConstantBodyTest() {
+        Assert.assertEquals(new EnumInfo(null).formatEnumValues(
+                "public enum Simple { YES { void go() { } }, NO { void go() { } }; abstract void go(); }"),
+                "var Simple = new Array(\"YES\",\"NO\");");
+    }
+
+    @Test
+    public void formatEnumValuesAnnotationsTest() {
+        Assert.assertEquals(new EnumInfo(null).formatEnumValues(
+                "public enum Simple { @Deprecated YES, @java.lang.Deprecated @SuppressWarnings(\"all\") NO }"),
+                "var Simple = new Array(\"YES\",\"NO\");");
+    }
+
+    @Test
+    public void formatEnumValuesCommentsTest() {
+        Assert.assertEquals(new EnumInfo(null).formatEnumValues(
+                "public enum Simple { /* first, */ YES, // the second,\n NO /** done; */ }"),
+                "var Simple = new Array(\"YES\",\"NO\");");
+    }
+
+    @Test
+    public void buildEnumMultiLineTest() throws IOException {
+        String enumValue;
+        String source = "package steps;\n" +
+                "public enum Sample {\n" +
+                "    // the first value\n" +
+                "    HELLO(\"hi\") {\n" +
+                "        String greet() { return \"}\"; }\n" +
+                "    },\n" +
+                "    WORLD(\"there\") {\n" +
+                "        String greet() { return \";\"; }\n" +
+                "    };\n" +
+                "    abstract String greet();\n" +
+                "}\n";
+        try (BufferedReader br = new BufferedReader(new StringReader(source))) {
+            enumValue = new EnumInfo(null).buildEnum(br, "Sample");
+        }
+        Assert.assertEquals(enumValue, "var Sample = new Array(\"HELLO\",\"WORLD\");");
+    }
+}
@@ -0,0 +1,343 @@
+package unit;
+
+import com.coveros.GenerateStepDefs;
+import com.coveros.GlueCode;
+import com.coveros.GlueCodeReader;
+import com.coveros.RunStats;
+import com.coveros.exception.MalformedGlueCode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class GenerateStepDefsTest {
+
+    private Path glueDir;
+    private List<Path> files = new ArrayList<>();
+
+    @BeforeClass
+    public void createGlueCode() throws IOException {
+        glueDir = Files.createTempDirectory("glue");
+        for (int i = 0; i < 20; i++) {
+            Path file = glueDir.resolve("Steps" + i + ".java");
+            Files.write(file, Arrays.asList(
+                    "package steps;",
+                    "import java.io.IOException;",
+                    "import steps.Enum" + (i % 3) + ";",
+                    "public class Steps" + i + " {",
+                    "    @Given(\"^I have a user " + i + "$\")",
+                    "    public void haveUser()",
+                    "    @When(\"^I add (\\\\d+) users to " + i + "$\")",
+                    "    public void addUsers(int count, Enum" + (i % 3) + " type)",
+                    "}"));
+            files.add(file);
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteGlueCode() throws IOException {
+        try (Stream<Path> paths = Files.walk(glueDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void parseFileTest() throws IOException {
+        List<String> steps = new ArrayList<>();
+        steps.add("testSteps.push( new step( \"I have a user 0\" ) );");
+        steps.add("testSteps.push( new step( \"I add XXXX users to 0\", new keypair( \"count\", \"number\" ), " +
+                "new keypair( \"type\", Enum0 ) ) );");
+        GlueCode glueCode = GenerateStepDefs.parseFile(files.get(0));
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), steps);
+    }
+
+    @Test
+    public void parseFilesSequentialTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        GenerateStepDefs.parseFiles(files, glueCode, 1);
+        Assert.assertEquals(glueCode.getGlueCodeSteps().size(), 40);
+        Assert.assertEquals(glueCode.getEnumInfo().getClassIncludes().size(), 4);
+        Assert.assertEquals(glueCode.getEnumInfo().getGlueCodeEnumerations(), Arrays.asList("Enum0", "Enum1", "Enum2"));
+    }
+
+    @Test
+    public void parseFilesParallelTest() throws IOException {
+        GlueCode sequential = new GlueCode();
+        GenerateStepDefs.parseFiles(files, sequential, 1);
+        GlueCode parallel = new GlueCode();
+        GenerateStepDefs.parseFiles(files, parallel, 4);
+        Assert.assertEquals(parallel.getGlueCodeSteps(), sequential.getGlueCodeSteps());
+        Assert.assertEquals(parallel.getEnumInfo().getClassIncludes(), sequential.getEnumInfo().getClassIncludes());
+        Assert.assertEquals(parallel.getEnumInfo().getGlueCodeEnumerations(),
+                sequential.getEnumInfo().getGlueCodeEnumerations());
+    }
+
+    @Test(expectedExceptions = MalformedGlueCode.class)
+    public void parseFilesParallelErrorTest() throws IOException {
+        Path bad = glueDir.resolve("Bad.java");
+        Files.write(bad, Arrays.asList("@Given(\"I have no anchors\")", "public void noAnchors()"));
+        List<Path> withBad = new ArrayList<>(files);
+        withBad.add(bad);
+        try {
+            GenerateStepDefs.parseFiles(withBad, new GlueCode(), 4);
+        } finally {
+            Files.delete(bad);
+        }
+    }
+
+    @Test
+    public void parseFilesStatsTest() throws IOException {
+        RunStats stats = new RunStats();
+        GenerateStepDefs.parseFiles(files, new GlueCode(), null, new GlueCodeReader(), 4, stats);
+        RunStats.Phase parse = stats.getPhase(RunStats.PARSE);
+        Assert.assertEquals(parse.getFiles(), 20);
+        Assert.assertEquals(parse.getLines(), 180);
+        long bytes = 0;
+        for (Path file : files) {
+            bytes += Files.size(file);
+        }
+        Assert.assertEquals(parse.getBytes(), bytes);
+        Assert.assertTrue(parse.getNanos() > 0);
+    }
+
+    @Test
+    public void writeStepsStatsTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.addGlueCodeStep("testSteps.push( new step( \"I have a user 0\" ) );");
+        glueCode.addGlueCodeStep("testSteps.push( new step( \"I have a user 1\" ) );");
+        RunStats stats = new RunStats();
+        File output = glueDir.resolve("steps.js").toFile();
+        try {
+            GenerateStepDefs.writeSteps(glueCode, output, stats);
+            RunStats.Phase write = stats.getPhase(RunStats.WRITE);
+            Assert.assertEquals(write.getFiles(), 1);
+            Assert.assertEquals(write.getLines(), 5);
+            Assert.assertEquals(Files.readAllLines(output.toPath()).size(), 5);
+            Assert.assertEquals(write.getBytes(), output.length());
+        } finally {
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    @Test
+    public void streamStepsTest() throws IOException {
+        Path enums = glueDir.resolve("enums");
+        for (int i = 0; i < 3; i++) {
+            Path enumeration = enums.resolve("steps").resolve("Enum" + i + ".java");
+            Files.createDirectories(enumeration.getParent());
+            Files.write(enumeration, Arrays.asList("package steps;", "public enum Enum" + i + " {", "    ONE, TWO", "}"));
+        }
+        String baseDirectory = enums.toString() + File.separator;
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(baseDirectory);
+        GenerateStepDefs.parseFiles(files, glueCode, 1);
+        File expected = glueDir.resolve("expected.js").toFile();
+        File output = glueDir.resolve("streamed.js").toFile();
+        try {
+            GenerateStepDefs.writeSteps(glueCode, expected);
+            GlueCode streamed = new GlueCode();
+            streamed.addBaseDirectory(baseDirectory);
+            RunStats stats = new RunStats();
+            GenerateStepDefs.streamSteps(files, streamed, output, 2, null, stats, new GlueCodeReader());
+            Assert.assertEquals(Files.readAllLines(output.toPath()), Files.readAllLines(expected.toPath()));
+            Assert.assertTrue(streamed.getGlueCodeSteps().isEmpty());
+            Assert.assertEquals(streamed.getEnumInfo().getGlueCodeEnumerations(), Arrays.asList("Enum0", "Enum1", "Enum2"));
+            Assert.assertFalse(new File(output.getPath() + ".steps").exists());
+            RunStats.Phase write = stats.getPhase(RunStats.WRITE);
+            Assert.assertEquals(write.getFiles(), 1);
+            Assert.assertEquals(write.getLines(), Files.readAllLines(output.toPath()).size());
+            Assert.assertEquals(write.getBytes(), output.length());
+            Assert.assertEquals(stats.getPhase(RunStats.PARSE).getFiles(), 20);
+            Assert.assertEquals(stats.getPhase(RunStats.ENUMERATIONS).getFiles(), 3);
+        } finally {
+            Files.deleteIfExists(expected.toPath());
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    @Test(expectedExceptions = MalformedGlueCode.class)
+    public void streamStepsErrorTest() throws IOException {
+        Path bad = glueDir.resolve("BadStream.java");
+        Files.write(bad, Arrays.asList("@Given(\"I have no anchors\")", "public void noAnchors()"));
+        List<Path> withBad = new ArrayList<>(files);
+        withBad.add(bad);
+        File output = glueDir.resolve("broken.js").toFile();
+        try {
+            GenerateStepDefs.streamSteps(withBad, new GlueCode(), output, 4, null, new RunStats(),
+                    new GlueCodeReader());
+        } finally {
+            Files.delete(bad);
+            Assert.assertFalse(output.exists());
+            Assert.assertFalse(new File(output.getPath() + ".steps").exists());
+        }
+    }
+
+    private void assertSameAsReader(Path file) throws IOException {
+        GlueCode read = GenerateStepDefs.parseFile(file);
+        GlueCode mapped = new GlueCodeReader().readMapped(file);
+        Assert.assertEquals(mapped.getGlueCodeSteps(), read.getGlueCodeSteps());
+        Assert.assertEquals(mapped.getEnumInfo().getClassIncludes(), read.getEnumInfo().getClassIncludes());
+        Assert.assertEquals(mapped.getEnumInfo().getGlueCodeEnumerations(),
+                read.getEnumInfo().getGlueCodeEnumerations());
+        Assert.assertEquals(mapped.getLinesRead(), read.getLinesRead());
+    }
+
+    @Test
+    public void parseMappedFileTest() throws IOException {
+        for (Path file : files) {
+            assertSameAsReader(file);
+        }
+    }
+
+    @Test
+    public void parseMappedFileLineEndingsTest() throws IOException {
+        Path file = glueDir.resolve("LineEndings.java");
+        try {
+            Files.write(file, ("package steps;\r\nimport steps.Enum0;\rimport java.util.List;\n\r\n" +
+                    "  import steps.Indented;\n" +
+                    "\t@Given(\"^I use tabs$\")\r\n\tpublic void tabs(Enum0 type)\r" +
+                    "\u000B\f@When(\"^I use \u00e9 (\\\\d+) times$\")\npublic void accent(int count)\n\n" +
+                    "@Then(\"^I am stacked$\")\n@Then(\"^I am on the next line$\")\npublic void stacked(int count)\n" +
+                    "@Given(\"^I am last$\")").getBytes(StandardCharsets.UTF_8));
+            assertSameAsReader(file);
+            // the last step has no method following it, so is never completed
+            Assert.assertEquals(new GlueCodeReader().readMapped(file).getGlueCodeSteps().size(), 4);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void parseMappedFileKeywordsTest() throws IOException {
+        Path file = glueDir.resolve("Keywords.java");
+        try {
+            Files.write(file, Arrays.asList(
+                    "package steps;",
+                    "import steps.Enum0;",
+                    "public class Keywords implements En {",
+                    "    @And(\"^I also have a user$\")",
+                    "    public void alsoHaveUser(Enum0 type)",
+                    "    public Keywords() {",
+                    "        Given(\"^I have (\\\\d+) cukes$\", (Integer cukes) -> {",
+                    "        });",
+                    "        But(\"^I have no (.*)$\",",
+                    "                (String thing) -> {",
+                    "        });",
+                    "    }",
+                    "}"));
+            assertSameAsReader(file);
+            Assert.assertEquals(new GlueCodeReader().readMapped(file).getGlueCodeSteps().size(), 3);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void parseMappedFileEmptyTest() throws IOException {
+        Path file = glueDir.resolve("Empty.java");
+        try {
+            Files.createFile(file);
+            assertSameAsReader(file);
+            Files.write(file, "\n".getBytes(StandardCharsets.UTF_8));
+            assertSameAsReader(file);
+            Files.write(file, "\r\n\r".getBytes(StandardCharsets.UTF_8));
+            assertSameAsReader(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void parseFilesMappedTest() throws IOException {
+        RunStats readStats = new RunStats();
+        GlueCode read = new GlueCode();
+        GenerateStepDefs.parseFiles(files, read, null, new GlueCodeReader(), 4, readStats);
+        RunStats mappedStats = new RunStats();
+        GlueCode mapped = new GlueCode();
+        GenerateStepDefs.parseFiles(files, mapped, null, new GlueCodeReader().setMapped(true), 4, mappedStats);
+        Assert.assertEquals(mapped.getGlueCodeSteps(), read.getGlueCodeSteps());
+        Assert.assertEquals(mappedStats.getPhase(RunStats.PARSE).getLines(),
+                readStats.getPhase(RunStats.PARSE).getLines());
+        Assert.assertEquals(mappedStats.getPhase(RunStats.PARSE).getBytes(),
+                readStats.getPhase(RunStats.PARSE).getBytes());
+    }
+
+    @Test
+    public void parseFileSkippedTest() throws IOException {
+        Path file = glueDir.resolve("PageObject.java");
+        try {
+            Files.write(file, Arrays.asList(
+                    "package steps;",
+                    "import steps.Enum0;",
+                    "public class PageObject {",
+                    "    @FindBy(id = \"given\")",
+                    "    private Element given;",
+                    "    public void select(Enum0 type)",
+                    "}"));
+            GlueCode glueCode = GenerateStepDefs.parseFile(file);
+            Assert.assertTrue(glueCode.isSkipped());
+            Assert.assertTrue(glueCode.getGlueCodeSteps().isEmpty());
+            Assert.assertEquals(glueCode.getEnumInfo().getClassIncludes(), Arrays.asList("steps.Enum0"));
+            Assert.assertEquals(glueCode.getLinesRead(), 7);
+            Assert.assertTrue(new GlueCodeReader().readMapped(file).isSkipped());
+            assertSameAsReader(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void parseFileCustomKeywordsTest() throws IOException {
+        GlueCodeReader reader = new GlueCodeReader(Arrays.asList("Step"));
+        for (Path file : Arrays.asList(files.get(0), files.get(1))) {
+            Assert.assertTrue(reader.readLines(file).isSkipped());
+            Assert.assertTrue(reader.readMapped(file).getGlueCodeSteps().isEmpty());
+        }
+        Path file = glueDir.resolve("CustomSteps.java");
+        try {
+            Files.write(file, Arrays.asList("@Step(\"^I have a user$\")", "public void haveUser()"));
+            Assert.assertEquals(reader.readLines(file).getGlueCodeSteps().size(), 1);
+            Assert.assertEquals(reader.setMapped(true).read(file).getGlueCodeSteps().size(), 1);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void parseFileNotSkippedTest() throws IOException {
+        Assert.assertFalse(GenerateStepDefs.parseFile(files.get(0)).isSkipped());
+        Assert.assertFalse(new GlueCodeReader().readMapped(files.get(0)).isSkipped());
+    }
+
+    @Test
+    public void parseFilesSkippedStatsTest() throws IOException {
+        Path file = glueDir.resolve("Utility.java");
+        try {
+            Files.write(file, Arrays.asList("package steps;", "public class Utility {", "}"));
+            List<Path> withUtility = new ArrayList<>(files);
+            withUtility.add(file);
+            RunStats stats = new RunStats();
+            GenerateStepDefs.parseFiles(withUtility, new GlueCode(), null, new GlueCodeReader(), 1, stats);
+            Assert.assertEquals(stats.getPhase(RunStats.PARSE).getFiles(), 21);
+            Assert.assertEquals(stats.getPhase(RunStats.PARSE).getSkipped(), 1);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void watchClassesTest() throws Exception {
+        GenerateStepDefs.main(new String[]{glueDir.toString(), "--watch", "--classes"});
+    }
+}
@@ -1,6 +1,8 @@
 package unit;
 
 import com.coveros.GlueCode;
+import com.coveros.KeywordMatcher;
+import com.coveros.StepDefinition;
 import com.coveros.exception.MalformedGlueCode;
 import com.coveros.exception.MalformedMethod;
 import org.testng.Assert;
@@ -8,6 +10,7 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class GlueCodeTest {
@@ -82,6 +85,94 @@ public class GlueCodeTest {
         Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
     }
 
+    @Test
+    public void processLineAndMethodStepsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have a user\" ) );");
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("@And(\"^I have a user$\")");
+        glueCode.processLine("public void haveUser()");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
+    @Test
+    public void processLineButMethodStepsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have a user\" ) );");
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("    @But(\"^I have a user$\")");
+        glueCode.processLine("public void haveUser()");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
+    @Test
+    public void processLineKeywordPrefixTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("@Thenable(\"^I have a user$\")");
+        glueCode.processLine("public void haveUser()");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), new ArrayList<>());
+    }
+
+    @Test
+    public void processLineCustomKeywordsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have a user\" ) );");
+        GlueCode glueCode = new GlueCode(new KeywordMatcher(Arrays.asList("Step", "Dado")));
+        glueCode.processLine("@Given(\"^I have an admin$\")");
+        glueCode.processLine("public void haveAdmin()");
+        glueCode.processLine("@Step(\"^I have a user$\")");
+        glueCode.processLine("public void haveUser()");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
+    @Test
+    public void processLineLambdaTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have XXXX cukes\", new keypair( \"cukes\", \"number\" ) ) );");
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("        Given(\"^I have (\\\\d+) cukes$\", (Integer cukes) -> {");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
+    @Test
+    public void processLineLambdaNoParamsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have a user\" ) );");
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("When(\"^I have a user$\", () -> {");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
+    @Test
+    public void processLineLambdaUntypedParamsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have XXXX XXXX\", new keypair( \"count\", \"text\" ), " +
+                "new keypair( \"item\", \"text\" ) ) );");
+        list.add("testSteps.push( new step( \"I eat XXXX\", new keypair( \"count\", \"text\" ) ) );");
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("Then(\"^I have (\\\\d+) (.*)$\", (count, item) -> {");
+        glueCode.processLine("And(\"^I eat (\\\\d+)$\", count -> {");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
+    @Test
+    public void processLineLambdaNextLineTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have a XXXX user\", new keypair( \"type\", MyEnum ) ) );");
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("But(\"^I have a (.*) user$\",");
+        glueCode.processLine("        (MyEnum type) -> {");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
+    @Test
+    public void processLineLambdaOtherCallTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("Given(name, () -> {");
+        glueCode.processLine("Givens(\"^I have a user$\", () -> {");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), new ArrayList<>());
+    }
+
     @Test
     public void processLineWhenMethodStepsTest() throws IOException {
         List<String> list = new ArrayList<>();
@@ -115,6 +206,33 @@ public class GlueCodeTest {
         Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
     }
 
+    @Test
+    public void addGlueCodeTest() throws IOException {
+        List<String> steps = new ArrayList<>();
+        steps.add("testSteps.push( new step( \"I have a user\" ) );");
+        steps.add("testSteps.push( new step( \"I have XXXX users\", new keypair( \"users\", MyEnum ) ) );");
+        List<String> includes = new ArrayList<>();
+        includes.add("java.io.IOException");
+        includes.add("java.io.File");
+        List<String> enums = new ArrayList<>();
+        enums.add("MyEnum");
+        GlueCode first = new GlueCode();
+        first.processLine("import java.io.IOException;");
+        first.processLine("@Given(\"^I have a user$\")");
+        first.processLine("public void haveUser()");
+        GlueCode second = new GlueCode();
+        second.processLine("import java.io.File;");
+        second.processLine("import java.io.IOException;");
+        second.processLine("@Given(\"^I have (\\d+) users$\")");
+        second.processLine("public void haveUsers(MyEnum users)");
+        GlueCode glueCode = new GlueCode();
+        glueCode.addGlueCode(first);
+        glueCode.addGlueCode(second);
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), steps);
+        Assert.assertEquals(glueCode.getEnumInfo().getClassIncludes(), includes);
+        Assert.assertEquals(glueCode.getEnumInfo().getGlueCodeEnumerations(), enums);
+    }
+
     @Test(expectedExceptions = MalformedGlueCode.class)
     public void checkStepValidityNotCarotTest() throws IOException {
         String given = "@Given(\"I have a new registered user$\")";
@@ -157,6 +275,55 @@ public class GlueCodeTest {
         Assert.assertEquals(new GlueCode().getStep(given), "I have <span class='opt'>XXXX</span> users");
     }
 
+    @Test
+    public void getStepNestedMatchTest() throws IOException {
+        String given = "@Given(\"^I have ((\\d+) or (\\d+)) users$\")";
+        Assert.assertEquals(new GlueCode().getStep(given), "I have XXXX users");
+    }
+
+    @Test
+    public void getStepNestedAnyTest() throws IOException {
+        String given = "@Given(\"^I (?:have (\\d+)|lack) users$\")";
+        Assert.assertEquals(new GlueCode().getStep(given), "I <span class='any'>...</span> users");
+    }
+
+    @Test
+    public void getStepMultipleMatchTest() throws IOException {
+        String given = "@Given(\"^I see the \\\"([^\\\"]*)\\\" of type \\\"([^\\\"]*)\\\"$\")";
+        Assert.assertEquals(new GlueCode().getStep(given), "I see the \\\"XXXX\\\" of type \\\"XXXX\\\"");
+    }
+
+    @Test
+    public void getStepCharacterClassParenTest() throws IOException {
+        String given = "@Given(\"^I enter ([^)]*) as text$\")";
+        Assert.assertEquals(new GlueCode().getStep(given), "I enter XXXX as text");
+    }
+
+    @Test
+    public void getStepEscapedParenTest() throws IOException {
+        String given = "@Given(\"^I click \\\\(here\\\\) for (\\d+) users$\")";
+        Assert.assertEquals(new GlueCode().getStep(given), "I click \\\\(here\\\\) for XXXX users");
+    }
+
+    @Test
+    public void getStepMultipleOptionalTest() throws IOException {
+        String given = "@Given(\"^I have [(d+) ]?users[ (?:now|later)]?$\")";
+        Assert.assertEquals(new GlueCode().getStep(given),
+                "I have <span class='opt'>XXXX </span>users<span class='opt'> <span class='any'>...</span></span>");
+    }
+
+    @Test
+    public void getStepRequiredBracketTest() throws IOException {
+        String given = "@Given(\"^I have [\\w+] [(\\d+)]$\")";
+        Assert.assertEquals(new GlueCode().getStep(given), "I have [\\w+] [XXXX]");
+    }
+
+    @Test
+    public void getStepUnclosedTest() throws IOException {
+        String given = "@Given(\"^I have (d+ users$\")";
+        Assert.assertEquals(new GlueCode().getStep(given), "I have (d+ users");
+    }
+
     @Test(expectedExceptions = MalformedMethod.class)
     public void checkMethodVariablesValidityNoOpenParenTest() throws IOException {
         String method = "public void myMethod)";
@@ -198,6 +365,15 @@ public class GlueCodeTest {
         Assert.assertEquals(new GlueCode().getMethodVariables(method), list);
     }
 
+    @Test
+    public void getMethodVariablesGenericParamsTest() throws IOException {
+        String method = "public void myMethod(Map<String, Integer> counts, @Delimiter(\", \") List<String> names) {";
+        List<String> list = new ArrayList<>();
+        list.add("Map<String, Integer> counts");
+        list.add(" @Delimiter(\", \") List<String> names");
+        Assert.assertEquals(new GlueCode().getMethodVariables(method), list);
+    }
+
     @Test
     public void getStepVariablesNoParamsTest() throws IOException {
         List<String> list = new ArrayList<>();
@@ -309,6 +485,67 @@ public class GlueCodeTest {
         Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"inputList\", Object )");
     }
 
+    @Test
+    public void getStepVariablesFormatTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("@Format(\"yyyy-MM-dd\") Date input");
+        Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"input\", \"date\" )");
+    }
+
+    @Test
+    public void getStepVariablesFinalTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("final @Transform(Converter.class) int input");
+        Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"input\", \"number\" )");
+    }
+
+    @Test
+    public void getStepVariablesVarargsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("String... inputs");
+        Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"inputsList\", \"text\" )");
+    }
+
+    @Test
+    public void getStepVariablesArrayTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("MyEnum[] inputs");
+        Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"inputsList\", MyEnum )");
+    }
+
+    @Test
+    public void getStepVariablesQualifiedTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("java.util.List<com.coveros.MyEnum> inputs");
+        Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"inputsList\", MyEnum )");
+    }
+
+    @Test
+    public void getStepVariablesMapTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("Map<String, Integer> inputs");
+        Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"inputs\", \"text\" )");
+    }
+
+    @Test
+    public void getStepVariablesListOfMapsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("List< Map<String, String> > inputs");
+        Assert.assertEquals(new GlueCode().getStepVariables(list), ", new keypair( \"inputsList\", \"text\" )");
+    }
+
+    @Test
+    public void processLineGenericMethodStepsTest() throws IOException {
+        List<String> list = new ArrayList<>();
+        list.add("testSteps.push( new step( \"I have XXXX users\", new keypair( \"counts\", \"text\" ), " +
+                "new keypair( \"namesList\", \"text\" ), new keypair( \"when\", \"date\" ) ) );");
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("@Given(\"^I have (.*) users$\")");
+        glueCode.processLine("public void haveUsers(Map<String, Integer> counts, @Delimiter(\", \") List<String> names, " +
+                "@Format(\"dd, MM\") final Date when) throws Throwable {");
+        Assert.assertEquals(glueCode.getGlueCodeSteps(), list);
+    }
+
     @Test
     public void getStepVariablesMultipleParamsTest() throws IOException {
         List<String> list = new ArrayList<>();
@@ -522,4 +759,47 @@ public class GlueCodeTest {
     public void isNumberOtherTest() throws IOException {
         Assert.assertFalse(new GlueCode().isNumber("Other"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void stepDefinitionsNotRecordedTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.processLine("@Given(\"^I have (\\d+) cukes$\")");
+        glueCode.processLine("public void cukes(int count)");
+        Assert.assertEquals(glueCode.getGlueCodeSteps().size(), 1);
+        Assert.assertTrue(glueCode.getStepDefinitions().isEmpty());
+    }
+
+    @Test
+    public void stepDefinitionsRecordedTest() throws IOException {
+        GlueCode glueCode = new GlueCode();
+        glueCode.setRecording(true);
+        glueCode.processLine("import java.util.List;");
+        glueCode.processLine("    @When(\"^I pick (\\d+) (.*) on \\\"([^\\\"]*)\\\"$\")");
+        glueCode.processLine("    public void pick(final int count, List<Color> colors, Date when) {");
+        glueCode.processLine("    Then(\"^I see \\\"([^\\\"]*)\\\"$\", message -> {");
+        List<StepDefinition> definitions = glueCode.getStepDefinitions();
+        Assert.assertEquals(definitions.size(), 2);
+
+        StepDefinition pick = definitions.get(0);
+        Assert.assertEquals(pick.getKeyword(), "When");
+        Assert.assertEquals(pick.getLine(), 2);
+        Assert.assertNull(pick.getFile());
+        Assert.assertEquals(pick.getStep(), glueCode.getGlueCodeSteps().get(0));
+        Assert.assertTrue(pick.getStep().startsWith("testSteps.push( new step( \"" + pick.getText() + "\""));
+        Assert.assertEquals(pick.getParameters().size(), 3);
+        Assert.assertEquals(pick.getParameters().get(0).toString(), "number count");
+        Assert.assertEquals(pick.getParameters().get(1).getName(), "colors");
+        Assert.assertEquals(pick.getParameters().get(1).getType(), "Color");
+        Assert.assertTrue(pick.getParameters().get(1).isList());
+        Assert.assertTrue(pick.getParameters().get(1).isEnumeration());
+        Assert.assertEquals(pick.getParameters().get(2).getType(), StepDefinition.DATE);
+        Assert.assertEquals(pick.getEnumerations(), Arrays.asList("Color"));
+
+        StepDefinition see = definitions.get(1);
+        Assert.assertEquals(see.getKeyword(), "Then");
+        Assert.assertEquals(see.getLine(), 4);
+        Assert.assertEquals(see.getStep(), glueCode.getGlueCodeSteps().get(1));
+        Assert.assertEquals(see.getParameters().get(0).toString(), "text message");
+        Assert.assertTrue(see.getEnumerations().isEmpty());
+    }
+}
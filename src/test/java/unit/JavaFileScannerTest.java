@@ -0,0 +1,148 @@
+package unit;
+
+import com.coveros.JavaFileScanner;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class JavaFileScannerTest {
+
+    private Path root;
+
+    @BeforeMethod
+    public void createFolders() throws IOException {
+        root = Files.createTempDirectory("scanner");
+        Files.createDirectories(root.resolve("steps/nested"));
+        Files.createDirectories(root.resolve("target/classes"));
+        Files.createDirectories(root.resolve(".git"));
+        Files.createFile(root.resolve("steps/Steps.java"));
+        Files.createFile(root.resolve("steps/nested/NestedSteps.java"));
+        Files.createFile(root.resolve("steps/README.md"));
+        Files.createFile(root.resolve("target/classes/Built.java"));
+        Files.createFile(root.resolve(".git/Config.java"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFolders() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private List<File> folders(String... names) {
+        List<File> folders = new ArrayList<>();
+        for (String name : names) {
+            folders.add(root.resolve(name).toFile());
+        }
+        return folders;
+    }
+
+    @Test
+    public void scanJavaOnlyTest() throws IOException {
+        List<Path> files = new JavaFileScanner(folders("steps")).scan();
+        Assert.assertEquals(new HashSet<>(files), new HashSet<>(Arrays.asList(root.resolve("steps/Steps.java"),
+                root.resolve("steps/nested/NestedSteps.java"))));
+    }
+
+    @Test
+    public void scanDefaultExcludesTest() throws IOException {
+        Assert.assertEquals(new JavaFileScanner(folders("")).scan().size(), 2);
+    }
+
+    @Test
+    public void scanNoExcludesTest() throws IOException {
+        Assert.assertEquals(new JavaFileScanner(folders(""), Collections.emptySet()).scan().size(), 4);
+    }
+
+    @Test
+    public void scanCustomExcludesTest() throws IOException {
+        Set<String> excludes = new HashSet<>(JavaFileScanner.DEFAULT_EXCLUDES);
+        excludes.add("nested");
+        List<Path> files = new JavaFileScanner(folders(""), excludes).scan();
+        Assert.assertEquals(files, Collections.singletonList(root.resolve("steps/Steps.java")));
+    }
+
+    @Test
+    public void scanExcludedRootTest() throws IOException {
+        Assert.assertEquals(new JavaFileScanner(folders("target")).scan().size(), 1);
+    }
+
+    @Test
+    public void scanOverlappingRootsTest() throws IOException {
+        Assert.assertEquals(new JavaFileScanner(folders("steps", "steps/nested", "")).scan().size(), 2);
+    }
+
+    @Test
+    public void scanMissingRootTest() throws IOException {
+        Assert.assertEquals(new JavaFileScanner(folders("missing", "steps")).scan().size(), 2);
+    }
+
+    @Test
+    public void scanSymbolicLinkLoopTest() throws IOException {
+        Files.createSymbolicLink(root.resolve("steps/nested/loop"), root.resolve("steps"));
+        Assert.assertEquals(new JavaFileScanner(folders("steps")).scan().size(), 2);
+    }
+
+    @Test
+    public void scanLinkedFileWalkedTest() throws IOException {
+        Files.createSymbolicLink(root.resolve("steps/nested/Linked.java"), root.resolve("steps/Steps.java"));
+        Files.createSymbolicLink(root.resolve("steps/Linked.java"), root.resolve("steps/nested/NestedSteps.java"));
+        Assert.assertEquals(new JavaFileScanner(folders("steps")).scan().size(), 2);
+    }
+
+    @Test
+    public void scanLinkedFileOutsideTest() throws IOException {
+        Files.createSymbolicLink(root.resolve("steps/Linked.java"), root.resolve("target/classes/Built.java"));
+        Files.createSymbolicLink(root.resolve("steps/nested/Linked.java"), root.resolve("target/classes/Built.java"));
+        Assert.assertEquals(new JavaFileScanner(folders("steps")).scan().size(), 3);
+        Assert.assertEquals(new JavaFileScanner(folders("steps", "target")).scan().size(), 3);
+    }
+
+    @Test
+    public void iteratorTest() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path file : new JavaFileScanner(folders(""))) {
+            files.add(file);
+        }
+        Assert.assertEquals(files, new JavaFileScanner(folders("")).scan());
+    }
+
+    @Test
+    public void iteratorEmptyTest() {
+        Assert.assertFalse(new JavaFileScanner(folders("missing")).iterator().hasNext());
+    }
+
+    @Test
+    public void iteratorCloseTest() throws IOException, InterruptedException {
+        // more files than the walk can hand over before it has to wait
+        Files.createDirectories(root.resolve("many"));
+        for (int i = 0; i < 2000; i++) {
+            Files.createFile(root.resolve("many/Steps" + i + ".java"));
+        }
+        JavaFileScanner.ScanIterator iterator = (JavaFileScanner.ScanIterator) new JavaFileScanner(folders("many"))
+                .iterator();
+        Assert.assertTrue(iterator.hasNext());
+        iterator.next();
+        Assert.assertTrue(iterator.isWalking());
+        iterator.close();
+        for (int i = 0; i < 100 && iterator.isWalking(); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertFalse(iterator.isWalking());
+        Assert.assertFalse(iterator.hasNext());
+    }
+}
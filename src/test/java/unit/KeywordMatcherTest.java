@@ -0,0 +1,77 @@
+package unit;
+
+import com.coveros.KeywordMatcher;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class KeywordMatcherTest {
+
+    private static final KeywordMatcher KEYWORDS = new KeywordMatcher(Arrays.asList("Given", "When", "Then", "Th"));
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void getKeywordsTest() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("Given", "", "When", "Given"));
+        Assert.assertEquals(matcher.getKeywords(), Arrays.asList("Given", "When"));
+    }
+
+    @Test
+    public void matchAtTest() {
+        Assert.assertEquals(KEYWORDS.matchAt("@Given(", 1), 5);
+        Assert.assertEquals(KEYWORDS.matchAt("When", 0), 4);
+    }
+
+    @Test
+    public void matchAtLongestTest() {
+        Assert.assertEquals(KEYWORDS.matchAt("Then", 0), 4);
+        Assert.assertEquals(KEYWORDS.matchAt("Thus", 0), 2);
+    }
+
+    @Test
+    public void matchAtNoneTest() {
+        Assert.assertEquals(KEYWORDS.matchAt("@Given(", 0), 0);
+        Assert.assertEquals(KEYWORDS.matchAt("Giv", 0), 0);
+        Assert.assertEquals(KEYWORDS.matchAt("AGiven", 0), 0);
+        Assert.assertEquals(KEYWORDS.matchAt("", 0), 0);
+    }
+
+    @Test
+    public void matchAtNonAsciiTest() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("Étant donné", "Quand"));
+        Assert.assertEquals(matcher.matchAt("Étant donné(", 0), 11);
+        Assert.assertEquals(matcher.matchAt("Étant donne(", 0), 0);
+        KeywordMatcher bytes = new KeywordMatcher(Arrays.asList("Étant donné", "Quand"), StandardCharsets.UTF_8);
+        Assert.assertEquals(bytes.matchAt(bytes("Étant donné("), 0, 14), 13);
+    }
+
+    @Test
+    public void matchAtBytesTest() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("Given", "When"), StandardCharsets.UTF_8);
+        ByteBuffer buffer = bytes("  @When(");
+        Assert.assertEquals(matcher.matchAt(buffer, 3, buffer.limit()), 4);
+        Assert.assertEquals(matcher.matchAt(buffer, 3, 6), 0);
+        Assert.assertEquals(matcher.matchAt(buffer, 2, buffer.limit()), 0);
+    }
+
+    @Test
+    public void stepOverlappingTest() {
+        KeywordMatcher matcher = new KeywordMatcher(Arrays.asList("But", "Button", "ton"));
+        String text = "Buttons";
+        int state = KeywordMatcher.START;
+        StringBuilder ends = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            state = matcher.step(state, text.charAt(i));
+            if (matcher.isMatch(state)) {
+                ends.append(i + 1).append(' ');
+            }
+        }
+        Assert.assertEquals(ends.toString(), "3 6 ");
+    }
+}
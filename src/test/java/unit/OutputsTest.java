@@ -1,13 +1,19 @@
 package unit;
 
+import com.coveros.GlueCode;
+import com.coveros.JavaFileScanner;
 import com.coveros.Outputs;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class OutputsTest {
 
@@ -38,8 +44,93 @@ public class OutputsTest {
         Assert.assertEquals(Outputs.checkInputs(new String[]{"src/test/java","src/main/java"}), files);
     }
 
+    @Test(expectedExceptions = IOException.class)
+    public void checkInputsOnlyOptionsTest() throws IOException {
+        Outputs.checkInputs(new String[]{"--threads=2"});
+    }
+
+    @Test
+    public void checkInputsSkipOptionsTest() throws IOException {
+        List files = new ArrayList<>();
+        files.add( new File("src/test/java") );
+        Assert.assertEquals(Outputs.checkInputs(new String[]{"--threads=2", "src/test/java"}), files);
+    }
+
+    @Test
+    public void checkOptionsNoneTest() {
+        Assert.assertTrue(Outputs.checkOptions(new String[]{"src/test/java"}).isEmpty());
+    }
+
+    @Test
+    public void checkOptionsValueTest() {
+        Map<String, String> options = Outputs.checkOptions(new String[]{"src/test/java", "--threads=2"});
+        Assert.assertEquals(options.size(), 1);
+        Assert.assertEquals(options.get("threads"), "2");
+    }
+
+    @Test
+    public void checkOptionsFlagTest() {
+        Assert.assertEquals(Outputs.checkOptions(new String[]{"--watch"}).get("watch"), "true");
+    }
+
+    @Test
+    public void getIntOptionTest() throws IOException {
+        Map<String, String> options = Outputs.checkOptions(new String[]{"--threads=2"});
+        Assert.assertEquals(Outputs.getIntOption(options, "threads", 4), 2);
+    }
+
+    @Test
+    public void getIntOptionDefaultTest() throws IOException {
+        Map<String, String> options = Outputs.checkOptions(new String[0]);
+        Assert.assertEquals(Outputs.getIntOption(options, "threads", 4), 4);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void getIntOptionBadTest() throws IOException {
+        Map<String, String> options = Outputs.checkOptions(new String[]{"--threads=many"});
+        Outputs.getIntOption(options, "threads", 4);
+    }
+
+    @Test
+    public void listFilesForFolder() throws IOException {
+        // only java files are listed, and excluded folders, such as target, are skipped
+        Assert.assertEquals(Outputs.listFilesForFolder(new File("src/test/resources/listFiles")).size(), 3);
+    }
+
+    @Test
+    public void getExcludesDefaultTest() {
+        Assert.assertEquals(Outputs.getExcludes(Outputs.checkOptions(new String[0])), JavaFileScanner.DEFAULT_EXCLUDES);
+    }
+
+    @Test
+    public void getExcludesTest() {
+        Set<String> excludes = Outputs.getExcludes(Outputs.checkOptions(new String[]{"--exclude=build, generated"}));
+        Assert.assertTrue(excludes.containsAll(JavaFileScanner.DEFAULT_EXCLUDES));
+        Assert.assertTrue(excludes.contains("build"));
+        Assert.assertTrue(excludes.contains("generated"));
+    }
+
+    @Test
+    public void getKeywordsDefaultTest() {
+        Assert.assertEquals(Outputs.getKeywords(Outputs.checkOptions(new String[0])), GlueCode.DEFAULT_KEYWORDS);
+        Assert.assertEquals(Outputs.getKeywords(Outputs.checkOptions(new String[]{"--keywords"})),
+                GlueCode.DEFAULT_KEYWORDS);
+    }
+
+    @Test
+    public void getKeywordsTest() {
+        List<String> keywords = Outputs.getKeywords(Outputs.checkOptions(new String[]{"--keywords=Given, @Step,,"}));
+        Assert.assertEquals(keywords, Arrays.asList("Given", "Step"));
+    }
+
+    @Test
+    public void sha256HexTest() throws IOException {
+        Assert.assertEquals(Outputs.sha256Hex("abc".getBytes(StandardCharsets.US_ASCII)),
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
     @Test
-    public void listFilesForFolder() {
-        Assert.assertEquals(Outputs.listFilesForFolder(new File("src/test/java")).size(), 3);
+    public void toHexTest() {
+        Assert.assertEquals(Outputs.toHex(new byte[]{0, 15, 16, (byte) 255}), "000f10ff");
     }
-}
\ No newline at end of file
+}
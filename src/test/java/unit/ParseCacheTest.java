@@ -0,0 +1,224 @@
+package unit;
+
+import com.coveros.GenerateStepDefs;
+import com.coveros.GlueCode;
+import com.coveros.GlueCodeReader;
+import com.coveros.ParseCache;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class ParseCacheTest {
+
+    private Path dir;
+    private Path glue;
+    private File location;
+
+    @BeforeMethod
+    public void createGlueCode() throws IOException {
+        dir = Files.createTempDirectory("cache");
+        glue = dir.resolve("Steps.java");
+        Files.write(glue, Arrays.asList("import steps.MyEnum;", "@Given(\"^I have a user$\")",
+                "public void haveUser(MyEnum type)"));
+        // old enough that its modification time is trusted
+        Files.setLastModifiedTime(glue, FileTime.fromMillis(System.currentTimeMillis() - 10000));
+        location = dir.resolve("cache/steps.cache").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteGlueCode() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private GlueCode parse(ParseCache cache) throws IOException {
+        return GenerateStepDefs.parseFile(glue, cache, new GlueCodeReader());
+    }
+
+    private void assertSame(GlueCode actual, GlueCode expected) {
+        Assert.assertEquals(actual.getGlueCodeSteps(), expected.getGlueCodeSteps());
+        Assert.assertEquals(actual.getEnumInfo().getClassIncludes(), expected.getEnumInfo().getClassIncludes());
+        Assert.assertEquals(actual.getEnumInfo().getGlueCodeEnumerations(),
+                expected.getEnumInfo().getGlueCodeEnumerations());
+    }
+
+    @Test
+    public void emptyCacheTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        Assert.assertNull(cache.get(glue, cache.stamp(glue)));
+        Assert.assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test
+    public void hitTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        GlueCode parsed = parse(cache);
+        GlueCode cached = cache.get(glue, cache.stamp(glue));
+        Assert.assertNotNull(cached);
+        assertSame(cached, parsed);
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void saveLoadTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        GlueCode parsed = parse(cache);
+        cache.save();
+        ParseCache reloaded = new ParseCache(location, false);
+        reloaded.load();
+        assertSame(parse(reloaded), parsed);
+        Assert.assertEquals(reloaded.getHits(), 1);
+        Assert.assertEquals(reloaded.getMisses(), 0);
+    }
+
+    @Test
+    public void changedFileTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        parse(cache);
+        cache.save();
+        Files.write(glue, Collections.singletonList("@When(\"^I have no users$\")\npublic void noUsers()"));
+        ParseCache reloaded = new ParseCache(location, false);
+        reloaded.load();
+        Assert.assertEquals(parse(reloaded).getGlueCodeSteps(),
+                Collections.singletonList("testSteps.push( new step( \"I have no users\" ) );"));
+        Assert.assertEquals(reloaded.getMisses(), 1);
+    }
+
+    @Test
+    public void touchedFileTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        parse(cache);
+        Files.setLastModifiedTime(glue, FileTime.fromMillis(0));
+        Assert.assertNull(cache.get(glue, cache.stamp(glue)));
+    }
+
+    @Test
+    public void racyFileTest() throws IOException {
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis());
+        Files.setLastModifiedTime(glue, modified);
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        parse(cache);
+        cache.save();
+        // the same size, and the same modification time, but different contents
+        Files.write(glue, Arrays.asList("import steps.MyEnum;", "@Given(\"^I have a bird$\")",
+                "public void haveUser(MyEnum type)"));
+        Files.setLastModifiedTime(glue, modified);
+        ParseCache reloaded = new ParseCache(location, false);
+        reloaded.load();
+        Assert.assertNull(reloaded.get(glue, reloaded.stamp(glue)));
+    }
+
+    @Test
+    public void racyFileHashTest() throws IOException {
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis());
+        Files.setLastModifiedTime(glue, modified);
+        ParseCache cache = new ParseCache(location, true);
+        cache.load();
+        parse(cache);
+        cache.save();
+        ParseCache unchanged = new ParseCache(location, true);
+        unchanged.load();
+        Assert.assertNotNull(unchanged.get(glue, unchanged.stamp(glue)));
+        Files.write(glue, Arrays.asList("import steps.MyEnum;", "@Given(\"^I have a bird$\")",
+                "public void haveUser(MyEnum type)"));
+        Files.setLastModifiedTime(glue, modified);
+        ParseCache reloaded = new ParseCache(location, true);
+        reloaded.load();
+        Assert.assertNull(reloaded.get(glue, reloaded.stamp(glue)));
+    }
+
+    @Test
+    public void touchedFileHashTest() throws IOException {
+        ParseCache cache = new ParseCache(location, true);
+        cache.load();
+        GlueCode parsed = parse(cache);
+        cache.save();
+        Files.setLastModifiedTime(glue, FileTime.fromMillis(0));
+        ParseCache reloaded = new ParseCache(location, true);
+        reloaded.load();
+        assertSame(parse(reloaded), parsed);
+        Assert.assertEquals(reloaded.getHits(), 1);
+        reloaded.save();
+    }
+
+    @Test
+    public void hashModeChangeTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        parse(cache);
+        cache.save();
+        ParseCache reloaded = new ParseCache(location, true);
+        reloaded.load();
+        Assert.assertNull(reloaded.get(glue, reloaded.stamp(glue)));
+    }
+
+    @Test
+    public void keywordsChangeTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        parse(cache);
+        cache.save();
+        ParseCache same = new ParseCache(location, false, GlueCode.DEFAULT_KEYWORDS);
+        same.load();
+        Assert.assertNotNull(same.get(glue, same.stamp(glue)));
+        ParseCache reloaded = new ParseCache(location, false, Arrays.asList("Given", "Step"));
+        reloaded.load();
+        Assert.assertNull(reloaded.get(glue, reloaded.stamp(glue)));
+    }
+
+    @Test
+    public void corruptCacheTest() throws IOException {
+        Files.createDirectories(location.getParentFile().toPath());
+        Files.write(location.toPath(), new byte[]{0, 0, 0, 1, 1, 0, 0, 0, 5, 1});
+        ParseCache cache = new ParseCache(location, true);
+        cache.load();
+        Assert.assertNull(cache.get(glue, cache.stamp(glue)));
+    }
+
+    @Test
+    public void corruptLengthTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        parse(cache);
+        cache.save();
+        // claim the keywords are far longer than the cache could hold
+        byte[] bytes = Files.readAllBytes(location.toPath());
+        bytes[5] = 0x7f;
+        Files.write(location.toPath(), bytes);
+        ParseCache reloaded = new ParseCache(location, false);
+        reloaded.load();
+        Assert.assertNull(reloaded.get(glue, reloaded.stamp(glue)));
+    }
+
+    @Test
+    public void pruneTest() throws IOException {
+        ParseCache cache = new ParseCache(location, false);
+        cache.load();
+        parse(cache);
+        cache.save();
+        ParseCache unused = new ParseCache(location, false);
+        unused.load();
+        unused.save();
+        ParseCache reloaded = new ParseCache(location, false);
+        reloaded.load();
+        Assert.assertNull(reloaded.get(glue, reloaded.stamp(glue)));
+    }
+}
@@ -0,0 +1,92 @@
+package unit;
+
+import com.coveros.RunStats;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RunStatsTest {
+
+    @Test
+    public void phasesTest() {
+        List<String> names = new ArrayList<>();
+        for (RunStats.Phase phase : new RunStats().getPhases()) {
+            names.add(phase.getName());
+        }
+        Assert.assertEquals(names, Arrays.asList(RunStats.SCAN, RunStats.PARSE, RunStats.ENUMERATIONS,
+                RunStats.WRITE));
+    }
+
+    @Test
+    public void phaseTest() {
+        RunStats.Phase phase = new RunStats().getPhase(RunStats.PARSE);
+        phase.addNanos(2000000000L);
+        phase.addFiles(10);
+        phase.addFiles(10);
+        phase.addLines(400);
+        phase.addBytes(1000);
+        phase.addAllocated(5000);
+        phase.addSkipped(3);
+        Assert.assertEquals(phase.getFiles(), 20);
+        Assert.assertEquals(phase.getMillis(), 2000.0);
+        Assert.assertEquals(phase.toString(),
+                "parse: 2000.0 ms, 20 files (10/s, 3 skipped), 400 lines (200/s), 1000 bytes, 5000 bytes allocated");
+    }
+
+    @Test
+    public void emptyPhaseTest() {
+        Assert.assertEquals(new RunStats().getPhase(RunStats.SCAN).toString(),
+                "scan: 0.0 ms, 0 files (0/s, 0 skipped), 0 lines (0/s), 0 bytes, 0 bytes allocated");
+    }
+
+    @Test
+    public void allocatedBytesTest() {
+        long before = RunStats.getAllocatedBytes();
+        byte[][] garbage = new byte[100][];
+        for (int i = 0; i < garbage.length; i++) {
+            garbage[i] = new byte[1024];
+        }
+        Assert.assertTrue(RunStats.getAllocatedBytes() - before >= garbage.length * 1024);
+    }
+
+    @Test
+    public void toJsonTest() {
+        RunStats stats = new RunStats();
+        stats.setValue("threads", 4);
+        RunStats.Phase write = stats.getPhase(RunStats.WRITE);
+        write.addNanos(500000000L);
+        write.addFiles(1);
+        write.addLines(10);
+        write.addBytes(300);
+        String json = stats.toJson();
+        Assert.assertTrue(json.startsWith("{\n  \"totalMillis\": "));
+        Assert.assertTrue(json.contains("\n  \"threads\": 4,\n  \"phases\": [\n    {\"name\": \"scan\", "));
+        Assert.assertTrue(json.contains("{\"name\": \"write\", \"millis\": 500.000, \"files\": 1, \"skippedFiles\": 0, \"lines\": 10, " +
+                "\"bytes\": 300, \"allocatedBytes\": 0, \"filesPerSecond\": 2.000, \"linesPerSecond\": 20.000, " +
+                "\"bytesPerSecond\": 600.000}\n  ]\n}\n"));
+    }
+
+    @Test
+    public void writeJsonTest() throws IOException {
+        Path folder = Files.createTempDirectory("report");
+        File report = folder.resolve("nested/report.json").toFile();
+        try {
+            RunStats stats = new RunStats();
+            stats.writeJson(report);
+            String json = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+            Assert.assertTrue(json.contains("\"name\": \"enumerations\""));
+        } finally {
+            report.delete();
+            report.getParentFile().delete();
+            Files.delete(folder);
+        }
+    }
+}
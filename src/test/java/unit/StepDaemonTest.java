@@ -0,0 +1,161 @@
+package unit;
+
+import com.coveros.StepClient;
+import com.coveros.StepDaemon;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class StepDaemonTest {
+
+    private Path dir;
+    private File state;
+    private File project;
+    private StepDaemon daemon;
+    private ByteArrayOutputStream output;
+
+    @BeforeMethod
+    public void startDaemon() throws IOException {
+        dir = Files.createTempDirectory("daemon");
+        state = dir.resolve("state").toFile();
+        project = dir.resolve("project").toFile();
+        Path steps = project.toPath().resolve("steps");
+        Files.createDirectories(steps);
+        Files.createDirectories(project.toPath().resolve("public").resolve("js"));
+        Files.write(steps.resolve("Steps.java"), Arrays.asList("@Given(\"^I have a user$\")", "public void haveUser()"));
+        // old enough that the parse cache trusts its modification time
+        Files.setLastModifiedTime(steps.resolve("Steps.java"), FileTime.fromMillis(System.currentTimeMillis() - 10000));
+        daemon = new StepDaemon(state);
+        daemon.start(1);
+        output = new ByteArrayOutputStream();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stopDaemon() throws IOException {
+        daemon.close();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private int run(String... args) {
+        output.reset();
+        return StepClient.run(state, project, args, new PrintStream(output, true));
+    }
+
+    private String getOutput() {
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void generateTest() throws IOException {
+        Assert.assertEquals(run("steps"), 0, getOutput());
+        Assert.assertTrue(getOutput().contains("parse: "), getOutput());
+        List<String> steps = Files.readAllLines(project.toPath().resolve("public/js/steps.js"));
+        Assert.assertEquals(steps.get(3), "testSteps.push( new step( \"I have a user\" ) );");
+    }
+
+    @Test
+    public void generateCachedTest() {
+        Assert.assertEquals(run("steps"), 0, getOutput());
+        Assert.assertTrue(getOutput().contains("Re-used 0 cached files, parsed 1 files"), getOutput());
+        Assert.assertEquals(run("steps"), 0, getOutput());
+        Assert.assertTrue(getOutput().contains("Re-used 1 cached files, parsed 0 files"), getOutput());
+    }
+
+    @Test
+    public void generateCacheSavedTest() throws IOException {
+        Assert.assertEquals(run("steps"), 0, getOutput());
+        Assert.assertEquals(run("steps"), 0, getOutput());
+        daemon.close();
+        Path caches = state.toPath().resolve("caches");
+        try (Stream<Path> files = Files.list(caches)) {
+            Assert.assertEquals(files.count(), 1);
+        }
+    }
+
+    @Test
+    public void generateEvictedTest() throws IOException {
+        daemon.setMaxProjects(1);
+        Assert.assertEquals(run("steps"), 0, getOutput());
+        Assert.assertEquals(run("steps", "--threads=2"), 0, getOutput());
+        Assert.assertEquals(daemon.getProjectCount(), 1);
+        daemon.close();
+        Path caches = state.toPath().resolve("caches");
+        try (Stream<Path> files = Files.list(caches)) {
+            Assert.assertEquals(files.count(), 2);
+        }
+    }
+
+    @Test
+    public void generateMissingTest() {
+        Assert.assertEquals(run("missing"), 1);
+        Assert.assertTrue(getOutput().contains("does not exist"), getOutput());
+    }
+
+    @Test(timeOut = 30000)
+    public void idleClientsTest() throws IOException {
+        daemon.setReadTimeout(200);
+        List<Socket> idle = new ArrayList<>();
+        try {
+            // more idle clients than there are threads handling requests
+            for (int i = 0; i < 8; i++) {
+                idle.add(new Socket(InetAddress.getLoopbackAddress(), daemon.getPort()));
+            }
+            Assert.assertEquals(run("steps"), 0, getOutput());
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void generateLongRunningTest() {
+        Assert.assertEquals(run("steps", "--watch"), 1);
+        Assert.assertEquals(run("steps", "--serve"), 1);
+        Assert.assertEquals(run("steps", "--stream"), 1);
+    }
+
+    @Test
+    public void unauthorisedTest() throws IOException {
+        Path file = new File(state, "daemon").toPath();
+        List<String> lines = Files.readAllLines(file);
+        Files.write(file, Arrays.asList(lines.get(0), "not the token"));
+        Assert.assertEquals(run("steps"), 1);
+        Assert.assertTrue(getOutput().contains("wasn't authorised"), getOutput());
+        Assert.assertFalse(project.toPath().resolve("public/js/steps.js").toFile().exists());
+    }
+
+    @Test
+    public void noDaemonTest() {
+        daemon.close();
+        Assert.assertFalse(new File(state, "daemon").exists());
+        Assert.assertEquals(run("steps"), StepClient.NO_DAEMON);
+    }
+
+    @Test
+    public void stopTest() throws InterruptedException {
+        Assert.assertEquals(run("--stop"), 0);
+        daemon.await();
+        Assert.assertFalse(new File(state, "daemon").exists());
+        Assert.assertEquals(run("steps"), StepClient.NO_DAEMON);
+    }
+}
@@ -0,0 +1,187 @@
+package unit;
+
+import com.coveros.StepGenerator;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class StepGeneratorTest {
+
+    private static final List<String> ENUMERATIONS = Collections.singletonList("var Color = new Array(\"RED\",\"BLUE\");");
+    private static final List<String> STEPS = Arrays.asList(
+            "testSteps.push( new step( \"I have a user\" ) );",
+            "testSteps.push( new step( \"I pick XXXX\", new keypair( \"color\", Color ) ) );");
+
+    private Path dir;
+    private Path sources;
+    private Path glue;
+
+    @BeforeClass
+    public void createGlueCode() throws IOException {
+        dir = Files.createTempDirectory("generator");
+        sources = dir.resolve("src").resolve("main").resolve("java");
+        glue = sources.resolve("steps");
+        Files.createDirectories(glue);
+        Files.write(glue.resolve("Color.java"), Arrays.asList("package steps;", "public enum Color {",
+                "    RED, BLUE", "}"));
+        Files.write(glue.resolve("Steps.java"), Arrays.asList("package steps;", "import steps.Color;",
+                "public class Steps {",
+                "    @Given(\"^I have a user$\")",
+                "    public void haveUser() {",
+                "    }",
+                "    @When(\"^I pick (\\\\w+)$\")",
+                "    public void pick(Color color) {",
+                "    }",
+                "}"));
+        // old enough that the parse cache trusts their modification times
+        FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 10000);
+        Files.setLastModifiedTime(glue.resolve("Color.java"), past);
+        Files.setLastModifiedTime(glue.resolve("Steps.java"), past);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteGlueCode() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void generateTest() throws IOException {
+        StepGenerator.Result result = new StepGenerator().addRoot(glue.toFile()).setThreads(1).generate();
+        Assert.assertEquals(result.getSteps(), STEPS);
+        Assert.assertEquals(result.getEnumerations(), ENUMERATIONS);
+        Assert.assertEquals(result.getStats().getPhase("parse").getFiles(), 2);
+        Assert.assertEquals(result.getStats().getValue("threads"), Long.valueOf(1));
+    }
+
+    @Test
+    public void generateOutputTest() throws IOException {
+        File output = dir.resolve("out").resolve("steps.js").toFile();
+        Files.createDirectories(output.getParentFile().toPath());
+        StringWriter writer = new StringWriter();
+        try {
+            new StepGenerator().addRoot(glue.toFile()).setOutput(output).setWriter(writer).generate();
+            Assert.assertEquals(Files.readAllLines(output.toPath()), Arrays.asList("//our enumerations",
+                    ENUMERATIONS.get(0), "", "//our steps", STEPS.get(0), STEPS.get(1)));
+            Assert.assertEquals(writer.toString(), new String(Files.readAllBytes(output.toPath())));
+        } finally {
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    @Test
+    public void generateRepeatedTest() throws IOException {
+        StepGenerator generator = new StepGenerator().addRoot(glue.toFile());
+        StepGenerator.Result first = generator.generate();
+        StepGenerator.Result second = generator.generate();
+        Assert.assertEquals(second.getSteps(), first.getSteps());
+        Assert.assertEquals(second.getEnumerations(), first.getEnumerations());
+        Assert.assertNotSame(second.getStats(), first.getStats());
+        Assert.assertEquals(second.getStats().getPhase("parse").getFiles(), 2);
+    }
+
+    @Test
+    public void generateStreamingTest() throws IOException {
+        File expected = dir.resolve("expected.js").toFile();
+        File output = dir.resolve("streamed.js").toFile();
+        try {
+            new StepGenerator().addRoot(glue.toFile()).setOutput(expected).generate();
+            StepGenerator.Result result = new StepGenerator().addRoot(glue.toFile()).setOutput(output)
+                    .setStreaming(true).generate();
+            Assert.assertTrue(result.getSteps().isEmpty());
+            Assert.assertEquals(result.getEnumerations(), ENUMERATIONS);
+            Assert.assertEquals(Files.readAllLines(output.toPath()), Files.readAllLines(expected.toPath()));
+        } finally {
+            Files.deleteIfExists(expected.toPath());
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void generateStreamingNoOutputTest() throws IOException {
+        new StepGenerator().addRoot(glue.toFile()).setStreaming(true).generate();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void generateStreamingCacheTest() throws IOException {
+        new StepGenerator().addRoot(glue.toFile()).setOutput(dir.resolve("streamed.js").toFile())
+                .setCache(dir.resolve("steps.cache").toFile(), false).setStreaming(true).generate();
+    }
+
+    @Test
+    public void generateCacheTest() throws IOException {
+        File cache = dir.resolve("steps.cache").toFile();
+        try {
+            StepGenerator generator = new StepGenerator().addRoot(glue.toFile()).setCache(cache, false);
+            Assert.assertEquals(generator.generate().getStats().getValue("cacheMisses"), Long.valueOf(2));
+            StepGenerator.Result result = generator.generate();
+            Assert.assertEquals(result.getStats().getValue("cacheHits"), Long.valueOf(2));
+            Assert.assertEquals(result.getSteps(), STEPS);
+        } finally {
+            Files.deleteIfExists(cache.toPath());
+        }
+    }
+
+    @Test
+    public void generateWarmTest() throws IOException {
+        File cache = dir.resolve("warm.cache").toFile();
+        try {
+            StepGenerator.Warm warm = new StepGenerator.Warm();
+            StepGenerator generator = new StepGenerator().addRoot(glue.toFile()).setCache(cache, false).setWarm(warm);
+            Assert.assertEquals(generator.generate().getStats().getValue("cacheMisses"), Long.valueOf(2));
+            StepGenerator.Result result = generator.generate();
+            Assert.assertEquals(result.getStats().getValue("cacheHits"), Long.valueOf(2));
+            Assert.assertEquals(result.getSteps(), STEPS);
+            Assert.assertEquals(result.getEnumerations(), ENUMERATIONS);
+            Assert.assertFalse(cache.exists());
+            warm.save();
+            Assert.assertTrue(cache.exists());
+            StepGenerator cold = new StepGenerator().addRoot(glue.toFile()).setCache(cache, false);
+            Assert.assertEquals(cold.generate().getStats().getValue("cacheHits"), Long.valueOf(2));
+        } finally {
+            Files.deleteIfExists(cache.toPath());
+        }
+    }
+
+    @Test
+    public void generateSourceRootTest() throws IOException {
+        Path outside = dir.resolve("glue");
+        Files.createDirectories(outside);
+        Files.copy(glue.resolve("Steps.java"), outside.resolve("Steps.java"));
+        try {
+            StepGenerator.Result result = new StepGenerator().addRoot(outside.toFile())
+                    .addSourceRoot(sources.toFile()).generate();
+            Assert.assertEquals(result.getSteps(), STEPS);
+            Assert.assertEquals(result.getEnumerations(), ENUMERATIONS);
+        } finally {
+            Files.deleteIfExists(outside.resolve("Steps.java"));
+            Files.deleteIfExists(outside);
+        }
+    }
+
+    @Test
+    public void getSourceRootTest() {
+        Assert.assertEquals(StepGenerator.getSourceRoot(glue.toFile()), sources.toString() + File.separator);
+        Assert.assertEquals(StepGenerator.getSourceRoot(sources.toFile()), sources.toString() + File.separator);
+    }
+
+    @Test
+    public void getSourceRootOutsideTest() {
+        Path outside = dir.resolve("glue");
+        Assert.assertEquals(StepGenerator.getSourceRoot(outside.toFile()), outside.toString() + File.separator);
+    }
+}
@@ -0,0 +1,193 @@
+package unit;
+
+import com.coveros.GenerateStepDefs;
+import com.coveros.GlueCode;
+import com.coveros.StepProcessor;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class StepProcessorTest {
+
+    private JavaCompiler compiler;
+    private Path dir;
+    private Path sources;
+    private Path classes;
+    private Path output;
+
+    @BeforeMethod
+    public void createGlueCode() throws IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new SkipException("A java compiler is needed to build the glue code");
+        }
+        dir = Files.createTempDirectory("processor");
+        sources = dir.resolve("src/main/java");
+        classes = dir.resolve("classes");
+        output = dir.resolve("public/js/steps.js");
+        Files.createDirectories(classes);
+        for (String keyword : Arrays.asList("Given", "When", "Then")) {
+            write("cucumber/api/java/en/" + keyword + ".java", "package cucumber.api.java.en;",
+                    "import java.lang.annotation.*;",
+                    "@Retention(RetentionPolicy.RUNTIME)",
+                    "@Repeatable(" + keyword + "s.class)",
+                    "public @interface " + keyword + " {",
+                    "    String value();",
+                    "}");
+            write("cucumber/api/java/en/" + keyword + "s.java", "package cucumber.api.java.en;",
+                    "import java.lang.annotation.*;",
+                    "@Retention(RetentionPolicy.RUNTIME)",
+                    "public @interface " + keyword + "s {",
+                    "    " + keyword + "[] value();",
+                    "}");
+        }
+        write("steps/Color.java", "package steps;",
+                "public enum Color {",
+                "    RED {",
+                "        public String toString() { return \"red\"; }",
+                "    },",
+                "    GREEN, BLUE;",
+                "}");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteGlueCode() throws IOException {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        Path file = sources.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines));
+        return file;
+    }
+
+    private Path writeSteps() throws IOException {
+        return write("steps/Steps.java", "package steps;",
+                "import cucumber.api.java.en.*;",
+                "import java.util.List;",
+                "import steps.Color;",
+                "public class Steps {",
+                "    @Given(\"^I have a user$\")",
+                "    public void haveUser() { }",
+                "    @When(\"^I add (\\\\d+) \\\"([^\\\"]*)\\\" users?$\")",
+                "    public void addUsers(int count, final String name) { }",
+                "    @Then(\"^I see (.*) colors$\")",
+                "    public void see(List<Color> colors) { }",
+                "}");
+    }
+
+    private boolean compile(String... options) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList("-A" + StepProcessor.OUTPUT + "=" + output));
+        arguments.addAll(Arrays.asList(options));
+        return compileWith(arguments);
+    }
+
+    private boolean compileWith(List<String> options) throws IOException {
+        List<File> files;
+        try (Stream<Path> paths = Files.walk(sources)) {
+            files = paths.filter(path -> path.toString().endsWith(".java")).map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+        List<String> arguments = new ArrayList<>(Arrays.asList("-d", classes.toString()));
+        arguments.addAll(options);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                    fileManager.getJavaFileObjectsFromFiles(files));
+            task.setProcessors(Collections.singletonList(new StepProcessor()));
+            return task.call();
+        }
+    }
+
+    @Test
+    public void processTest() throws IOException {
+        Path steps = writeSteps();
+        Assert.assertTrue(compile());
+        List<String> generated = Files.readAllLines(output);
+
+        GlueCode glueCode = new GlueCode();
+        glueCode.addBaseDirectory(sources.toString() + File.separator);
+        GenerateStepDefs.parseFiles(Collections.singletonList(steps), glueCode, 1);
+        Path expected = dir.resolve("expected.js");
+        GenerateStepDefs.writeSteps(glueCode, expected.toFile());
+        Assert.assertEquals(generated, Files.readAllLines(expected));
+    }
+
+    @Test
+    public void processRepeatedTest() throws IOException {
+        write("steps/Repeated.java", "package steps;",
+                "import cucumber.api.java.en.*;",
+                "public class Repeated {",
+                "    @Given(\"^I have one$\")",
+                "    @Given(\"^I have another$\")",
+                "    public void repeated() { }",
+                "}");
+        Assert.assertTrue(compile());
+        List<String> generated = Files.readAllLines(output);
+        Assert.assertEquals(generated.subList(3, generated.size()),
+                Arrays.asList("testSteps.push( new step( \"I have one\" ) );",
+                        "testSteps.push( new step( \"I have another\" ) );"));
+    }
+
+    @Test
+    public void processKeywordsTest() throws IOException {
+        writeSteps();
+        Assert.assertTrue(compile("-A" + StepProcessor.KEYWORDS + "=Then"));
+        Assert.assertEquals(Files.readAllLines(output), Arrays.asList("//our enumerations",
+                "var Color = new Array(\"RED\",\"GREEN\",\"BLUE\");", "", "//our steps",
+                "testSteps.push( new step( \"I see XXXX colors\", new keypair( \"colorsList\", Color ) ) );"));
+    }
+
+    @Test
+    public void processNoStepsTest() throws IOException {
+        Assert.assertTrue(compile());
+        Assert.assertTrue(Files.exists(classes.resolve("steps/Color.class")));
+        Assert.assertFalse(Files.exists(output));
+    }
+
+    @Test
+    public void processNotAskedForTest() throws IOException {
+        writeSteps();
+        Assert.assertTrue(compileWith(Collections.emptyList()));
+        Assert.assertTrue(Files.exists(classes.resolve("steps/Steps.class")));
+        Assert.assertFalse(Files.exists(output));
+        Assert.assertFalse(Files.exists(classes.resolve("steps.js")));
+    }
+
+    @Test
+    public void processMalformedStepTest() throws IOException {
+        write("steps/Steps.java", "package steps;",
+                "import cucumber.api.java.en.*;",
+                "public class Steps {",
+                "    @Given(\"I have a user\")",
+                "    public void haveUser() { }",
+                "}");
+        Assert.assertFalse(compile());
+        Assert.assertFalse(Files.exists(output));
+    }
+}
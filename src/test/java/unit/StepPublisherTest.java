@@ -0,0 +1,252 @@
+package unit;
+
+import com.coveros.GlueCodeReader;
+import com.coveros.JavaFileScanner;
+import com.coveros.StepDefinition;
+import com.coveros.StepGenerator;
+import com.coveros.StepPublisher;
+import com.coveros.exception.MalformedGlueCode;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class StepPublisherTest {
+
+    private Path dir;
+
+    @BeforeMethod
+    public void createGlueCode() throws IOException {
+        dir = Files.createTempDirectory("publisher");
+        for (int i = 0; i < 10; i++) {
+            List<String> lines = new ArrayList<>();
+            lines.add("package steps;");
+            lines.add("");
+            lines.add("public class Steps" + i + " {");
+            for (int j = 0; j < i; j++) {
+                lines.add("    private int unused" + j + ";");
+            }
+            lines.add("    @Given(\"^I have " + i + " (.*)$\")");
+            lines.add("    public void have(Color color) {");
+            lines.add("    }");
+            lines.add("}");
+            Files.write(dir.resolve("Steps" + i + ".java"), lines);
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteGlueCode() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private List<Path> getFiles() {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(dir.resolve("Steps" + i + ".java"));
+        }
+        return files;
+    }
+
+    private static class Recorder implements Subscriber<StepDefinition> {
+        private final long initial;
+        private final List<StepDefinition> definitions = new CopyOnWriteArrayList<>();
+        private final CountDownLatch received = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Subscription subscription;
+        private volatile boolean completed = false;
+        private volatile Throwable error;
+
+        private Recorder(long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            if (initial > 0) {
+                s.request(initial);
+            }
+        }
+
+        @Override
+        public void onNext(StepDefinition definition) {
+            definitions.add(definition);
+            received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+
+        private boolean await() throws InterruptedException {
+            return done.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void publishTest() throws InterruptedException {
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        new StepPublisher(getFiles()).subscribe(recorder);
+        Assert.assertTrue(recorder.await());
+        Assert.assertTrue(recorder.completed);
+        Assert.assertNull(recorder.error);
+        Assert.assertEquals(recorder.definitions.size(), 10);
+        for (int i = 0; i < 10; i++) {
+            StepDefinition definition = recorder.definitions.get(i);
+            Assert.assertEquals(definition.getFile(), dir.resolve("Steps" + i + ".java"));
+            Assert.assertEquals(definition.getLine(), 4 + i);
+            Assert.assertEquals(definition.getKeyword(), "Given");
+            Assert.assertEquals(definition.getText(), "I have " + i + " XXXX");
+            Assert.assertEquals(definition.getParameters().get(0).getName(), "color");
+            Assert.assertEquals(definition.getEnumerations(), Collections.singletonList("Color"));
+        }
+    }
+
+    @Test
+    public void publishMappedInParallelTest() throws InterruptedException {
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        new StepPublisher(getFiles(), new GlueCodeReader().setMapped(true), 3).subscribe(recorder);
+        Assert.assertTrue(recorder.await());
+        Assert.assertTrue(recorder.completed);
+        Assert.assertEquals(recorder.definitions.size(), 10);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(recorder.definitions.get(i).getFile(), dir.resolve("Steps" + i + ".java"));
+            Assert.assertEquals(recorder.definitions.get(i).getLine(), 4 + i);
+        }
+    }
+
+    @Test
+    public void readerUnchangedTest() {
+        GlueCodeReader reader = new GlueCodeReader();
+        new StepPublisher(getFiles(), reader, 1);
+        Assert.assertFalse(reader.isRecording());
+    }
+
+    @Test
+    public void backpressureTest() throws InterruptedException {
+        Recorder recorder = new Recorder(1);
+        new StepPublisher(getFiles()).subscribe(recorder);
+        Assert.assertTrue(recorder.received.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(recorder.done.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(recorder.definitions.size(), 1);
+        recorder.subscription.request(4);
+        Assert.assertFalse(recorder.done.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(recorder.definitions.size(), 5);
+        recorder.subscription.request(5);
+        Assert.assertTrue(recorder.await());
+        Assert.assertTrue(recorder.completed);
+        Assert.assertEquals(recorder.definitions.size(), 10);
+    }
+
+    @Test
+    public void stalledInParallelTest() throws InterruptedException {
+        Set<Thread> before = new HashSet<>(Thread.getAllStackTraces().keySet());
+        Recorder recorder = new Recorder(1);
+        new StepPublisher(getFiles(), new GlueCodeReader(), 3).subscribe(recorder);
+        Assert.assertTrue(recorder.received.await(10, TimeUnit.SECONDS));
+        try {
+            // a subscriber which stops requesting, without cancelling, mustn't keep the jvm running
+            Set<Thread> started = new HashSet<>(Thread.getAllStackTraces().keySet());
+            started.removeAll(before);
+            Assert.assertFalse(started.isEmpty());
+            for (Thread thread : started) {
+                Assert.assertTrue(thread.isDaemon(), thread.getName());
+            }
+        } finally {
+            recorder.subscription.cancel();
+        }
+    }
+
+    @Test
+    public void cancelTest() throws InterruptedException {
+        Recorder recorder = new Recorder(2);
+        new StepPublisher(getFiles()).subscribe(recorder);
+        Assert.assertTrue(recorder.received.await(10, TimeUnit.SECONDS));
+        recorder.subscription.cancel();
+        recorder.subscription.request(5);
+        Assert.assertFalse(recorder.done.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(recorder.definitions.size() <= 2);
+    }
+
+    @Test
+    public void badRequestTest() throws InterruptedException {
+        Recorder recorder = new Recorder(0);
+        new StepPublisher(getFiles()).subscribe(recorder);
+        while (recorder.subscription == null) {
+            Thread.sleep(10);
+        }
+        recorder.subscription.request(0);
+        Assert.assertTrue(recorder.await());
+        Assert.assertFalse(recorder.completed);
+        Assert.assertTrue(recorder.error instanceof IllegalArgumentException);
+        Assert.assertTrue(recorder.definitions.isEmpty());
+    }
+
+    @Test
+    public void malformedTest() throws IOException, InterruptedException {
+        Path broken = dir.resolve("Broken.java");
+        Files.write(broken, Arrays.asList("@Given(\"I have no anchors\")", "public void broken()"));
+        List<Path> files = getFiles();
+        files.add(broken);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        new StepPublisher(files).subscribe(recorder);
+        Assert.assertTrue(recorder.await());
+        Assert.assertFalse(recorder.completed);
+        Assert.assertTrue(recorder.error instanceof MalformedGlueCode);
+        Assert.assertEquals(recorder.definitions.size(), 10);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void nullSubscriberTest() {
+        new StepPublisher(getFiles()).subscribe(null);
+    }
+
+    @Test
+    public void resubscribeTest() throws InterruptedException {
+        StepPublisher publisher = new StepPublisher(new JavaFileScanner(Collections.singletonList(dir.toFile())));
+        for (int i = 0; i < 2; i++) {
+            Recorder recorder = new Recorder(Long.MAX_VALUE);
+            publisher.subscribe(recorder);
+            Assert.assertTrue(recorder.await());
+            Assert.assertTrue(recorder.completed);
+            Assert.assertEquals(recorder.definitions.size(), 10);
+        }
+    }
+
+    @Test
+    public void generatorPublishTest() throws InterruptedException {
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        new StepGenerator().addRoot(dir.toFile()).setThreads(2).publish().subscribe(recorder);
+        Assert.assertTrue(recorder.await());
+        Assert.assertTrue(recorder.completed);
+        Assert.assertEquals(recorder.definitions.size(), 10);
+    }
+}
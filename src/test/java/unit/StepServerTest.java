@@ -0,0 +1,168 @@
+package unit;
+
+import com.coveros.StepGenerator;
+import com.coveros.StepServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+public class StepServerTest {
+
+    private static final String STEPS = "//our enumerations\n\n//our steps\n" +
+            "testSteps.push( new step( \"I have a user\" ) );\n";
+
+    private Path dir;
+    private StepServer server;
+
+    @BeforeMethod
+    public void startServer() throws IOException {
+        dir = Files.createTempDirectory("server");
+        Files.write(dir.resolve("Steps.java"), Arrays.asList("@Given(\"^I have a user$\")", "public void haveUser()"));
+        server = new StepServer(new StepGenerator().addRoot(dir.toFile()).setThreads(1));
+        server.start(new InetSocketAddress("127.0.0.1", 0), 2);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stopServer() throws IOException {
+        server.close();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path)
+                .openConnection();
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void getTest() throws IOException {
+        HttpURLConnection connection = open(StepServer.PATH);
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        Assert.assertEquals(connection.getContentType(), "application/javascript; charset=UTF-8");
+        Assert.assertEquals(connection.getHeaderField("ETag"), server.getSnapshot().getETag());
+        Assert.assertNull(connection.getContentEncoding());
+        Assert.assertEquals(new String(read(connection.getInputStream()), StandardCharsets.UTF_8), STEPS);
+        Assert.assertEquals(server.getSnapshot().getSteps(), 1);
+    }
+
+    @Test
+    public void getRootTest() throws IOException {
+        Assert.assertEquals(open("/").getResponseCode(), 200);
+    }
+
+    @Test
+    public void getGzipTest() throws IOException {
+        HttpURLConnection connection = open(StepServer.PATH);
+        connection.setRequestProperty("Accept-Encoding", "deflate, gzip;q=0.8");
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        Assert.assertEquals(connection.getContentEncoding(), "gzip");
+        Assert.assertEquals(connection.getHeaderField("ETag"), server.getSnapshot().getGzipETag());
+        Assert.assertEquals(new String(read(new GZIPInputStream(connection.getInputStream())),
+                StandardCharsets.UTF_8), STEPS);
+    }
+
+    @Test
+    public void getGzipRefusedTest() throws IOException {
+        HttpURLConnection connection = open(StepServer.PATH);
+        connection.setRequestProperty("Accept-Encoding", "gzip;q=0");
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        Assert.assertNull(connection.getContentEncoding());
+    }
+
+    @Test
+    public void notModifiedTest() throws IOException {
+        HttpURLConnection connection = open(StepServer.PATH);
+        connection.setRequestProperty("If-None-Match", "\"other\", " + server.getSnapshot().getETag());
+        Assert.assertEquals(connection.getResponseCode(), 304);
+        Assert.assertEquals(connection.getHeaderField("ETag"), server.getSnapshot().getETag());
+    }
+
+    @Test
+    public void modifiedTest() throws IOException {
+        HttpURLConnection connection = open(StepServer.PATH);
+        connection.setRequestProperty("If-None-Match", "\"other\"");
+        Assert.assertEquals(connection.getResponseCode(), 200);
+    }
+
+    @Test
+    public void headTest() throws IOException {
+        HttpURLConnection connection = open(StepServer.PATH);
+        connection.setRequestMethod("HEAD");
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        Assert.assertEquals(connection.getHeaderField("ETag"), server.getSnapshot().getETag());
+    }
+
+    @Test
+    public void postTest() throws IOException {
+        HttpURLConnection connection = open(StepServer.PATH);
+        connection.setRequestMethod("POST");
+        Assert.assertEquals(connection.getResponseCode(), 405);
+        Assert.assertEquals(connection.getHeaderField("Allow"), "GET, HEAD");
+    }
+
+    @Test
+    public void notFoundTest() throws IOException {
+        Assert.assertEquals(open("/other.js").getResponseCode(), 404);
+    }
+
+    @Test
+    public void refreshTest() throws IOException {
+        StepServer.Snapshot before = server.getSnapshot();
+        Assert.assertSame(server.refresh(), server.getSnapshot());
+        Assert.assertEquals(server.getSnapshot().getETag(), before.getETag());
+        Files.write(dir.resolve("More.java"), Arrays.asList("@When(\"^I add a user$\")", "public void addUser()"));
+        StepServer.Snapshot after = server.refresh();
+        Assert.assertNotEquals(after.getETag(), before.getETag());
+        Assert.assertEquals(after.getSteps(), 2);
+        // the previous snapshot is untouched
+        Assert.assertEquals(new String(before.getContent(), StandardCharsets.UTF_8), STEPS);
+        HttpURLConnection connection = open(StepServer.PATH);
+        connection.setRequestProperty("If-None-Match", before.getETag());
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        Assert.assertEquals(connection.getHeaderField("ETag"), after.getETag());
+    }
+
+    @Test
+    public void refreshEveryTest() throws IOException, InterruptedException {
+        StepServer.Snapshot before = server.getSnapshot();
+        server.refreshEvery(10, TimeUnit.MILLISECONDS);
+        Files.write(dir.resolve("More.java"), Arrays.asList("@When(\"^I add a user$\")", "public void addUser()"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (server.getSnapshot().getSteps() != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(server.getSnapshot().getSteps(), 2);
+        Assert.assertNotEquals(server.getSnapshot().getETag(), before.getETag());
+    }
+}
@@ -0,0 +1,174 @@
+package unit;
+
+import com.coveros.JavaFileScanner;
+import com.coveros.StepWatcher;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class StepWatcherTest {
+
+    private Path root;
+    private Path steps;
+    private File output;
+    private StepWatcher watcher;
+
+    @BeforeMethod
+    public void createGlueCode() throws IOException {
+        root = Files.createTempDirectory("watch");
+        steps = root.resolve("src/main/java/steps");
+        Files.createDirectories(steps);
+        Files.write(steps.resolve("Color.java"), Arrays.asList("package steps;", "public enum Color { RED, BLUE }"));
+        writeSteps("UserSteps", "I have a user");
+        writeSteps("ColorSteps", "I pick a color");
+        output = root.resolve("public/js/steps.js").toFile();
+        watcher = new StepWatcher(Collections.singletonList(steps.toFile()), JavaFileScanner.DEFAULT_EXCLUDES,
+                Collections.singletonList(root.resolve("src/main/java").toString() + File.separator), output, 1);
+        watcher.start();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteGlueCode() throws IOException {
+        watcher.close();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private Path writeSteps(String name, String step) throws IOException {
+        Path file = steps.resolve(name + ".java");
+        Files.write(file, Arrays.asList(
+                "package steps;",
+                "import steps.Color;",
+                "public class " + name + " {",
+                "    @Given(\"^" + step + "$\")",
+                "    public void step(Color color)",
+                "}"));
+        return file;
+    }
+
+    private List<String> readSteps() throws IOException {
+        return Files.readAllLines(output.toPath());
+    }
+
+    private String step(String step) {
+        return "testSteps.push( new step( \"" + step + "\", new keypair( \"color\", Color ) ) );";
+    }
+
+    @Test
+    public void startTest() throws IOException {
+        Assert.assertEquals(watcher.getFiles(), 3);
+        List<String> lines = readSteps();
+        Assert.assertTrue(lines.contains("var Color = new Array(\"RED\",\"BLUE\");"));
+        Assert.assertTrue(lines.contains(step("I have a user")));
+        Assert.assertTrue(lines.contains(step("I pick a color")));
+    }
+
+    @Test
+    public void updateModifiedTest() throws IOException {
+        Path file = writeSteps("UserSteps", "I have an admin");
+        Assert.assertEquals(watcher.update(Collections.singleton(file)), 1);
+        List<String> lines = readSteps();
+        Assert.assertTrue(lines.contains(step("I have an admin")));
+        Assert.assertFalse(lines.contains(step("I have a user")));
+        Assert.assertTrue(lines.contains(step("I pick a color")));
+    }
+
+    @Test
+    public void updateDeletedTest() throws IOException {
+        Path file = steps.resolve("UserSteps.java");
+        Files.delete(file);
+        Assert.assertEquals(watcher.update(Collections.singleton(file)), 0);
+        Assert.assertEquals(watcher.getFiles(), 2);
+        Assert.assertFalse(readSteps().contains(step("I have a user")));
+    }
+
+    @Test
+    public void updateNewFolderTest() throws IOException {
+        Path nested = steps.resolve("nested");
+        Files.createDirectories(nested);
+        Files.write(nested.resolve("NestedSteps.java"), Arrays.asList(
+                "package steps.nested;",
+                "public class NestedSteps {",
+                "    @When(\"^I nest$\")",
+                "    public void nest()",
+                "}"));
+        Assert.assertEquals(watcher.update(Collections.singleton(nested)), 1);
+        Assert.assertEquals(watcher.getFiles(), 4);
+        Assert.assertTrue(readSteps().contains("testSteps.push( new step( \"I nest\" ) );"));
+    }
+
+    @Test
+    public void updateEnumerationTest() throws IOException {
+        Path file = steps.resolve("Color.java");
+        Files.write(file, Arrays.asList("package steps;", "public enum Color { RED, GREEN, BLUE }"));
+        Assert.assertEquals(watcher.update(Collections.singleton(file)), 1);
+        Assert.assertTrue(readSteps().contains("var Color = new Array(\"RED\",\"GREEN\",\"BLUE\");"));
+    }
+
+    @Test
+    public void updateUnwatchedEnumerationTest() throws IOException {
+        // the enumeration lives in the source root, outside of the watched glue code
+        Path data = root.resolve("src/main/java/data");
+        Files.createDirectories(data);
+        Path shade = data.resolve("Shade.java");
+        Files.write(shade, Arrays.asList("package data;", "public enum Shade { LIGHT, DARK }"));
+        Path file = steps.resolve("ShadeSteps.java");
+        Files.write(file, Arrays.asList(
+                "package steps;",
+                "import data.Shade;",
+                "public class ShadeSteps {",
+                "    @Given(\"^I pick a shade$\")",
+                "    public void step(Shade shade)",
+                "}"));
+        Assert.assertEquals(watcher.update(Collections.singleton(file)), 1);
+        Assert.assertTrue(readSteps().contains("var Shade = new Array(\"LIGHT\",\"DARK\");"));
+
+        Files.write(shade, Arrays.asList("package data;", "public enum Shade { LIGHT, MEDIUM, DARK }"));
+        Assert.assertTrue(shade.toFile().setLastModified(shade.toFile().lastModified() + 2000));
+        Assert.assertEquals(watcher.update(Collections.singleton(file)), 1);
+        Assert.assertTrue(readSteps().contains("var Shade = new Array(\"LIGHT\",\"MEDIUM\",\"DARK\");"));
+    }
+
+    @Test
+    public void updateNothingTest() throws IOException {
+        Path readme = steps.resolve("README.md");
+        Files.write(readme, Collections.singletonList("notes"));
+        Assert.assertTrue(output.delete());
+        Assert.assertEquals(watcher.update(Collections.singleton(readme)), 0);
+        Assert.assertFalse(output.exists());
+    }
+
+    @Test(timeOut = 30000)
+    public void watchTest() throws Exception {
+        Thread watching = new Thread(() -> {
+            try {
+                watcher.watch();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        watching.start();
+        try {
+            writeSteps("ColorSteps", "I change a color");
+            while (!output.exists() || !readSteps().contains(step("I change a color"))) {
+                Thread.sleep(50);
+            }
+        } finally {
+            watcher.close();
+            watching.join();
+        }
+        Assert.assertTrue(readSteps().contains(step("I have a user")));
+    }
+}